@@ -0,0 +1,64 @@
+package pk.gov.pbs.database.benchmark;
+
+import android.content.ContentValues;
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import pk.gov.pbs.database.ConflictMode;
+import pk.gov.pbs.database.ModelBasedDatabaseHelper;
+
+/**
+ * Database of one benchmark model in a temporary directory, deleted on close
+ */
+public class BenchmarkDatabase extends ModelBasedDatabaseHelper {
+    private static final int INSERT_CHUNK = 10_000;
+    private final File directory;
+
+    private BenchmarkDatabase(File directory, Class<?> model, int readerConnections) {
+        super(new Context(directory), "benchmark.db", new Class<?>[]{ model });
+        this.directory = directory;
+        if (readerConnections > 0)
+            enableConcurrentReads(readerConnections);
+    }
+
+    static BenchmarkDatabase create(Class<?> model) throws IOException {
+        return create(model, 0);
+    }
+
+    /**
+     * @param readerConnections reader connections given to enableConcurrentReads(int), 0 to keep concurrent reads off
+     */
+    static BenchmarkDatabase create(Class<?> model, int readerConnections) throws IOException {
+        BenchmarkDatabase database = new BenchmarkDatabase(Files.createTempDirectory("orm-benchmark").toFile(), model, readerConnections);
+        database.getWritableDatabase();
+        return database;
+    }
+
+    /**
+     * inserts given number of rows in chunks so that objects of whole table are never in memory at once
+     */
+    void populate(int columns, int rows) {
+        for (int first = 0; first < rows; first += INSERT_CHUNK) {
+            List<Object> chunk = Records.create(columns, first, Math.min(INSERT_CHUNK, rows - first));
+            executeBulkInsert(chunk, ConflictMode.NONE);
+        }
+    }
+
+    ContentValues toContentValues(Object model) {
+        return getContentValuesFromModel(model);
+    }
+
+    void destroy() {
+        close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files)
+                file.delete();
+        }
+        directory.delete();
+    }
+}
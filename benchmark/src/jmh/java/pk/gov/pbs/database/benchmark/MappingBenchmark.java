@@ -0,0 +1,67 @@
+package pk.gov.pbs.database.benchmark;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+import pk.gov.pbs.database.ModelBasedDatabaseHelper;
+
+/**
+ * Mapping of rows to objects and objects to ContentValues, without SQLite. Cursor is read once in setup, one operation
+ * maps all of its rows (or converts all objects), so rows per second is throughput multiplied by rows
+ */
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+    @Param({"10", "40", "100"})
+    public int columns;
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private BenchmarkDatabase database;
+    private Class<?> model;
+    private Cursor cursor;
+    private List<Object> records;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        model = Records.modelOf(columns);
+        database = BenchmarkDatabase.create(model);
+        database.populate(columns, rows);
+        cursor = database.getReadableDatabase().rawQuery("SELECT * FROM " + model.getSimpleName(), null);
+        records = Records.create(columns, 0, rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cursor.close();
+        database.destroy();
+    }
+
+    @Benchmark
+    public void extractObjectFromCursor(Blackhole blackhole) throws Exception {
+        if (cursor.moveToFirst()) {
+            do {
+                blackhole.consume(ModelBasedDatabaseHelper.extractObjectFromCursor(model, cursor));
+            } while (cursor.moveToNext());
+        }
+    }
+
+    @Benchmark
+    public void getContentValuesFromModel(Blackhole blackhole) {
+        for (Object record : records) {
+            ContentValues values = database.toContentValues(record);
+            blackhole.consume(values);
+        }
+    }
+}
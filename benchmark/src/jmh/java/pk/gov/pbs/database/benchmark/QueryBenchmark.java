@@ -0,0 +1,52 @@
+package pk.gov.pbs.database.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * queryRowsAsMap and queryGroupedRowsRawSQL over whole table, one operation reads all the rows
+ */
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+    @Param({"10", "40", "100"})
+    public int columns;
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private BenchmarkDatabase database;
+    private Class<?> model;
+    private String sql;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        model = Records.modelOf(columns);
+        database = BenchmarkDatabase.create(model);
+        database.populate(columns, rows);
+        sql = "SELECT * FROM `" + model.getSimpleName() + "`";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.destroy();
+    }
+
+    @Benchmark
+    public List<Map<String, String>> queryRowsAsMap() {
+        return database.queryRowsAsMap(sql);
+    }
+
+    @Benchmark
+    public HashMap<Object, ? extends List<?>> queryGroupedRowsRawSQL() throws NoSuchFieldException {
+        return database.queryGroupedRowsRawSQL("groupId", model, sql);
+    }
+}
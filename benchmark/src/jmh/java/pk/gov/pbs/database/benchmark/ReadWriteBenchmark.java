@@ -0,0 +1,84 @@
+package pk.gov.pbs.database.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Mixed reads and writes on 1, 2, 4 and 8 threads sharing one database, every thread queries single rows by primary
+ * key and updates a row on every WRITE_EVERY-th operation, so one operation is either a read or a write.
+ * readerConnections 0 keeps concurrent reads off, otherwise it is given to enableConcurrentReads(int).
+ * The JVM stand-in of SQLiteDatabase shares one JDBC connection between threads, so this measures the contention
+ * within the library, pooling of reader connections by the platform shows only when run on a device
+ */
+@State(Scope.Benchmark)
+public class ReadWriteBenchmark {
+    static final int WRITE_EVERY = 5;
+
+    @Param({"10", "100"})
+    public int columns;
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"0", "4"})
+    public int readerConnections;
+
+    private BenchmarkDatabase database;
+    private Class<?> model;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        model = Records.modelOf(columns);
+        database = BenchmarkDatabase.create(model, readerConnections);
+        database.populate(columns, rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.destroy();
+    }
+
+    @State(Scope.Thread)
+    public static class Worker {
+        private int operations;
+    }
+
+    private Object operate(Worker worker) throws Exception {
+        long id = ThreadLocalRandom.current().nextInt(rows);
+        if (++worker.operations % WRITE_EVERY == 0)
+            return database.update(Records.create(columns, id));
+        return database.querySingle(model, "id = ?", Long.toString(id));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object threads1(Worker worker) throws Exception {
+        return operate(worker);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Object threads2(Worker worker) throws Exception {
+        return operate(worker);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object threads4(Worker worker) throws Exception {
+        return operate(worker);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object threads8(Worker worker) throws Exception {
+        return operate(worker);
+    }
+}
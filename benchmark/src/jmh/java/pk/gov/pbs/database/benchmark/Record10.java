@@ -0,0 +1,35 @@
+package pk.gov.pbs.database.benchmark;
+
+import pk.gov.pbs.database.annotations.PrimaryKey;
+
+/**
+ * model with 10 columns, generated so that columns cycle through text, integer, long and real
+ */
+public class Record10 {
+    @PrimaryKey
+    public long id;
+    public int groupId;
+    public long c2;
+    public double c3;
+    public String c4;
+    public int c5;
+    public long c6;
+    public double c7;
+    public String c8;
+    public int c9;
+
+    public static Record10 create(long id) {
+        Record10 record = new Record10();
+        record.id = id;
+        record.groupId = (int) (id % Records.GROUPS);
+        record.c2 = id * 31;
+        record.c3 = id / 7d;
+        record.c4 = Records.text(id);
+        record.c5 = (int) id;
+        record.c6 = id * 31;
+        record.c7 = id / 7d;
+        record.c8 = Records.text(id);
+        record.c9 = (int) id;
+        return record;
+    }
+}
@@ -0,0 +1,215 @@
+package pk.gov.pbs.database.benchmark;
+
+import pk.gov.pbs.database.annotations.PrimaryKey;
+
+/**
+ * model with 100 columns, generated so that columns cycle through text, integer, long and real
+ */
+public class Record100 {
+    @PrimaryKey
+    public long id;
+    public int groupId;
+    public long c2;
+    public double c3;
+    public String c4;
+    public int c5;
+    public long c6;
+    public double c7;
+    public String c8;
+    public int c9;
+    public long c10;
+    public double c11;
+    public String c12;
+    public int c13;
+    public long c14;
+    public double c15;
+    public String c16;
+    public int c17;
+    public long c18;
+    public double c19;
+    public String c20;
+    public int c21;
+    public long c22;
+    public double c23;
+    public String c24;
+    public int c25;
+    public long c26;
+    public double c27;
+    public String c28;
+    public int c29;
+    public long c30;
+    public double c31;
+    public String c32;
+    public int c33;
+    public long c34;
+    public double c35;
+    public String c36;
+    public int c37;
+    public long c38;
+    public double c39;
+    public String c40;
+    public int c41;
+    public long c42;
+    public double c43;
+    public String c44;
+    public int c45;
+    public long c46;
+    public double c47;
+    public String c48;
+    public int c49;
+    public long c50;
+    public double c51;
+    public String c52;
+    public int c53;
+    public long c54;
+    public double c55;
+    public String c56;
+    public int c57;
+    public long c58;
+    public double c59;
+    public String c60;
+    public int c61;
+    public long c62;
+    public double c63;
+    public String c64;
+    public int c65;
+    public long c66;
+    public double c67;
+    public String c68;
+    public int c69;
+    public long c70;
+    public double c71;
+    public String c72;
+    public int c73;
+    public long c74;
+    public double c75;
+    public String c76;
+    public int c77;
+    public long c78;
+    public double c79;
+    public String c80;
+    public int c81;
+    public long c82;
+    public double c83;
+    public String c84;
+    public int c85;
+    public long c86;
+    public double c87;
+    public String c88;
+    public int c89;
+    public long c90;
+    public double c91;
+    public String c92;
+    public int c93;
+    public long c94;
+    public double c95;
+    public String c96;
+    public int c97;
+    public long c98;
+    public double c99;
+
+    public static Record100 create(long id) {
+        Record100 record = new Record100();
+        record.id = id;
+        record.groupId = (int) (id % Records.GROUPS);
+        record.c2 = id * 31;
+        record.c3 = id / 7d;
+        record.c4 = Records.text(id);
+        record.c5 = (int) id;
+        record.c6 = id * 31;
+        record.c7 = id / 7d;
+        record.c8 = Records.text(id);
+        record.c9 = (int) id;
+        record.c10 = id * 31;
+        record.c11 = id / 7d;
+        record.c12 = Records.text(id);
+        record.c13 = (int) id;
+        record.c14 = id * 31;
+        record.c15 = id / 7d;
+        record.c16 = Records.text(id);
+        record.c17 = (int) id;
+        record.c18 = id * 31;
+        record.c19 = id / 7d;
+        record.c20 = Records.text(id);
+        record.c21 = (int) id;
+        record.c22 = id * 31;
+        record.c23 = id / 7d;
+        record.c24 = Records.text(id);
+        record.c25 = (int) id;
+        record.c26 = id * 31;
+        record.c27 = id / 7d;
+        record.c28 = Records.text(id);
+        record.c29 = (int) id;
+        record.c30 = id * 31;
+        record.c31 = id / 7d;
+        record.c32 = Records.text(id);
+        record.c33 = (int) id;
+        record.c34 = id * 31;
+        record.c35 = id / 7d;
+        record.c36 = Records.text(id);
+        record.c37 = (int) id;
+        record.c38 = id * 31;
+        record.c39 = id / 7d;
+        record.c40 = Records.text(id);
+        record.c41 = (int) id;
+        record.c42 = id * 31;
+        record.c43 = id / 7d;
+        record.c44 = Records.text(id);
+        record.c45 = (int) id;
+        record.c46 = id * 31;
+        record.c47 = id / 7d;
+        record.c48 = Records.text(id);
+        record.c49 = (int) id;
+        record.c50 = id * 31;
+        record.c51 = id / 7d;
+        record.c52 = Records.text(id);
+        record.c53 = (int) id;
+        record.c54 = id * 31;
+        record.c55 = id / 7d;
+        record.c56 = Records.text(id);
+        record.c57 = (int) id;
+        record.c58 = id * 31;
+        record.c59 = id / 7d;
+        record.c60 = Records.text(id);
+        record.c61 = (int) id;
+        record.c62 = id * 31;
+        record.c63 = id / 7d;
+        record.c64 = Records.text(id);
+        record.c65 = (int) id;
+        record.c66 = id * 31;
+        record.c67 = id / 7d;
+        record.c68 = Records.text(id);
+        record.c69 = (int) id;
+        record.c70 = id * 31;
+        record.c71 = id / 7d;
+        record.c72 = Records.text(id);
+        record.c73 = (int) id;
+        record.c74 = id * 31;
+        record.c75 = id / 7d;
+        record.c76 = Records.text(id);
+        record.c77 = (int) id;
+        record.c78 = id * 31;
+        record.c79 = id / 7d;
+        record.c80 = Records.text(id);
+        record.c81 = (int) id;
+        record.c82 = id * 31;
+        record.c83 = id / 7d;
+        record.c84 = Records.text(id);
+        record.c85 = (int) id;
+        record.c86 = id * 31;
+        record.c87 = id / 7d;
+        record.c88 = Records.text(id);
+        record.c89 = (int) id;
+        record.c90 = id * 31;
+        record.c91 = id / 7d;
+        record.c92 = Records.text(id);
+        record.c93 = (int) id;
+        record.c94 = id * 31;
+        record.c95 = id / 7d;
+        record.c96 = Records.text(id);
+        record.c97 = (int) id;
+        record.c98 = id * 31;
+        record.c99 = id / 7d;
+        return record;
+    }
+}
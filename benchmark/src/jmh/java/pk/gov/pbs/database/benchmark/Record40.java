@@ -0,0 +1,95 @@
+package pk.gov.pbs.database.benchmark;
+
+import pk.gov.pbs.database.annotations.PrimaryKey;
+
+/**
+ * model with 40 columns, generated so that columns cycle through text, integer, long and real
+ */
+public class Record40 {
+    @PrimaryKey
+    public long id;
+    public int groupId;
+    public long c2;
+    public double c3;
+    public String c4;
+    public int c5;
+    public long c6;
+    public double c7;
+    public String c8;
+    public int c9;
+    public long c10;
+    public double c11;
+    public String c12;
+    public int c13;
+    public long c14;
+    public double c15;
+    public String c16;
+    public int c17;
+    public long c18;
+    public double c19;
+    public String c20;
+    public int c21;
+    public long c22;
+    public double c23;
+    public String c24;
+    public int c25;
+    public long c26;
+    public double c27;
+    public String c28;
+    public int c29;
+    public long c30;
+    public double c31;
+    public String c32;
+    public int c33;
+    public long c34;
+    public double c35;
+    public String c36;
+    public int c37;
+    public long c38;
+    public double c39;
+
+    public static Record40 create(long id) {
+        Record40 record = new Record40();
+        record.id = id;
+        record.groupId = (int) (id % Records.GROUPS);
+        record.c2 = id * 31;
+        record.c3 = id / 7d;
+        record.c4 = Records.text(id);
+        record.c5 = (int) id;
+        record.c6 = id * 31;
+        record.c7 = id / 7d;
+        record.c8 = Records.text(id);
+        record.c9 = (int) id;
+        record.c10 = id * 31;
+        record.c11 = id / 7d;
+        record.c12 = Records.text(id);
+        record.c13 = (int) id;
+        record.c14 = id * 31;
+        record.c15 = id / 7d;
+        record.c16 = Records.text(id);
+        record.c17 = (int) id;
+        record.c18 = id * 31;
+        record.c19 = id / 7d;
+        record.c20 = Records.text(id);
+        record.c21 = (int) id;
+        record.c22 = id * 31;
+        record.c23 = id / 7d;
+        record.c24 = Records.text(id);
+        record.c25 = (int) id;
+        record.c26 = id * 31;
+        record.c27 = id / 7d;
+        record.c28 = Records.text(id);
+        record.c29 = (int) id;
+        record.c30 = id * 31;
+        record.c31 = id / 7d;
+        record.c32 = Records.text(id);
+        record.c33 = (int) id;
+        record.c34 = id * 31;
+        record.c35 = id / 7d;
+        record.c36 = Records.text(id);
+        record.c37 = (int) id;
+        record.c38 = id * 31;
+        record.c39 = id / 7d;
+        return record;
+    }
+}
@@ -0,0 +1,60 @@
+package pk.gov.pbs.database.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * creates objects of benchmark models for given number of columns
+ */
+final class Records {
+    static final int GROUPS = 100;
+    private static final String[] TEXTS = new String[64];
+
+    static {
+        for (int i = 0; i < TEXTS.length; i++)
+            TEXTS[i] = "household member " + i + " of enumeration block";
+    }
+
+    private Records() {
+    }
+
+    /**
+     * texts are shared by objects so that a million objects fit in heap, values written to database are the same
+     */
+    static String text(long id) {
+        return TEXTS[(int) (id % TEXTS.length)];
+    }
+
+    static Class<?> modelOf(int columns) {
+        switch (columns) {
+            case 10:
+                return Record10.class;
+            case 40:
+                return Record40.class;
+            case 100:
+                return Record100.class;
+            default:
+                throw new IllegalArgumentException("No model with " + columns + " columns");
+        }
+    }
+
+    static Object create(int columns, long id) {
+        switch (columns) {
+            case 10:
+                return Record10.create(id);
+            case 40:
+                return Record40.create(id);
+            case 100:
+                return Record100.create(id);
+            default:
+                throw new IllegalArgumentException("No model with " + columns + " columns");
+        }
+    }
+
+    static List<Object> create(int columns, long firstId, int count) {
+        List<Object> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            records.add(create(columns, firstId + i));
+        return records;
+    }
+}
@@ -0,0 +1,30 @@
+package pk.gov.pbs.database.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import pk.gov.pbs.database.SqlGenerator;
+
+/**
+ * TSQL script generation for a model, does not depend on number of rows
+ */
+@State(Scope.Benchmark)
+public class SqlGeneratorBenchmark {
+    @Param({"10", "40", "100"})
+    public int columns;
+
+    private Class<?>[] models;
+
+    @Setup
+    public void setup() {
+        models = new Class<?>[]{ Records.modelOf(columns) };
+    }
+
+    @Benchmark
+    public String generateSqlFromModels() {
+        return SqlGenerator.generateSqlFromModels(models);
+    }
+}
@@ -0,0 +1,89 @@
+package pk.gov.pbs.database.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+
+/**
+ * insert(Object[]) into empty table and replace(List) of rows which all exist, one operation writes all the rows
+ * in one transaction. Each operation has its own database, table of insert is emptied before every invocation
+ * while table of replace is populated once and keeps all of its rows
+ */
+public class WriteBenchmark {
+    @State(Scope.Benchmark)
+    public static class Insert {
+        @Param({"10", "40", "100"})
+        public int columns;
+
+        @Param({"1000", "100000", "1000000"})
+        public int rows;
+
+        private BenchmarkDatabase database;
+        private String table;
+        private Object[] inserted;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            Class<?> model = Records.modelOf(columns);
+            table = model.getSimpleName();
+            database = BenchmarkDatabase.create(model);
+            inserted = Records.create(columns, 0, rows).toArray();
+        }
+
+        /**
+         * every insert starts with empty table, rows left by previous operation would conflict on primary key
+         */
+        @Setup(Level.Invocation)
+        public void clear() {
+            database.getWritableDatabase().execSQL("DELETE FROM `" + table + "`");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            database.destroy();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Replace {
+        @Param({"10", "40", "100"})
+        public int columns;
+
+        @Param({"1000", "100000", "1000000"})
+        public int rows;
+
+        private BenchmarkDatabase database;
+        private List<Object> replaced;
+
+        /**
+         * table holds every row being replaced, so each replace deletes and inserts all the rows
+         */
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            database = BenchmarkDatabase.create(Records.modelOf(columns));
+            database.populate(columns, rows);
+            replaced = Records.create(columns, 0, rows);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            database.destroy();
+        }
+    }
+
+    @Benchmark
+    public List<Long> insert(Insert state) {
+        return state.database.insert(state.inserted);
+    }
+
+    @Benchmark
+    public List<Long> replace(Replace state) {
+        return state.database.replace(state.replaced);
+    }
+}
@@ -0,0 +1,11 @@
+package android.app;
+
+import android.content.Context;
+
+import java.io.File;
+
+public class Application extends Context {
+    public Application(File databaseDirectory) {
+        super(databaseDirectory);
+    }
+}
@@ -0,0 +1,51 @@
+package android.content;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stand-in of android.content.ContentValues for running the library on JVM
+ */
+public final class ContentValues {
+    private final LinkedHashMap<String, Object> values;
+
+    public ContentValues() {
+        values = new LinkedHashMap<>();
+    }
+
+    public ContentValues(int size) {
+        values = new LinkedHashMap<>(size * 2);
+    }
+
+    public void put(String key, String value) { values.put(key, value); }
+    public void put(String key, Byte value) { values.put(key, value); }
+    public void put(String key, Short value) { values.put(key, value); }
+    public void put(String key, Integer value) { values.put(key, value); }
+    public void put(String key, Long value) { values.put(key, value); }
+    public void put(String key, Float value) { values.put(key, value); }
+    public void put(String key, Double value) { values.put(key, value); }
+    public void put(String key, Boolean value) { values.put(key, value); }
+    public void put(String key, byte[] value) { values.put(key, value); }
+    public void putNull(String key) { values.put(key, null); }
+
+    public Object get(String key) {
+        return values.get(key);
+    }
+
+    public boolean containsKey(String key) {
+        return values.containsKey(key);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public Set<String> keySet() {
+        return values.keySet();
+    }
+
+    public Set<Map.Entry<String, Object>> valueSet() {
+        return values.entrySet();
+    }
+}
@@ -0,0 +1,28 @@
+package android.content;
+
+import java.io.File;
+
+/**
+ * Stand-in of android.content.Context, databases are created in the directory given to constructor
+ */
+public class Context {
+    private final File databaseDirectory;
+
+    public Context(File databaseDirectory) {
+        this.databaseDirectory = databaseDirectory;
+    }
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public File getDatabasePath(String name) {
+        return new File(databaseDirectory, name);
+    }
+
+    public void registerComponentCallbacks(ComponentCallbacks callback) {
+    }
+
+    public void unregisterComponentCallbacks(ComponentCallbacks callback) {
+    }
+}
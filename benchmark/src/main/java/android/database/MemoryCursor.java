@@ -0,0 +1,161 @@
+package android.database;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cursor over rows copied from a result set, like the CursorWindow of Android whole result is read when cursor
+ * is created so stepping through rows does not touch SQLite
+ */
+public class MemoryCursor implements Cursor {
+    private final String[] columns;
+    private final List<Object[]> rows;
+    private int position = -1;
+    private boolean closed;
+
+    public MemoryCursor(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        columns = new String[meta.getColumnCount()];
+        for (int i = 0; i < columns.length; i++)
+            columns[i] = meta.getColumnLabel(i + 1);
+
+        rows = new ArrayList<>();
+        while (rs.next()) {
+            Object[] row = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++)
+                row[i] = rs.getObject(i + 1);
+            rows.add(row);
+        }
+    }
+
+    /**
+     * cursor over the rows of given cursor, for subclasses which read their rows before calling constructor
+     */
+    protected MemoryCursor(MemoryCursor source) {
+        columns = source.columns;
+        rows = source.rows;
+    }
+
+    private Object value(int columnIndex) {
+        if (position < 0 || position >= rows.size())
+            throw new IllegalStateException("Cursor is not positioned on a row");
+        return rows.get(position)[columnIndex];
+    }
+
+    @Override public int getCount() { return rows.size(); }
+    @Override public int getPosition() { return position; }
+    @Override public boolean move(int offset) { return moveToPosition(position + offset); }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        if (position < -1)
+            position = -1;
+        if (position > rows.size())
+            position = rows.size();
+        this.position = position;
+        return position >= 0 && position < rows.size();
+    }
+
+    @Override public boolean moveToFirst() { return moveToPosition(0); }
+    @Override public boolean moveToLast() { return moveToPosition(rows.size() - 1); }
+    @Override public boolean moveToNext() { return moveToPosition(position + 1); }
+    @Override public boolean moveToPrevious() { return moveToPosition(position - 1); }
+    @Override public boolean isFirst() { return position == 0 && !rows.isEmpty(); }
+    @Override public boolean isLast() { return position == rows.size() - 1 && !rows.isEmpty(); }
+    @Override public boolean isBeforeFirst() { return rows.isEmpty() || position == -1; }
+    @Override public boolean isAfterLast() { return rows.isEmpty() || position == rows.size(); }
+
+    @Override
+    public int getColumnIndex(String columnName) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equalsIgnoreCase(columnName))
+                return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public int getColumnIndexOrThrow(String columnName) {
+        int index = getColumnIndex(columnName);
+        if (index < 0)
+            throw new IllegalArgumentException("column '" + columnName + "' does not exist");
+        return index;
+    }
+
+    @Override public String getColumnName(int columnIndex) { return columns[columnIndex]; }
+    @Override public String[] getColumnNames() { return columns.clone(); }
+    @Override public int getColumnCount() { return columns.length; }
+
+    @Override
+    public byte[] getBlob(int columnIndex) {
+        Object value = value(columnIndex);
+        if (value == null || value instanceof byte[])
+            return (byte[]) value;
+        return value.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String getString(int columnIndex) {
+        Object value = value(columnIndex);
+        if (value == null)
+            return null;
+        if (value instanceof byte[])
+            return new String((byte[]) value, StandardCharsets.UTF_8);
+        return value.toString();
+    }
+
+    @Override public short getShort(int columnIndex) { return (short) getLong(columnIndex); }
+    @Override public int getInt(int columnIndex) { return (int) getLong(columnIndex); }
+
+    @Override
+    public long getLong(int columnIndex) {
+        Object value = value(columnIndex);
+        if (value == null)
+            return 0;
+        if (value instanceof Number)
+            return ((Number) value).longValue();
+        try {
+            return Long.parseLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override public float getFloat(int columnIndex) { return (float) getDouble(columnIndex); }
+
+    @Override
+    public double getDouble(int columnIndex) {
+        Object value = value(columnIndex);
+        if (value == null)
+            return 0;
+        if (value instanceof Number)
+            return ((Number) value).doubleValue();
+        try {
+            return Double.parseDouble(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public int getType(int columnIndex) {
+        Object value = value(columnIndex);
+        if (value == null)
+            return FIELD_TYPE_NULL;
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+            return FIELD_TYPE_INTEGER;
+        if (value instanceof Number)
+            return FIELD_TYPE_FLOAT;
+        if (value instanceof byte[])
+            return FIELD_TYPE_BLOB;
+        return FIELD_TYPE_STRING;
+    }
+
+    @Override public boolean isNull(int columnIndex) { return value(columnIndex) == null; }
+    @Override public void close() { closed = true; }
+    @Override public boolean isClosed() { return closed; }
+}
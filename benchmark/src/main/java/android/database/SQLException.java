@@ -0,0 +1,19 @@
+package android.database;
+
+/**
+ * Stand-in of android.database.SQLException for running the library on JVM
+ */
+public class SQLException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public SQLException() {
+    }
+
+    public SQLException(String error) {
+        super(error);
+    }
+
+    public SQLException(String error, Throwable cause) {
+        super(error, cause);
+    }
+}
@@ -0,0 +1,12 @@
+package android.database.sqlite;
+
+public class SQLiteConstraintException extends SQLiteException {
+    private static final long serialVersionUID = 1L;
+
+    public SQLiteConstraintException() {
+    }
+
+    public SQLiteConstraintException(String error) {
+        super(error);
+    }
+}
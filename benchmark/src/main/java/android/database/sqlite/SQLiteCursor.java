@@ -0,0 +1,12 @@
+package android.database.sqlite;
+
+import android.database.MemoryCursor;
+
+/**
+ * Stand-in of SQLiteCursor, whole result of query is read when cursor is created
+ */
+public class SQLiteCursor extends MemoryCursor {
+    public SQLiteCursor(SQLiteCursorDriver driver, String editTable, SQLiteQuery query) {
+        super(query.execute());
+    }
+}
@@ -0,0 +1,7 @@
+package android.database.sqlite;
+
+/**
+ * Stand-in of SQLiteCursorDriver, the library only passes it from cursor factory to SQLiteCursor
+ */
+public interface SQLiteCursorDriver {
+}
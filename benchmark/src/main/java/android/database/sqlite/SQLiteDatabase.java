@@ -0,0 +1,325 @@
+package android.database.sqlite;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MemoryCursor;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+/**
+ * Stand-in of SQLiteDatabase over a single JDBC connection to SQLite (sqlite-jdbc), with the methods used by the
+ * library. Nested transactions behave as on Android, whole transaction is rolled back unless every level has been
+ * marked successful. Connection is shared by all threads
+ */
+public final class SQLiteDatabase implements Closeable {
+    public static final int CONFLICT_NONE = 0;
+    public static final int CONFLICT_ROLLBACK = 1;
+    public static final int CONFLICT_ABORT = 2;
+    public static final int CONFLICT_FAIL = 3;
+    public static final int CONFLICT_IGNORE = 4;
+    public static final int CONFLICT_REPLACE = 5;
+    private static final String[] CONFLICT_VALUES = new String[]{ "", " OR ROLLBACK ", " OR ABORT ", " OR FAIL ", " OR IGNORE ", " OR REPLACE " };
+
+    private final Connection connection;
+    private final String path;
+    private PreparedStatement lastInsertRowId;
+    private boolean writeAheadLogging;
+    private int transactionDepth;
+    private boolean transactionSuccessful;
+    private boolean innerTransactionFailed;
+
+    public interface CursorFactory {
+        Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable, SQLiteQuery query);
+    }
+
+    SQLiteDatabase(Connection connection, String path) {
+        this.connection = connection;
+        this.path = path;
+    }
+
+    static SQLiteException translate(SQLException e) {
+        // primary result code of sqlite is in lower byte of extended code
+        if ((e.getErrorCode() & 0xff) == 19)
+            return (SQLiteException) new SQLiteConstraintException(e.getMessage()).initCause(e);
+        return new SQLiteException(e.getMessage(), e);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isOpen() {
+        try {
+            return !connection.isClosed();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    public synchronized boolean enableWriteAheadLogging() {
+        execSQL("PRAGMA journal_mode=WAL");
+        writeAheadLogging = true;
+        return true;
+    }
+
+    public synchronized void disableWriteAheadLogging() {
+        execSQL("PRAGMA journal_mode=DELETE");
+        writeAheadLogging = false;
+    }
+
+    public synchronized boolean isWriteAheadLoggingEnabled() {
+        return writeAheadLogging;
+    }
+
+    public int getVersion() {
+        try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    public void setVersion(int version) {
+        execSQL("PRAGMA user_version = " + version);
+    }
+
+    public synchronized void beginTransaction() {
+        begin("BEGIN EXCLUSIVE");
+    }
+
+    public synchronized void beginTransactionNonExclusive() {
+        begin("BEGIN IMMEDIATE");
+    }
+
+    private void begin(String sql) {
+        if (transactionDepth == 0) {
+            execSQL(sql);
+            innerTransactionFailed = false;
+        }
+        transactionDepth++;
+        transactionSuccessful = false;
+    }
+
+    public synchronized void setTransactionSuccessful() {
+        if (transactionDepth == 0)
+            throw new IllegalStateException("no transaction pending");
+        transactionSuccessful = true;
+    }
+
+    public synchronized void endTransaction() {
+        if (transactionDepth == 0)
+            throw new IllegalStateException("no transaction pending");
+        if (!transactionSuccessful)
+            innerTransactionFailed = true;
+        transactionSuccessful = false;
+        if (--transactionDepth == 0)
+            execSQL(innerTransactionFailed ? "ROLLBACK" : "COMMIT");
+        else
+            transactionSuccessful = false;
+    }
+
+    public synchronized boolean inTransaction() {
+        return transactionDepth > 0;
+    }
+
+    public void execSQL(String sql) {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    public void execSQL(String sql, Object[] bindArgs) {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            if (bindArgs != null) {
+                for (int i = 0; i < bindArgs.length; i++)
+                    statement.setObject(i + 1, bindArgs[i] instanceof Boolean ? ((Boolean) bindArgs[i] ? 1 : 0) : bindArgs[i]);
+            }
+            statement.execute();
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    public Cursor rawQuery(String sql, String[] selectionArgs) {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            if (selectionArgs != null) {
+                for (int i = 0; i < selectionArgs.length; i++)
+                    statement.setString(i + 1, selectionArgs[i]);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                return new MemoryCursor(rs);
+            }
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    /**
+     * compiles query, binds selection arguments as text and hands query to given factory, which may bind
+     * arguments again before creating the cursor that runs the query
+     */
+    public Cursor rawQueryWithFactory(CursorFactory cursorFactory, String sql, String[] selectionArgs, String editTable) {
+        SQLiteQuery query;
+        try {
+            query = new SQLiteQuery(this, connection.prepareStatement(sql));
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+        query.bindAllArgsAsStrings(selectionArgs);
+        if (cursorFactory == null)
+            return new SQLiteCursor(null, editTable, query);
+        return cursorFactory.newCursor(this, null, editTable, query);
+    }
+
+    public SQLiteStatement compileStatement(String sql) {
+        try {
+            return new SQLiteStatement(this, connection.prepareStatement(sql));
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    synchronized long getLastInsertRowId() throws SQLException {
+        if (lastInsertRowId == null)
+            lastInsertRowId = connection.prepareStatement("SELECT last_insert_rowid()");
+        try (ResultSet rs = lastInsertRowId.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : -1;
+        }
+    }
+
+    public long insert(String table, String nullColumnHack, ContentValues values) {
+        try {
+            return insertWithOnConflict(table, nullColumnHack, values, CONFLICT_NONE);
+        } catch (SQLiteException e) {
+            return -1;
+        }
+    }
+
+    public long insertOrThrow(String table, String nullColumnHack, ContentValues values) {
+        return insertWithOnConflict(table, nullColumnHack, values, CONFLICT_NONE);
+    }
+
+    public long replace(String table, String nullColumnHack, ContentValues values) {
+        try {
+            return insertWithOnConflict(table, nullColumnHack, values, CONFLICT_REPLACE);
+        } catch (SQLiteException e) {
+            return -1;
+        }
+    }
+
+    public long replaceOrThrow(String table, String nullColumnHack, ContentValues values) {
+        return insertWithOnConflict(table, nullColumnHack, values, CONFLICT_REPLACE);
+    }
+
+    public long insertWithOnConflict(String table, String nullColumnHack, ContentValues values, int conflictAlgorithm) {
+        StringBuilder sql = new StringBuilder("INSERT").append(CONFLICT_VALUES[conflictAlgorithm]).append(" INTO ").append(table).append('(');
+        Object[] args = new Object[values == null ? 0 : values.size()];
+        int i = 0;
+        if (args.length > 0) {
+            for (Map.Entry<String, Object> value : values.valueSet()) {
+                sql.append(i > 0 ? "," : "").append(value.getKey());
+                args[i++] = value.getValue();
+            }
+            sql.append(") VALUES (");
+            for (i = 0; i < args.length; i++)
+                sql.append(i > 0 ? ",?" : "?");
+        } else {
+            sql.append(nullColumnHack).append(") VALUES (NULL");
+        }
+        sql.append(')');
+
+        SQLiteStatement statement = compileStatement(sql.toString());
+        try {
+            bind(statement, args);
+            return statement.executeInsert();
+        } finally {
+            statement.close();
+        }
+    }
+
+    public int update(String table, ContentValues values, String whereClause, String[] whereArgs) {
+        return updateWithOnConflict(table, values, whereClause, whereArgs, CONFLICT_NONE);
+    }
+
+    public int updateWithOnConflict(String table, ContentValues values, String whereClause, String[] whereArgs, int conflictAlgorithm) {
+        if (values == null || values.size() == 0)
+            throw new IllegalArgumentException("Empty values");
+
+        StringBuilder sql = new StringBuilder("UPDATE").append(CONFLICT_VALUES[conflictAlgorithm]).append(' ').append(table).append(" SET ");
+        int bindArgsSize = whereArgs == null ? values.size() : values.size() + whereArgs.length;
+        Object[] args = new Object[bindArgsSize];
+        int i = 0;
+        for (Map.Entry<String, Object> value : values.valueSet()) {
+            sql.append(i > 0 ? "," : "").append(value.getKey()).append("=?");
+            args[i++] = value.getValue();
+        }
+        if (whereArgs != null) {
+            for (String arg : whereArgs)
+                args[i++] = arg;
+        }
+        if (whereClause != null && !whereClause.isEmpty())
+            sql.append(" WHERE ").append(whereClause);
+
+        SQLiteStatement statement = compileStatement(sql.toString());
+        try {
+            bind(statement, args);
+            return statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    public int delete(String table, String whereClause, String[] whereArgs) {
+        SQLiteStatement statement = compileStatement("DELETE FROM " + table
+                + (whereClause != null && !whereClause.isEmpty() ? " WHERE " + whereClause : ""));
+        try {
+            bind(statement, whereArgs);
+            return statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    private static void bind(SQLiteProgram statement, Object[] args) {
+        if (args == null)
+            return;
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (arg == null)
+                statement.bindNull(i + 1);
+            else if (arg instanceof byte[])
+                statement.bindBlob(i + 1, (byte[]) arg);
+            else if (arg instanceof Double || arg instanceof Float)
+                statement.bindDouble(i + 1, ((Number) arg).doubleValue());
+            else if (arg instanceof Number)
+                statement.bindLong(i + 1, ((Number) arg).longValue());
+            else if (arg instanceof Boolean)
+                statement.bindLong(i + 1, (Boolean) arg ? 1 : 0);
+            else
+                statement.bindString(i + 1, arg.toString());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (lastInsertRowId != null)
+                lastInsertRowId.close();
+            connection.close();
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package android.database.sqlite;
+
+public class SQLiteDoneException extends SQLiteException {
+    private static final long serialVersionUID = 1L;
+
+    public SQLiteDoneException() {
+    }
+
+    public SQLiteDoneException(String error) {
+        super(error);
+    }
+}
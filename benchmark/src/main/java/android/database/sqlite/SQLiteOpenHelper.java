@@ -0,0 +1,105 @@
+package android.database.sqlite;
+
+import android.content.Context;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * Stand-in of SQLiteOpenHelper which opens the database with sqlite-jdbc, database is created in the directory of
+ * given context, or in memory if name is null. Version is kept in user_version as on Android
+ */
+public abstract class SQLiteOpenHelper {
+    private final Context context;
+    private final String name;
+    private final int version;
+    private boolean writeAheadLogging;
+    private SQLiteDatabase database;
+
+    public SQLiteOpenHelper(Context context, String name, SQLiteDatabase.CursorFactory factory, int version) {
+        if (version < 1)
+            throw new IllegalArgumentException("Version must be >= 1, was " + version);
+        this.context = context;
+        this.name = name;
+        this.version = version;
+    }
+
+    public String getDatabaseName() {
+        return name;
+    }
+
+    public synchronized void setWriteAheadLoggingEnabled(boolean enabled) {
+        writeAheadLogging = enabled;
+        if (database != null) {
+            if (enabled)
+                database.enableWriteAheadLogging();
+            else
+                database.disableWriteAheadLogging();
+        }
+    }
+
+    public SQLiteDatabase getWritableDatabase() {
+        return getDatabase();
+    }
+
+    public SQLiteDatabase getReadableDatabase() {
+        return getDatabase();
+    }
+
+    private synchronized SQLiteDatabase getDatabase() {
+        if (database != null && database.isOpen())
+            return database;
+
+        String path = name == null ? ":memory:" : context.getDatabasePath(name).getPath();
+        SQLiteDatabase db;
+        try {
+            db = new SQLiteDatabase(DriverManager.getConnection("jdbc:sqlite:" + path), path);
+        } catch (SQLException e) {
+            throw SQLiteDatabase.translate(e);
+        }
+
+        onConfigure(db);
+        if (writeAheadLogging)
+            db.enableWriteAheadLogging();
+
+        int current = db.getVersion();
+        if (current != version) {
+            db.beginTransaction();
+            try {
+                if (current == 0)
+                    onCreate(db);
+                else if (current > version)
+                    onDowngrade(db, current, version);
+                else
+                    onUpgrade(db, current, version);
+                db.setVersion(version);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        onOpen(db);
+        database = db;
+        return db;
+    }
+
+    public synchronized void close() {
+        if (database != null && database.isOpen())
+            database.close();
+        database = null;
+    }
+
+    public void onConfigure(SQLiteDatabase db) {
+    }
+
+    public abstract void onCreate(SQLiteDatabase db);
+
+    public abstract void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion);
+
+    public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        throw new SQLiteException("Can't downgrade database from version " + oldVersion + " to " + newVersion);
+    }
+
+    public void onOpen(SQLiteDatabase db) {
+    }
+}
@@ -0,0 +1,86 @@
+package android.database.sqlite;
+
+import java.io.Closeable;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Stand-in of SQLiteProgram, a prepared statement of JDBC connection of SQLiteDatabase
+ */
+public abstract class SQLiteProgram implements Closeable {
+    final SQLiteDatabase database;
+    final PreparedStatement statement;
+
+    SQLiteProgram(SQLiteDatabase database, PreparedStatement statement) {
+        this.database = database;
+        this.statement = statement;
+    }
+
+    public void bindNull(int index) {
+        try {
+            statement.setObject(index, null);
+        } catch (SQLException e) {
+            throw SQLiteDatabase.translate(e);
+        }
+    }
+
+    public void bindLong(int index, long value) {
+        try {
+            statement.setLong(index, value);
+        } catch (SQLException e) {
+            throw SQLiteDatabase.translate(e);
+        }
+    }
+
+    public void bindDouble(int index, double value) {
+        try {
+            statement.setDouble(index, value);
+        } catch (SQLException e) {
+            throw SQLiteDatabase.translate(e);
+        }
+    }
+
+    public void bindString(int index, String value) {
+        if (value == null)
+            throw new IllegalArgumentException("the bind value at index " + index + " is null");
+        try {
+            statement.setString(index, value);
+        } catch (SQLException e) {
+            throw SQLiteDatabase.translate(e);
+        }
+    }
+
+    public void bindBlob(int index, byte[] value) {
+        if (value == null)
+            throw new IllegalArgumentException("the bind value at index " + index + " is null");
+        try {
+            statement.setBytes(index, value);
+        } catch (SQLException e) {
+            throw SQLiteDatabase.translate(e);
+        }
+    }
+
+    public void bindAllArgsAsStrings(String[] bindArgs) {
+        if (bindArgs != null) {
+            for (int i = bindArgs.length; i != 0; i--)
+                bindString(i, bindArgs[i - 1]);
+        }
+    }
+
+    public void clearBindings() {
+        try {
+            statement.clearParameters();
+        } catch (SQLException e) {
+            throw SQLiteDatabase.translate(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            throw SQLiteDatabase.translate(e);
+        }
+    }
+}
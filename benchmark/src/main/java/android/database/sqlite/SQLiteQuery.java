@@ -0,0 +1,27 @@
+package android.database.sqlite;
+
+import android.database.MemoryCursor;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Stand-in of SQLiteQuery, select statement given to the cursor factory of rawQueryWithFactory, it is run
+ * and closed by SQLiteCursor
+ */
+public final class SQLiteQuery extends SQLiteProgram {
+    SQLiteQuery(SQLiteDatabase database, PreparedStatement statement) {
+        super(database, statement);
+    }
+
+    MemoryCursor execute() {
+        try (ResultSet rs = statement.executeQuery()) {
+            return new MemoryCursor(rs);
+        } catch (SQLException e) {
+            throw SQLiteDatabase.translate(e);
+        } finally {
+            close();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package android.database.sqlite;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public final class SQLiteStatement extends SQLiteProgram {
+    SQLiteStatement(SQLiteDatabase database, PreparedStatement statement) {
+        super(database, statement);
+    }
+
+    public void execute() {
+        try {
+            statement.execute();
+        } catch (SQLException e) {
+            throw SQLiteDatabase.translate(e);
+        }
+    }
+
+    public int executeUpdateDelete() {
+        try {
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw SQLiteDatabase.translate(e);
+        }
+    }
+
+    /**
+     * @return row id of inserted row, -1 if no row was inserted
+     */
+    public long executeInsert() {
+        try {
+            if (statement.executeUpdate() == 0)
+                return -1;
+            return database.getLastInsertRowId();
+        } catch (SQLException e) {
+            throw SQLiteDatabase.translate(e);
+        }
+    }
+
+    public long simpleQueryForLong() {
+        try (ResultSet rs = statement.executeQuery()) {
+            if (!rs.next())
+                throw new SQLiteDoneException();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw SQLiteDatabase.translate(e);
+        }
+    }
+
+    public String simpleQueryForString() {
+        try (ResultSet rs = statement.executeQuery()) {
+            if (!rs.next())
+                throw new SQLiteDoneException();
+            return rs.getString(1);
+        } catch (SQLException e) {
+            throw SQLiteDatabase.translate(e);
+        }
+    }
+}
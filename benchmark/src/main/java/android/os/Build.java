@@ -0,0 +1,14 @@
+package android.os;
+
+/**
+ * Stand-in of android.os.Build, reports the API level of a current device
+ */
+public class Build {
+    public static class VERSION {
+        public static final int SDK_INT = 31;
+    }
+
+    public static class VERSION_CODES {
+        public static final int LOLLIPOP = 21;
+    }
+}
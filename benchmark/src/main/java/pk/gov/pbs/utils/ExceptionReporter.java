@@ -0,0 +1,10 @@
+package pk.gov.pbs.utils;
+
+/**
+ * Stand-in of ExceptionReporter of Utils module, which is an Android library
+ */
+public class ExceptionReporter {
+    public static void handle(Throwable t) {
+        t.printStackTrace();
+    }
+}
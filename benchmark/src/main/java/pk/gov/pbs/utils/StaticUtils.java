@@ -0,0 +1,14 @@
+package pk.gov.pbs.utils;
+
+import android.os.Handler;
+
+/**
+ * Stand-in of StaticUtils of Utils module, which is an Android library
+ */
+public class StaticUtils {
+    private static final Handler handler = new Handler();
+
+    public static Handler getHandler() {
+        return handler;
+    }
+}
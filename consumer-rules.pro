@@ -0,0 +1,14 @@
+# Generated model adapters are looked up by name (<Model>_ModelAdapter next to the model class)
+-keepnames @pk.gov.pbs.database.annotations.Table class *
+-keep class **_ModelAdapter {
+    <init>();
+}
+-keep class * implements pk.gov.pbs.database.ModelAdapter {
+    public <init>();
+}
+
+# Field names are the column names read by reflection (ModelMetadata, update, upsert, row mapping),
+# fields inherited from a class without @Table need a rule of their own in the app
+-keepclassmembernames @pk.gov.pbs.database.annotations.Table class * {
+    <fields>;
+}
@@ -0,0 +1,412 @@
+package pk.gov.pbs.database.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates ModelAdapter for every class annotated with Table. Generated adapter has the same columns and
+ * column order as the reflection based code of ModelBasedDatabaseHelper, public and protected instance fields
+ * are the columns and field names are used as column names. CREATE TABLE statement is not generated, it is
+ * built from ModelMetadata by ModelStore for models with and without adapter so the schema signature of
+ * SchemaMigration does not depend on whether the adapter is present.
+ * Adapter is not generated (and helper keeps using reflection) if the model can not be accessed directly
+ * from its package, i,e it has no accessible default constructor, a column has unsupported type or a protected
+ * column is inherited from a class in another package
+ */
+@SupportedAnnotationTypes(ModelAdapterProcessor.TABLE)
+public class ModelAdapterProcessor extends AbstractProcessor {
+    static final String ANNOTATIONS = "pk.gov.pbs.database.annotations.";
+    static final String TABLE = ANNOTATIONS + "Table";
+    static final String SUFFIX = "_ModelAdapter";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS)
+                    continue;
+                TypeElement model = (TypeElement) element;
+                try {
+                    String reason = canGenerate(model);
+                    if (reason != null) {
+                        note(model, "ModelAdapter not generated for " + model.getQualifiedName() + ", " + reason);
+                        continue;
+                    }
+                    generate(model);
+                } catch (IOException e) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "Failed to write ModelAdapter: " + e.getMessage(), model);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void note(Element element, String message){
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, message, element);
+    }
+
+    private String canGenerate(TypeElement model){
+        if (model.getModifiers().contains(Modifier.PRIVATE) || model.getModifiers().contains(Modifier.ABSTRACT))
+            return "model class is private or abstract";
+        if (model.getNestingKind() == NestingKind.MEMBER && !model.getModifiers().contains(Modifier.STATIC))
+            return "inner class is not static";
+        if (model.getNestingKind() == NestingKind.LOCAL || model.getNestingKind() == NestingKind.ANONYMOUS)
+            return "model class is local or anonymous";
+        if (!model.getTypeParameters().isEmpty())
+            return "model class is generic";
+
+        boolean hasDefaultConstructor = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(model.getEnclosedElements()))
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE))
+                hasDefaultConstructor = true;
+        if (!hasDefaultConstructor)
+            return "model has no accessible default constructor";
+
+        String pkg = getPackage(model);
+        for (VariableElement field : getColumns(model)) {
+            if (getKind(field.asType()) == null)
+                return "type of field " + field.getSimpleName() + " is not supported";
+            if (field.getModifiers().contains(Modifier.FINAL))
+                return "field " + field.getSimpleName() + " is final";
+            if (field.getModifiers().contains(Modifier.PROTECTED)
+                    && !pkg.equals(getPackage((TypeElement) field.getEnclosingElement())))
+                return "protected field " + field.getSimpleName() + " is inherited from another package";
+        }
+        return null;
+    }
+
+    private String getPackage(TypeElement type){
+        return processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+    }
+
+    /**
+     * @return public and protected instance fields of model and its super classes, base class fields first
+     */
+    private List<VariableElement> getColumns(TypeElement model){
+        List<TypeElement> hierarchy = new ArrayList<>();
+        TypeElement type = model;
+        while (type != null && !type.getQualifiedName().contentEquals("java.lang.Object")) {
+            hierarchy.add(0, type);
+            TypeMirror superclass = type.getSuperclass();
+            type = superclass.getKind() == TypeKind.DECLARED
+                    ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+
+        Map<String, VariableElement> fields = new LinkedHashMap<>();
+        for (TypeElement t : hierarchy) {
+            for (VariableElement field : ElementFilter.fieldsIn(t.getEnclosedElements())) {
+                if (field.getModifiers().contains(Modifier.STATIC))
+                    continue;
+                fields.put(field.getSimpleName().toString(), field);
+            }
+        }
+
+        List<VariableElement> columns = new ArrayList<>();
+        for (VariableElement field : fields.values())
+            if (field.getModifiers().contains(Modifier.PUBLIC) || field.getModifiers().contains(Modifier.PROTECTED))
+                columns.add(field);
+        return columns;
+    }
+
+    private Kind getKind(TypeMirror type){
+        switch (type.getKind()) {
+            case INT: return Kind.INT;
+            case LONG: return Kind.LONG;
+            case SHORT: return Kind.SHORT;
+            case BYTE: return Kind.BYTE;
+            case DOUBLE: return Kind.DOUBLE;
+            case FLOAT: return Kind.FLOAT;
+            case BOOLEAN: return Kind.BOOLEAN;
+            case CHAR: return Kind.CHAR;
+            case ARRAY: {
+                TypeMirror component = ((ArrayType) type).getComponentType();
+                if (component.getKind() == TypeKind.BYTE)
+                    return Kind.BLOB;
+                if (component.getKind() == TypeKind.CHAR)
+                    return Kind.CHAR_ARRAY;
+                String name = getQualifiedName(component);
+                if ("java.lang.Byte".equals(name))
+                    return Kind.BLOB_OBJECT;
+                if ("java.lang.Character".equals(name))
+                    return Kind.CHARACTER_ARRAY;
+                return null;
+            }
+            case DECLARED:
+                switch (getQualifiedName(type)) {
+                    case "java.lang.String":
+                    case "java.lang.CharSequence":
+                        return Kind.STRING;
+                    case "java.lang.Character": return Kind.CHARACTER;
+                    case "java.lang.Integer": return Kind.INTEGER;
+                    case "java.lang.Long": return Kind.LONG_OBJECT;
+                    case "java.lang.Short": return Kind.SHORT_OBJECT;
+                    case "java.lang.Byte": return Kind.BYTE_OBJECT;
+                    case "java.lang.Double": return Kind.DOUBLE_OBJECT;
+                    case "java.lang.Float": return Kind.FLOAT_OBJECT;
+                    case "java.lang.Boolean": return Kind.BOOLEAN_OBJECT;
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private String getQualifiedName(TypeMirror type){
+        if (type.getKind() != TypeKind.DECLARED)
+            return "";
+        return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+    }
+
+    private void generate(TypeElement model) throws IOException {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(model);
+        String packageName = pkg.getQualifiedName().toString();
+        String modelName = model.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(model).toString();
+        String adapterName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                .replace('$', '_') + SUFFIX;
+        List<VariableElement> columns = getColumns(model);
+
+        StringBuilder sb = new StringBuilder();
+        if (!packageName.isEmpty())
+            sb.append("package ").append(packageName).append(";\n\n");
+        sb.append("import pk.gov.pbs.database.FieldType;\n")
+                .append("import pk.gov.pbs.database.ModelAdapter;\n")
+                .append("import pk.gov.pbs.database.ValueBinder;\n")
+                .append("import pk.gov.pbs.database.storage.StorageCursor;\n")
+                .append("import pk.gov.pbs.database.storage.StorageStatement;\n\n")
+                .append("/**\n * Generated by ").append(getClass().getName()).append(", do not edit\n */\n")
+                .append("public final class ").append(adapterName)
+                .append(" implements ModelAdapter<").append(modelName).append("> {\n");
+
+        sb.append("    private static final String[] COLUMNS = {");
+        for (int i = 0; i < columns.size(); i++)
+            sb.append(i == 0 ? "" : ", ").append(literal(columns.get(i).getSimpleName().toString()));
+        sb.append("};\n");
+        sb.append("\n");
+
+        sb.append("    @Override\n    public Class<").append(modelName).append("> getModelClass() {\n")
+                .append("        return ").append(modelName).append(".class;\n    }\n\n");
+        sb.append("    @Override\n    public String[] getColumnNames() {\n")
+                .append("        return COLUMNS.clone();\n    }\n\n");
+
+        sb.append("    @Override\n    public void bind(StorageStatement s, ").append(modelName).append(" m) {\n");
+        for (int i = 0; i < columns.size(); i++)
+            appendBind(sb, i + 1, columns.get(i));
+        sb.append("    }\n\n");
+
+        sb.append("    @Override\n    public ").append(modelName).append(" read(StorageCursor c, int[] plan) {\n")
+                .append("        ").append(modelName).append(" m = new ").append(modelName).append("();\n")
+                .append("        int i;\n");
+        for (int i = 0; i < columns.size(); i++)
+            appendRead(sb, i, columns.get(i));
+        sb.append("        return m;\n    }\n}\n");
+
+        String qualifiedAdapterName = packageName.isEmpty() ? adapterName : packageName + "." + adapterName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedAdapterName, model).openWriter()) {
+            writer.write(sb.toString());
+        }
+    }
+
+    private void appendBind(StringBuilder sb, int index, VariableElement field){
+        String value = "m." + field.getSimpleName();
+        Kind kind = getKind(field.asType());
+        switch (kind) {
+            case INT:
+            case LONG:
+            case SHORT:
+            case BYTE:
+                sb.append("        s.bindLong(").append(index).append(", ").append(value).append(");\n");
+                return;
+            case DOUBLE:
+            case FLOAT:
+                sb.append("        s.bindDouble(").append(index).append(", ").append(value).append(");\n");
+                return;
+            case BOOLEAN:
+                sb.append("        s.bindLong(").append(index).append(", ").append(value).append(" ? 1 : 0);\n");
+                return;
+            case CHAR:
+                sb.append("        s.bindString(").append(index).append(", String.valueOf(").append(value).append("));\n");
+                return;
+            case CHARACTER_ARRAY:
+            case BLOB_OBJECT:
+                sb.append("        ValueBinder.bindValue(s, ").append(index).append(", FieldType.")
+                        .append(kind.name()).append(", ").append(value).append(");\n");
+                return;
+        }
+
+        sb.append("        if (").append(value).append(" == null)\n")
+                .append("            s.bindNull(").append(index).append(");\n")
+                .append("        else\n            ");
+        switch (kind) {
+            case INTEGER:
+            case LONG_OBJECT:
+            case SHORT_OBJECT:
+            case BYTE_OBJECT:
+                sb.append("s.bindLong(").append(index).append(", ").append(value).append(");\n");
+                break;
+            case DOUBLE_OBJECT:
+            case FLOAT_OBJECT:
+                sb.append("s.bindDouble(").append(index).append(", ").append(value).append(");\n");
+                break;
+            case BOOLEAN_OBJECT:
+                sb.append("s.bindLong(").append(index).append(", ").append(value).append(" ? 1 : 0);\n");
+                break;
+            case CHAR_ARRAY:
+                sb.append("s.bindString(").append(index).append(", new String(").append(value).append("));\n");
+                break;
+            case BLOB:
+                sb.append("s.bindBlob(").append(index).append(", ").append(value).append(");\n");
+                break;
+            default:
+                sb.append("s.bindString(").append(index).append(", ").append(value).append(".toString());\n");
+        }
+    }
+
+    private void appendRead(StringBuilder sb, int column, VariableElement field){
+        String target = "m." + field.getSimpleName();
+        sb.append("        if ((i = plan[").append(column).append("]) != -1)\n            ");
+        switch (getKind(field.asType())) {
+            case STRING:
+                sb.append(target).append(" = c.getString(i);\n");
+                break;
+            case CHAR:
+                sb.append(target).append(" = c.isNull(i) || c.getString(i).isEmpty() ? '\\0' : c.getString(i).charAt(0);\n");
+                break;
+            case CHARACTER:
+                sb.append(target).append(" = c.isNull(i) || c.getString(i).isEmpty() ? null : Character.valueOf(c.getString(i).charAt(0));\n");
+                break;
+            case CHAR_ARRAY:
+                sb.append(target).append(" = c.isNull(i) ? null : c.getString(i).toCharArray();\n");
+                break;
+            case CHARACTER_ARRAY:
+                sb.append(target).append(" = c.isNull(i) ? null : FieldType.box(c.getString(i).toCharArray());\n");
+                break;
+            case INT:
+                sb.append(target).append(" = (int) c.getLong(i);\n");
+                break;
+            case INTEGER:
+                sb.append(target).append(" = c.isNull(i) ? null : Integer.valueOf((int) c.getLong(i));\n");
+                break;
+            case LONG:
+                sb.append(target).append(" = c.getLong(i);\n");
+                break;
+            case LONG_OBJECT:
+                sb.append(target).append(" = c.isNull(i) ? null : Long.valueOf(c.getLong(i));\n");
+                break;
+            case SHORT:
+                sb.append(target).append(" = (short) c.getLong(i);\n");
+                break;
+            case SHORT_OBJECT:
+                sb.append(target).append(" = c.isNull(i) ? null : Short.valueOf((short) c.getLong(i));\n");
+                break;
+            case BYTE:
+                sb.append(target).append(" = (byte) c.getLong(i);\n");
+                break;
+            case BYTE_OBJECT:
+                sb.append(target).append(" = c.isNull(i) ? null : Byte.valueOf((byte) c.getLong(i));\n");
+                break;
+            case DOUBLE:
+                sb.append(target).append(" = c.getDouble(i);\n");
+                break;
+            case DOUBLE_OBJECT:
+                sb.append(target).append(" = c.isNull(i) ? null : Double.valueOf(c.getDouble(i));\n");
+                break;
+            case FLOAT:
+                sb.append(target).append(" = (float) c.getDouble(i);\n");
+                break;
+            case FLOAT_OBJECT:
+                sb.append(target).append(" = c.isNull(i) ? null : Float.valueOf((float) c.getDouble(i));\n");
+                break;
+            case BOOLEAN:
+                sb.append(target).append(" = c.getLong(i) == 1;\n");
+                break;
+            case BOOLEAN_OBJECT:
+                sb.append(target).append(" = c.isNull(i) ? null : Boolean.valueOf(c.getLong(i) == 1);\n");
+                break;
+            case BLOB:
+                sb.append(target).append(" = c.getBlob(i);\n");
+                break;
+            case BLOB_OBJECT:
+                sb.append(target).append(" = c.isNull(i) ? null : FieldType.box(c.getBlob(i));\n");
+                break;
+        }
+    }
+
+    private static String literal(String value){
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Supported field types, names match the constants of pk.gov.pbs.database.FieldType
+     */
+    enum Kind {
+        STRING(" TEXT "),
+        CHAR(" TEXT "),
+        CHARACTER(" TEXT "),
+        CHAR_ARRAY(" TEXT "),
+        CHARACTER_ARRAY(" TEXT "),
+        INT(" INTEGER "),
+        INTEGER(" INTEGER "),
+        LONG(" INTEGER "),
+        LONG_OBJECT(" INTEGER "),
+        SHORT(" INTEGER "),
+        SHORT_OBJECT(" INTEGER "),
+        BYTE(" INTEGER "),
+        BYTE_OBJECT(" INTEGER "),
+        DOUBLE(" REAL "),
+        DOUBLE_OBJECT(" REAL "),
+        FLOAT(" REAL "),
+        FLOAT_OBJECT(" REAL "),
+        BOOLEAN(" BOOLEAN "),
+        BOOLEAN_OBJECT(" BOOLEAN "),
+        BLOB(" BLOB "),
+        BLOB_OBJECT(" BLOB ");
+
+        final String sqliteType;
+
+        Kind(String sqliteType){
+            this.sqliteType = sqliteType;
+        }
+    }
+}
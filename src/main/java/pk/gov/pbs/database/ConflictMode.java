@@ -0,0 +1,27 @@
+package pk.gov.pbs.database;
+
+/**
+ * Conflict resolution used by insert statements, these map directly to
+ * SQLite's INSERT OR [ROLLBACK|ABORT|FAIL|IGNORE|REPLACE] clauses
+ */
+public enum ConflictMode {
+    NONE("INSERT INTO "),
+    ROLLBACK("INSERT OR ROLLBACK INTO "),
+    ABORT("INSERT OR ABORT INTO "),
+    FAIL("INSERT OR FAIL INTO "),
+    IGNORE("INSERT OR IGNORE INTO "),
+    REPLACE("INSERT OR REPLACE INTO ");
+
+    private final String statement;
+
+    ConflictMode(String statement){
+        this.statement = statement;
+    }
+
+    /**
+     * @return beginning of insert statement for this conflict mode, i,e 'INSERT OR REPLACE INTO '
+     */
+    public String getStatement() {
+        return statement;
+    }
+}
@@ -0,0 +1,250 @@
+package pk.gov.pbs.database;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import pk.gov.pbs.utils.ExceptionReporter;
+import pk.gov.pbs.utils.StaticUtils;
+
+/**
+ * Future which is completed explicitly by the code producing the result, returned by every method of
+ * ModelBasedRepository. Besides blocking get() the result can be consumed with callbacks, which are delivered
+ * on main thread by default, and futures can be chained with thenApply and thenCompose so that no thread has
+ * to wait for the database
+ * @param <T> type of result
+ */
+public class DatabaseFuture<T> implements Future<T> {
+    private static final int PENDING = 0;
+    private static final int SUCCEEDED = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    private static final Executor MAIN_THREAD = command -> StaticUtils.getHandler().post(command);
+    private static final Executor DIRECT = Runnable::run;
+
+    private int state = PENDING;
+    private T value;
+    private Throwable exception;
+    private List<Runnable> listeners = new ArrayList<>();
+
+    /**
+     * @return executor which runs commands on main thread
+     */
+    public static Executor mainThreadExecutor(){
+        return MAIN_THREAD;
+    }
+
+    /**
+     * @return future already completed with given value
+     */
+    public static <T> DatabaseFuture<T> completed(T value){
+        DatabaseFuture<T> future = new DatabaseFuture<>();
+        future.set(value);
+        return future;
+    }
+
+    /**
+     * completes this future with given value
+     * @return false if future was already completed
+     */
+    public boolean set(T value){
+        return complete(SUCCEEDED, value, null);
+    }
+
+    /**
+     * completes this future with given exception, get() will throw ExecutionException with this cause
+     * @return false if future was already completed
+     */
+    public boolean setException(Throwable exception){
+        return complete(FAILED, null, exception);
+    }
+
+    protected boolean complete(int newState, T value, Throwable exception){
+        List<Runnable> pending;
+        synchronized (this) {
+            if (state != PENDING)
+                return false;
+            this.state = newState;
+            this.value = value;
+            this.exception = exception;
+            pending = listeners;
+            listeners = null;
+            notifyAll();
+        }
+
+        for (Runnable listener : pending)
+            listener.run();
+        return true;
+    }
+
+    /**
+     * runs given listener on given executor once this future is completed, immediately if it is already completed
+     * @param listener listener to run
+     * @param executor executor to run listener on
+     */
+    public void addListener(@NonNull Runnable listener, @NonNull Executor executor){
+        Runnable task = () -> {
+            try {
+                executor.execute(listener);
+            } catch (RuntimeException e) {
+                ExceptionReporter.handle(e);
+            }
+        };
+
+        synchronized (this) {
+            if (state == PENDING) {
+                listeners.add(task);
+                return;
+            }
+        }
+        task.run();
+    }
+
+    /**
+     * delivers the result to callback on main thread
+     */
+    public DatabaseFuture<T> addCallback(@NonNull Callback<? super T> callback){
+        return addCallback(callback, MAIN_THREAD);
+    }
+
+    /**
+     * delivers the result to callback on given executor, onSuccess is called with the value or onFailure with
+     * the exception (CancellationException if future was cancelled)
+     * @return this future
+     */
+    public DatabaseFuture<T> addCallback(@NonNull Callback<? super T> callback, @NonNull Executor executor){
+        addListener(() -> {
+            T result;
+            try {
+                result = getDone();
+            } catch (Throwable t) {
+                callback.onFailure(t);
+                return;
+            }
+            callback.onSuccess(result);
+        }, executor);
+        return this;
+    }
+
+    /**
+     * @return future completed with the value of this future transformed by given function, function is called on
+     * the thread which completes this future and must not block. If this future fails, returned future fails too
+     */
+    public <R> DatabaseFuture<R> thenApply(@NonNull Function<? super T, ? extends R> function){
+        return thenApply(function, DIRECT);
+    }
+
+    /**
+     * @return future completed with the value of this future transformed by given function on given executor
+     */
+    public <R> DatabaseFuture<R> thenApply(@NonNull Function<? super T, ? extends R> function, @NonNull Executor executor){
+        DatabaseFuture<R> result = new DatabaseFuture<>();
+        addListener(() -> {
+            try {
+                result.set(function.apply(getDone()));
+            } catch (Throwable t) {
+                result.setException(t);
+            }
+        }, executor);
+        return result;
+    }
+
+    /**
+     * @return future completed with the result of future returned by given function, i,e to query the rows
+     * of another table once the result of this future is known
+     */
+    public <R> DatabaseFuture<R> thenCompose(@NonNull Function<? super T, ? extends DatabaseFuture<R>> function){
+        DatabaseFuture<R> result = new DatabaseFuture<>();
+        addListener(() -> {
+            DatabaseFuture<R> next;
+            try {
+                next = function.apply(getDone());
+            } catch (Throwable t) {
+                result.setException(t);
+                return;
+            }
+            if (next == null) {
+                result.set(null);
+                return;
+            }
+            next.addListener(() -> {
+                try {
+                    result.set(next.getDone());
+                } catch (Throwable t) {
+                    result.setException(t);
+                }
+            }, DIRECT);
+        }, DIRECT);
+        return result;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return complete(CANCELLED, null, null);
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state != PENDING;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (state == PENDING)
+            wait();
+        return getResult();
+    }
+
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (state == PENDING) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                throw new TimeoutException();
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return getResult();
+    }
+
+    /**
+     * result of completed future, unwrapped from ExecutionException
+     */
+    private synchronized T getDone() throws Throwable {
+        if (state == CANCELLED)
+            throw new CancellationException();
+        if (state == FAILED)
+            throw exception;
+        return value;
+    }
+
+    private T getResult() throws ExecutionException {
+        if (state == CANCELLED)
+            throw new CancellationException();
+        if (state == FAILED)
+            throw new ExecutionException(exception);
+        return value;
+    }
+
+    public interface Callback<T> {
+        void onSuccess(T result);
+        void onFailure(Throwable throwable);
+    }
+
+    public interface Function<I, O> {
+        O apply(I input) throws Exception;
+    }
+}
@@ -0,0 +1,198 @@
+package pk.gov.pbs.database;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics listener which keeps latency histograms of total, SQLite, mapping and queue time for every operation and
+ * table. Histograms have logarithmic buckets (four per power of two, so percentiles are within 19% of actual value)
+ * held in atomic arrays, recording an event never takes a lock. Snapshot can be taken at any time while events are
+ * being recorded, it is not atomic across histograms
+ */
+public class DatabaseMetrics implements DatabaseMetricsListener {
+    private final ConcurrentHashMap<String, Stats> stats = new ConcurrentHashMap<>();
+
+    @Override
+    public void onOperation(Event event) {
+        String key = event.operation.name() + ':' + event.table;
+        Stats s = stats.get(key);
+        if (s == null) {
+            s = new Stats(event.operation, event.table);
+            Stats existing = stats.putIfAbsent(key, s);
+            if (existing != null)
+                s = existing;
+        }
+        s.record(event);
+    }
+
+    /**
+     * @return statistics of every operation and table recorded so far
+     */
+    @NonNull
+    public List<Snapshot> snapshot(){
+        List<Snapshot> result = new ArrayList<>(stats.size());
+        for (Stats s : stats.values())
+            result.add(s.snapshot());
+        return result;
+    }
+
+    /**
+     * @return statistics of given operation on given table, null if no such operation has been recorded
+     */
+    public Snapshot snapshot(Operation operation, String table){
+        Stats s = stats.get(operation.name() + ':' + table);
+        return s != null ? s.snapshot() : null;
+    }
+
+    public void reset(){
+        stats.clear();
+    }
+
+    private static final class Stats {
+        private final Operation operation;
+        private final String table;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        private final Histogram total = new Histogram();
+        private final Histogram sqlite = new Histogram();
+        private final Histogram mapping = new Histogram();
+        private final Histogram queue = new Histogram();
+
+        Stats(Operation operation, String table){
+            this.operation = operation;
+            this.table = table;
+        }
+
+        void record(Event event){
+            count.incrementAndGet();
+            rows.addAndGet(event.rows);
+            total.record(event.getTotalNanos());
+            sqlite.record(event.sqliteNanos);
+            mapping.record(event.mappingNanos);
+            queue.record(event.queueNanos);
+        }
+
+        Snapshot snapshot(){
+            return new Snapshot(operation, table, count.get(), rows.get(),
+                    total.snapshot(), sqlite.snapshot(), mapping.snapshot(), queue.snapshot());
+        }
+    }
+
+    /**
+     * Histogram of durations in nanoseconds, values below 4 have their own bucket, above that every power of two
+     * is split into four buckets
+     */
+    static final class Histogram {
+        private static final int BUCKETS = 248;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong max = new AtomicLong();
+
+        static int getBucket(long value){
+            if (value < 4)
+                return (int) Math.max(value, 0);
+            int msb = 63 - Long.numberOfLeadingZeros(value);
+            return (msb - 1) * 4 + (int) ((value >>> (msb - 2)) & 3);
+        }
+
+        /**
+         * @return largest value which falls in given bucket
+         */
+        static long getUpperBound(int bucket){
+            if (bucket < 4)
+                return bucket;
+            int msb = bucket / 4 + 1;
+            long lower = (long) (4 + bucket % 4) << (msb - 2);
+            return lower + (1L << (msb - 2)) - 1;
+        }
+
+        void record(long nanos){
+            buckets.incrementAndGet(getBucket(nanos));
+            long current = max.get();
+            while (nanos > current && !max.compareAndSet(current, nanos))
+                current = max.get();
+        }
+
+        Percentiles snapshot(){
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            long max = this.max.get();
+            return new Percentiles(total,
+                    percentile(counts, total, 0.50, max),
+                    percentile(counts, total, 0.95, max),
+                    percentile(counts, total, 0.99, max),
+                    max);
+        }
+
+        private static long percentile(long[] counts, long total, double percentile, long max){
+            if (total == 0)
+                return 0;
+            long rank = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return Math.min(getUpperBound(i), max);
+            }
+            return max;
+        }
+    }
+
+    public static final class Percentiles {
+        public final long count;
+        public final long p50Nanos;
+        public final long p95Nanos;
+        public final long p99Nanos;
+        public final long maxNanos;
+
+        Percentiles(long count, long p50Nanos, long p95Nanos, long p99Nanos, long maxNanos){
+            this.count = count;
+            this.p50Nanos = p50Nanos;
+            this.p95Nanos = p95Nanos;
+            this.p99Nanos = p99Nanos;
+            this.maxNanos = maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "{p50Ms=" + p50Nanos / 1e6 + ", p95Ms=" + p95Nanos / 1e6 + ", p99Ms=" + p99Nanos / 1e6 + ", maxMs=" + maxNanos / 1e6 + "}";
+        }
+    }
+
+    public static final class Snapshot {
+        public final Operation operation;
+        public final String table;
+        public final long count;
+        public final long rows;
+        public final Percentiles total;
+        public final Percentiles sqlite;
+        public final Percentiles mapping;
+        public final Percentiles queue;
+
+        Snapshot(Operation operation, String table, long count, long rows, Percentiles total, Percentiles sqlite, Percentiles mapping, Percentiles queue){
+            this.operation = operation;
+            this.table = table;
+            this.count = count;
+            this.rows = rows;
+            this.total = total;
+            this.sqlite = sqlite;
+            this.mapping = mapping;
+            this.queue = queue;
+        }
+
+        @Override
+        public String toString() {
+            return operation + " " + table + "{count=" + count + ", rows=" + rows + ", total=" + total
+                    + ", sqlite=" + sqlite + ", mapping=" + mapping + ", queue=" + queue + "}";
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package pk.gov.pbs.database;
+
+/**
+ * Receives an event for every query and write executed by ModelBasedDatabaseHelper, set with
+ * ModelBasedDatabaseHelper.setMetricsListener or ModelBasedRepository.setMetricsListener. Events are delivered on
+ * the thread which executed the operation right after it finished, so implementation must be thread safe and fast.
+ * DatabaseMetrics is the built in implementation which keeps latency histograms
+ */
+public interface DatabaseMetricsListener {
+    void onOperation(Event event);
+
+    enum Operation {
+        QUERY,
+        INSERT,
+        REPLACE,
+        UPSERT,
+        UPDATE,
+        DELETE,
+        EXEC
+    }
+
+    final class Event {
+        public final Operation operation;
+        /**
+         * lower case name of table read or written, for queries reading more tables it is the first one,
+         * null if it could not be found
+         */
+        public final String table;
+        /**
+         * rows returned by query or written by write
+         */
+        public final int rows;
+        /**
+         * time spent in SQLite executing the statement and stepping through rows
+         */
+        public final long sqliteNanos;
+        /**
+         * time spent mapping rows to objects, 0 for writes
+         */
+        public final long mappingNanos;
+        /**
+         * time the operation waited in executor of ModelBasedRepository before it started, 0 if it was called directly
+         */
+        public final long queueNanos;
+
+        Event(Operation operation, String table, int rows, long sqliteNanos, long mappingNanos, long queueNanos){
+            this.operation = operation;
+            this.table = table;
+            this.rows = rows;
+            this.sqliteNanos = sqliteNanos;
+            this.mappingNanos = mappingNanos;
+            this.queueNanos = queueNanos;
+        }
+
+        /**
+         * @return time from submission to completion, i,e queue, SQLite and mapping time together
+         */
+        public long getTotalNanos() {
+            return queueNanos + sqliteNanos + mappingNanos;
+        }
+
+        @Override
+        public String toString() {
+            return operation + " " + table + " rows=" + rows + ", sqliteMs=" + sqliteNanos / 1e6
+                    + ", mappingMs=" + mappingNanos / 1e6 + ", queueMs=" + queueNanos / 1e6;
+        }
+    }
+}
@@ -1,20 +1,172 @@
 package pk.gov.pbs.database;
 
-import android.os.AsyncTask;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import pk.gov.pbs.utils.ExceptionReporter;
+import pk.gov.pbs.utils.StaticUtils;
+
+/**
+ * Runs IDatabaseOperation on given executor and delivers its result to postExecute on main thread.
+ * Unlike AsyncTask it does not share the global serial queue of the app, operations run on whichever
+ * executor is provided (i,e write executor of ModelBasedRepository). Operation can be cancelled, in which case
+ * postExecute is not called, and operations can be chained with then(IDatabaseOperation), next operation
+ * runs on the same executor after this one has completed successfully
+ * @param <T> type of result of operation
+ */
+public class DatabaseOperationExecutor<T> {
+    private final IDatabaseOperation<T> dbOperation;
+    private final DatabaseFuture<T> future = new DatabaseFuture<>();
+    private final List<Runnable> continuations = new ArrayList<>();
+    private Executor executor;
+    private ModelBasedDatabaseHelper database;
+    private Thread runner;
 
-public class DatabaseOperationExecutor<T> extends AsyncTask<ModelBasedDatabaseHelper, Void, T> {
-    IDatabaseOperation<T> dbOperation;
     public DatabaseOperationExecutor(IDatabaseOperation<T> operation){
         dbOperation = operation;
     }
 
-    @Override
-    protected final T doInBackground(ModelBasedDatabaseHelper... modelBasedDatabaseHelpers) {
-        return dbOperation.execute(modelBasedDatabaseHelpers[0]);
+    /**
+     * executes operation on given executor
+     * @param executor executor to run operation on
+     * @param db database passed to operation
+     * @return this executor
+     * @throws IllegalStateException in case operation has already been executed
+     */
+    public DatabaseOperationExecutor<T> executeOnExecutor(Executor executor, ModelBasedDatabaseHelper db){
+        synchronized (this) {
+            if (this.executor != null)
+                throw new IllegalStateException("Operation has already been executed");
+            this.executor = executor;
+            this.database = db;
+        }
+
+        try {
+            executor.execute(this::run);
+        } catch (RejectedExecutionException e) {
+            fail(e);
+        }
+        return this;
+    }
+
+    private void run(){
+        synchronized (this) {
+            if (future.isDone())
+                return;
+            runner = Thread.currentThread();
+        }
+
+        T result;
+        try {
+            result = dbOperation.execute(database);
+        } catch (RuntimeException e) {
+            fail(e);
+            return;
+        } finally {
+            synchronized (this) {
+                runner = null;
+            }
+            Thread.interrupted();
+        }
+
+        if (future.set(result)) {
+            StaticUtils.getHandler().post(() -> {
+                if (!future.isCancelled())
+                    dbOperation.postExecute(result);
+            });
+            runContinuations();
+        }
+    }
+
+    private void fail(Exception e){
+        ExceptionReporter.handle(e);
+        if (future.setException(e))
+            runContinuations();
+    }
+
+    private void runContinuations(){
+        List<Runnable> pending;
+        synchronized (continuations) {
+            pending = new ArrayList<>(continuations);
+            continuations.clear();
+        }
+        for (Runnable continuation : pending)
+            continuation.run();
+    }
+
+    /**
+     * chains next operation, it is executed on the same executor and with the same database after this operation
+     * has completed successfully. If this operation fails or is cancelled next operation is cancelled as well
+     * @param next operation to execute after this one
+     * @return executor of next operation
+     * @param <R> type of result of next operation
+     */
+    public <R> DatabaseOperationExecutor<R> then(IDatabaseOperation<R> next){
+        DatabaseOperationExecutor<R> nextExecutor = new DatabaseOperationExecutor<>(next);
+        Runnable continuation = () -> {
+            if (future.isCancelled() || !isSucceeded())
+                nextExecutor.cancel(false);
+            else
+                nextExecutor.executeOnExecutor(executor, database);
+        };
+
+        synchronized (continuations) {
+            if (!future.isDone()) {
+                continuations.add(continuation);
+                return nextExecutor;
+            }
+        }
+        continuation.run();
+        return nextExecutor;
+    }
+
+    private boolean isSucceeded(){
+        try {
+            future.get();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * cancels operation, postExecute is not called for cancelled operation
+     * @param mayInterruptIfRunning whether to interrupt the thread executing the operation
+     * @return false if operation has already completed
+     */
+    public boolean cancel(boolean mayInterruptIfRunning){
+        boolean cancelled = future.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            synchronized (this) {
+                if (mayInterruptIfRunning && runner != null)
+                    runner.interrupt();
+            }
+            runContinuations();
+        }
+        return cancelled;
+    }
+
+    public boolean isCancelled(){
+        return future.isCancelled();
+    }
+
+    public boolean isDone(){
+        return future.isDone();
+    }
+
+    /**
+     * waits for operation to complete and returns its result, must not be called on main thread
+     */
+    public T get() throws InterruptedException, ExecutionException {
+        return future.get();
     }
 
-    @Override
-    protected final void onPostExecute(T list) {
-        dbOperation.postExecute(list);
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return future.get(timeout, unit);
     }
 }
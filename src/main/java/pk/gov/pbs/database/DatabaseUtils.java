@@ -5,7 +5,6 @@ import android.database.Cursor;
 import androidx.annotation.Nullable;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -13,19 +12,15 @@ import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
-import pk.gov.pbs.database.annotations.PrimaryKey;
-import pk.gov.pbs.database.annotations.Unique;
 import pk.gov.pbs.database.exceptions.ColumnNotFound;
+import pk.gov.pbs.database.storage.AndroidStorage;
+import pk.gov.pbs.database.storage.StorageCursor;
 import pk.gov.pbs.utils.ExceptionReporter;
 
 public class DatabaseUtils {
     public static Field getPrimaryKeyField(Class<?> model){
-        for (Field field : model.getFields()){
-            if (field.getAnnotation(PrimaryKey.class) != null){
-                return field;
-            }
-        }
-        return null;
+        ModelMetadata.Column pk = ModelMetadata.of(model).getPrimaryKey();
+        return pk != null ? pk.getField() : null;
     }
 
     public static List<Field> getUniqueKeyFields(Class<?> model, @Nullable String key){
@@ -38,56 +33,26 @@ public class DatabaseUtils {
     }
 
     public static HashMap<String, ArrayList<Field>> getUniqueKeyFields(Class<?> model){
+        Map<String, List<ModelMetadata.Column>> uniqueKeys = ModelMetadata.of(model).getUniqueKeys();
+        if (uniqueKeys.isEmpty())
+            return null;
+
         HashMap<String, ArrayList<Field>> uniqueConstraint = new HashMap<>();
-        for (Field field : model.getFields()){
-            Unique uAno = field.getAnnotation(Unique.class);
-            if (uAno != null){
-                if (uniqueConstraint.containsKey(uAno.index())){
-                    uniqueConstraint.get(uAno.index()).add(field);
-                } else {
-                    ArrayList<Field> cols = new ArrayList<>();
-                    cols.add(field);
-                    uniqueConstraint.put(uAno.index(), cols);
-                }
-            }
+        for (Map.Entry<String, List<ModelMetadata.Column>> entry : uniqueKeys.entrySet()){
+            ArrayList<Field> cols = new ArrayList<>();
+            for (ModelMetadata.Column column : entry.getValue())
+                cols.add(column.getField());
+            uniqueConstraint.put(entry.getKey(), cols);
         }
-
-        if (!uniqueConstraint.isEmpty())
-            return uniqueConstraint;
-        return null;
+        return uniqueConstraint;
     }
 
     public static Field[] getAllFields(Class<?> modelClass, boolean includePrivateFields){
-        Map<String, Field> fieldsMap = new HashMap<>();
-        for (Field field : modelClass.getDeclaredFields()) {
-            if (includePrivateFields || !Modifier.isPrivate(field.getModifiers()))
-                fieldsMap.put(field.getName(), field);
-        }
-
-        while (modelClass != Object.class){
-            modelClass = modelClass.getSuperclass();
-            if (modelClass == null)
-                break;
-            for (Field field : modelClass.getDeclaredFields()){
-                if ((includePrivateFields || !Modifier.isPrivate(field.getModifiers())) && !fieldsMap.containsKey(field.getName()))
-                    fieldsMap.put(field.getName(), field);
-            }
-        }
-
-        Field[] fields = new Field[fieldsMap.values().size()];
-        fieldsMap.values().toArray(fields);
-        return fields;
+        return ModelMetadata.of(modelClass).getFields(includePrivateFields);
     }
 
     public static String[] getAllColumnNames(Class<?> model){
-        Field[] fields = model.getFields();
-        String[] cols = new String[fields.length];
-
-        for (int i = 0; i < fields.length; i++){
-            cols[i] = fields[i].getName();
-        }
-
-        return cols;
+        return ModelMetadata.of(model).getColumnNames();
     }
     
     public static List<String[]> extractFromCursor(Cursor cursor) {
@@ -131,88 +96,11 @@ public class DatabaseUtils {
     }
 
     public static <T> T extractObjectFromCursor(Class<T> type, Cursor c, boolean includePrivateFields) throws IllegalAccessException, InstantiationException {
-        T o = type.newInstance();
-        for (Field f : getAllFields(type, includePrivateFields)){
-            if (includePrivateFields || !Modifier.isPrivate(f.getModifiers())) {
-                if (c.getColumnIndex(f.getName()) == -1)
-                    continue;
-
-                if (!f.isAccessible())
-                    f.setAccessible(true);
-
-                switch (f.getType().getSimpleName()) {
-                    case "char":
-                    case "Character":
-                    case "char[]":
-                    case "Character[]":
-                    case "CharSequence":
-                    case "String":
-                        f.set(o, c.getString(c.getColumnIndex(f.getName())));
-                        break;
-                    case "int":
-                        f.set(o, c.getInt(c.getColumnIndex(f.getName())));
-                        break;
-                    case "Integer":
-                        f.set(o, c.isNull(c.getColumnIndex(f.getName())) ? null :
-                                c.getInt(c.getColumnIndex(f.getName()))
-                        );
-                        break;
-                    case "long":
-                        f.set(o, c.getLong(c.getColumnIndex(f.getName())));
-                        break;
-                    case "Long":
-                        f.set(o, c.isNull(c.getColumnIndex(f.getName())) ? null :
-                                c.getLong(c.getColumnIndex(f.getName()))
-                        );
-                        break;
-                    case "double":
-                        f.set(o, c.getDouble(c.getColumnIndex(f.getName())));
-                        break;
-                    case "Double":
-                        f.set(o, c.isNull(c.getColumnIndex(f.getName())) ? null :
-                                c.getDouble(c.getColumnIndex(f.getName()))
-                        );
-                        break;
-                    case "boolean":
-                        f.set(o, c.getInt(c.getColumnIndex(f.getName())) == 1);
-                        break;
-                    case "Boolean":
-                        f.set(o, c.isNull(c.getColumnIndex(f.getName())) ? null :
-                                c.getInt(c.getColumnIndex(f.getName())) == 1
-                        );
-                        break;
-                    case "float":
-                        f.set(o, c.getFloat(c.getColumnIndex(f.getName())));
-                        break;
-                    case "Float":
-                        f.set(o, c.isNull(c.getColumnIndex(f.getName())) ? null :
-                                c.getFloat(c.getColumnIndex(f.getName()))
-                        );
-                        break;
-                    case "byte":
-                    case "short":
-                        f.set(o, c.getShort(c.getColumnIndex(f.getName())));
-                        break;
-                    case "Byte":
-                    case "Short":
-                        f.set(o, c.isNull(c.getColumnIndex(f.getName())) ? null :
-                                c.getShort(c.getColumnIndex(f.getName()))
-                        );
-                        break;
-                    case "byte[]":
-                        f.set(o, c.getBlob(c.getColumnIndex(f.getName())));
-                        break;
-                    case "Byte[]":
-                        f.set(o, c.isNull(c.getColumnIndex(f.getName())) ? null :
-                                c.getBlob(c.getColumnIndex(f.getName()))
-                        );
-                        break;
-                }
-            }
-        }
-        return o;
+        StorageCursor row = AndroidStorage.wrap(c);
+        return RowMappingPlan.of(type, row, includePrivateFields).map(row);
     }
 
+    @SuppressWarnings("unchecked")
     public static <T> T extractFieldFromCursor(Class<T> type, Cursor c, Integer columnIndex) throws ClassCastException {
         T o = null;
         switch (type.getSimpleName()) {
@@ -227,30 +115,35 @@ public class DatabaseUtils {
             case "Integer":
                 o = c.isNull(columnIndex) ? null :
                         (T) Integer.valueOf(c.getInt(columnIndex));
+                break;
             case "int":
                 o = (T) Integer.valueOf(c.getInt(columnIndex));
                 break;
             case "Long":
                 o = c.isNull(columnIndex) ? null :
                         (T) Long.valueOf(c.getLong(columnIndex));
+                break;
             case "long":
                 o = (T) Long.valueOf(c.getLong(columnIndex));
                 break;
             case "Double":
                 o = c.isNull(columnIndex) ? null :
                         (T) Double.valueOf(c.getDouble(columnIndex));
+                break;
             case "double":
                 o = (T) Double.valueOf(c.getDouble(columnIndex));
                 break;
             case "Boolean":
                 o = c.isNull(columnIndex) ? null :
                         (T) Boolean.valueOf(c.getInt(columnIndex)==1);
+                break;
             case "boolean":
                 o = (T) Boolean.valueOf(c.getInt(columnIndex)==1);
                 break;
             case "Float":
                 o = c.isNull(columnIndex) ? null :
                         (T) Float.valueOf(c.getFloat(columnIndex));
+                break;
             case "float":
                 o = (T) Float.valueOf(c.getFloat(columnIndex));
                 break;
@@ -258,6 +151,7 @@ public class DatabaseUtils {
             case "Short":
                 o = c.isNull(columnIndex) ? null :
                         (T) Short.valueOf(c.getShort(columnIndex));
+                break;
             case "byte":
             case "short":
                 o = (T) Short.valueOf(c.getShort(columnIndex));
@@ -265,6 +159,7 @@ public class DatabaseUtils {
             case "Byte[]":
                 o = c.isNull(columnIndex) ? null :
                         (T) c.getBlob(columnIndex);
+                break;
             case "byte[]":
                 o = (T) c.getBlob(columnIndex);
                 break;
@@ -0,0 +1,136 @@
+package pk.gov.pbs.database;
+
+/**
+ * Java types supported as model fields, resolved once per field so that reading and writing
+ * values does not need to inspect the type of field again for every row
+ */
+public enum FieldType {
+    STRING,
+    CHAR,
+    CHARACTER,
+    CHAR_ARRAY,
+    CHARACTER_ARRAY,
+    INT,
+    INTEGER,
+    LONG,
+    LONG_OBJECT,
+    SHORT,
+    SHORT_OBJECT,
+    BYTE,
+    BYTE_OBJECT,
+    DOUBLE,
+    DOUBLE_OBJECT,
+    FLOAT,
+    FLOAT_OBJECT,
+    BOOLEAN,
+    BOOLEAN_OBJECT,
+    BLOB,
+    BLOB_OBJECT,
+    UNSUPPORTED;
+
+    public static FieldType of(Class<?> type){
+        if (type == String.class || type == CharSequence.class)
+            return STRING;
+        else if (type == char.class)
+            return CHAR;
+        else if (type == Character.class)
+            return CHARACTER;
+        else if (type == char[].class)
+            return CHAR_ARRAY;
+        else if (type == Character[].class)
+            return CHARACTER_ARRAY;
+        else if (type == int.class)
+            return INT;
+        else if (type == Integer.class)
+            return INTEGER;
+        else if (type == long.class)
+            return LONG;
+        else if (type == Long.class)
+            return LONG_OBJECT;
+        else if (type == short.class)
+            return SHORT;
+        else if (type == Short.class)
+            return SHORT_OBJECT;
+        else if (type == byte.class)
+            return BYTE;
+        else if (type == Byte.class)
+            return BYTE_OBJECT;
+        else if (type == double.class)
+            return DOUBLE;
+        else if (type == Double.class)
+            return DOUBLE_OBJECT;
+        else if (type == float.class)
+            return FLOAT;
+        else if (type == Float.class)
+            return FLOAT_OBJECT;
+        else if (type == boolean.class)
+            return BOOLEAN;
+        else if (type == Boolean.class)
+            return BOOLEAN_OBJECT;
+        else if (type == byte[].class)
+            return BLOB;
+        else if (type == Byte[].class)
+            return BLOB_OBJECT;
+        return UNSUPPORTED;
+    }
+
+    /**
+     * @return true if field of this type is primitive and can not hold null
+     */
+    public boolean isPrimitive(){
+        switch (this){
+            case CHAR:
+            case INT:
+            case LONG:
+            case SHORT:
+            case BYTE:
+            case DOUBLE:
+            case FLOAT:
+            case BOOLEAN:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param value non null value of field of this type
+     * @return value as stored in TEXT column, char arrays are joined into string
+     */
+    public String toText(Object value){
+        switch (this){
+            case CHAR_ARRAY:
+                return new String((char[]) value);
+            case CHARACTER_ARRAY: {
+                Character[] chars = (Character[]) value;
+                StringBuilder sb = new StringBuilder(chars.length);
+                for (Character c : chars)
+                    sb.append(c == null ? '\0' : c);
+                return sb.toString();
+            }
+            default:
+                return value.toString();
+        }
+    }
+
+    public static Character[] box(char[] chars){
+        Character[] boxed = new Character[chars.length];
+        for (int i = 0; i < chars.length; i++)
+            boxed[i] = chars[i];
+        return boxed;
+    }
+
+    public static Byte[] box(byte[] bytes){
+        Byte[] boxed = new Byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++)
+            boxed[i] = bytes[i];
+        return boxed;
+    }
+
+    public static byte[] unbox(Byte[] bytes){
+        byte[] unboxed = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++)
+            unboxed[i] = bytes[i] == null ? 0 : bytes[i];
+        return unboxed;
+    }
+}
@@ -0,0 +1,220 @@
+package pk.gov.pbs.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges small writes arriving close to each other into one transaction, so that they share one commit (and one fsync)
+ * instead of committing one by one. A batch is committed when commit window has passed since its first write or
+ * when it has reached maximum batch size, whichever comes first. Every write still gets its own result or exception,
+ * if a write fails the transaction is rolled back, the failed write gets its exception and rest of the batch is committed again.
+ * Writes must be single statements (or at least must not open their own transactions), all batches are executed on given
+ * single threaded executor
+ */
+public class GroupCommitWriter {
+    private final ModelBasedDatabaseHelper database;
+    private final ScheduledExecutorService executor;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final List<PendingWrite<?>> queue = new ArrayList<>();
+    private final Runnable flushTask = this::flush;
+
+    private long batches;
+    private long writes;
+    private long failedWrites;
+    private long totalCommitNanos;
+    private long maxCommitNanos;
+    private int largestBatch;
+
+    /**
+     * @param database database to write into
+     * @param executor single threaded executor on which batches are committed
+     * @param windowMillis how long the first write of batch waits for more writes
+     * @param maxBatchSize maximum number of writes in one transaction
+     */
+    public GroupCommitWriter(ModelBasedDatabaseHelper database, ScheduledExecutorService executor, long windowMillis, int maxBatchSize){
+        if (windowMillis < 0 || maxBatchSize < 1)
+            throw new IllegalArgumentException("Commit window must not be negative and batch size must be at least 1");
+        this.database = database;
+        this.executor = executor;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * queues the write for next batch
+     * @param write write operation
+     * @return future completed with result of write after its batch is committed
+     * @param <T> type of result
+     */
+    public <T> DatabaseFuture<T> submit(Write<T> write){
+        PendingWrite<T> pending = new PendingWrite<>(write);
+        int size;
+        synchronized (queue) {
+            queue.add(pending);
+            size = queue.size();
+        }
+
+        if (size == maxBatchSize)
+            executor.execute(flushTask);
+        else if (size == 1)
+            executor.schedule(flushTask, windowMillis, TimeUnit.MILLISECONDS);
+        return pending.future;
+    }
+
+    private void flush(){
+        while (true) {
+            List<PendingWrite<?>> batch;
+            synchronized (queue) {
+                if (queue.isEmpty())
+                    return;
+                int size = Math.min(queue.size(), maxBatchSize);
+                batch = new ArrayList<>(queue.subList(0, size));
+                queue.subList(0, size).clear();
+            }
+            commit(batch);
+        }
+    }
+
+    private void commit(List<PendingWrite<?>> batch){
+        int size = batch.size();
+        long start = System.nanoTime();
+        int failed = 0;
+        while (!batch.isEmpty()) {
+            SQLiteDatabase db;
+            PendingWrite<?> failedWrite = null;
+            Exception failure = null;
+            try {
+                db = database.getWritableDatabase();
+                database.beginWriteTransaction(db);
+            } catch (RuntimeException e) {
+                failAll(batch, e);
+                failed += batch.size();
+                break;
+            }
+
+            try {
+                for (PendingWrite<?> pending : batch) {
+                    try {
+                        pending.execute(database);
+                    } catch (Exception e) {
+                        failedWrite = pending;
+                        failure = e;
+                        break;
+                    }
+                }
+                if (failedWrite == null)
+                    db.setTransactionSuccessful();
+            } finally {
+                try {
+                    database.endWriteTransaction(db);
+                } catch (RuntimeException e) {
+                    if (failedWrite == null) {
+                        failAll(batch, e);
+                        failed += batch.size();
+                        batch.clear();
+                    }
+                }
+            }
+
+            if (failedWrite == null) {
+                for (PendingWrite<?> pending : batch)
+                    pending.complete();
+                break;
+            }
+
+            failedWrite.future.setException(failure);
+            batch.remove(failedWrite);
+            failed++;
+        }
+        record(size, failed, System.nanoTime() - start);
+    }
+
+    private static void failAll(List<PendingWrite<?>> batch, Exception e){
+        for (PendingWrite<?> pending : batch)
+            pending.future.setException(e);
+    }
+
+    private synchronized void record(int size, int failed, long commitNanos){
+        batches++;
+        writes += size;
+        failedWrites += failed;
+        totalCommitNanos += commitNanos;
+        maxCommitNanos = Math.max(maxCommitNanos, commitNanos);
+        largestBatch = Math.max(largestBatch, size);
+    }
+
+    /**
+     * @return counters of committed batches since this writer was created
+     */
+    public synchronized Stats getStats(){
+        return new Stats(batches, writes, failedWrites, totalCommitNanos, maxCommitNanos, largestBatch);
+    }
+
+    public interface Write<T> {
+        T execute(ModelBasedDatabaseHelper db) throws Exception;
+    }
+
+    private static final class PendingWrite<T> {
+        final Write<T> write;
+        final DatabaseFuture<T> future = new DatabaseFuture<>();
+        T result;
+
+        PendingWrite(Write<T> write){
+            this.write = write;
+        }
+
+        void execute(ModelBasedDatabaseHelper db) throws Exception {
+            result = write.execute(db);
+        }
+
+        void complete(){
+            future.set(result);
+        }
+    }
+
+    public static final class Stats {
+        public final long batches;
+        public final long writes;
+        public final long failedWrites;
+        public final long totalCommitNanos;
+        public final long maxCommitNanos;
+        public final int largestBatch;
+
+        Stats(long batches, long writes, long failedWrites, long totalCommitNanos, long maxCommitNanos, int largestBatch){
+            this.batches = batches;
+            this.writes = writes;
+            this.failedWrites = failedWrites;
+            this.totalCommitNanos = totalCommitNanos;
+            this.maxCommitNanos = maxCommitNanos;
+            this.largestBatch = largestBatch;
+        }
+
+        public double getAverageBatchSize() {
+            return batches == 0 ? 0 : (double) writes / batches;
+        }
+
+        public double getAverageCommitMillis() {
+            return batches == 0 ? 0 : totalCommitNanos / 1e6 / batches;
+        }
+
+        @Override
+        public String toString() {
+            return "GroupCommit{batches=" + batches + ", writes=" + writes + ", failed=" + failedWrites
+                    + ", avgBatch=" + getAverageBatchSize() + ", largestBatch=" + largestBatch
+                    + ", avgCommitMs=" + getAverageCommitMillis() + ", maxCommitMs=" + maxCommitNanos / 1e6 + "}";
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package pk.gov.pbs.database;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.ref.SoftReference;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Objects of models loaded by primary key, kept in a least recently used map for each model so that repeated lookups
+ * of same row are served from memory. Keys are string values of primary key, the same form in which they are bound to
+ * select statement. Objects can be held by strong references, or by soft references which garbage collector clears
+ * when memory is low. Every model has a stamp which changes whenever any of its objects is invalidated, objects
+ * loaded before the stamp changed are not added to the map. Stamps are kept by table name, so that writes known only
+ * by their table (i,e raw sql) invalidate the objects of model mapped to that table
+ */
+public class IdentityMap {
+    private final int maxEntriesPerModel;
+    private final boolean softReferences;
+    private final Map<Class<?>, LinkedHashMap<String, Object>> models = new HashMap<>();
+    private final Map<String, Long> stamps = new HashMap<>();
+    private long globalStamp;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * @param maxEntriesPerModel maximum number of objects kept for each model
+     * @param softReferences whether to hold objects by soft references or by strong references
+     */
+    public IdentityMap(int maxEntriesPerModel, boolean softReferences){
+        if (maxEntriesPerModel < 1)
+            throw new IllegalArgumentException("Identity map must hold at least one object per model");
+        this.maxEntriesPerModel = maxEntriesPerModel;
+        this.softReferences = softReferences;
+    }
+
+    public int getMaxEntriesPerModel() {
+        return maxEntriesPerModel;
+    }
+
+    public boolean isSoftReferences() {
+        return softReferences;
+    }
+
+    /**
+     * @return object of given model with given primary key, null if it is not in the map
+     */
+    @Nullable
+    public synchronized <T> T get(@NonNull Class<T> model, @NonNull Object id){
+        return get(model, id, true);
+    }
+
+    /**
+     * same as get(Class, Object) except that miss is not counted, used to check the map before handing
+     * lookup over to database thread which would count the miss
+     */
+    @Nullable
+    synchronized <T> T peek(@NonNull Class<T> model, @NonNull Object id){
+        return get(model, id, false);
+    }
+
+    private <T> T get(Class<T> model, Object id, boolean countMiss){
+        LinkedHashMap<String, Object> objects = models.get(model);
+        Object value = objects != null ? objects.get(toKey(id)) : null;
+        if (value instanceof SoftReference) {
+            value = ((SoftReference<?>) value).get();
+            if (value == null)
+                objects.remove(toKey(id));
+        }
+
+        if (value == null) {
+            if (countMiss)
+                misses++;
+            return null;
+        }
+        hits++;
+        return model.cast(value);
+    }
+
+    /**
+     * @return current stamp of model, take it before loading an object and pass it to put
+     */
+    public synchronized long getStamp(@NonNull Class<?> model){
+        return getModelStamp(model) + globalStamp;
+    }
+
+    private long getModelStamp(Class<?> model){
+        Long stamp = stamps.get(getTable(model));
+        return stamp == null ? 0 : stamp;
+    }
+
+    private void incrementStamp(String table){
+        Long stamp = stamps.get(table);
+        stamps.put(table, stamp == null ? 1 : stamp + 1);
+    }
+
+    private static String getTable(Class<?> model){
+        return model.getSimpleName().toLowerCase(Locale.US);
+    }
+
+    /**
+     * adds the object to the map, unless any object of its model has been invalidated since given stamp was taken
+     * @param model model class
+     * @param id primary key of object
+     * @param object object loaded from database
+     * @param stamp stamp of model taken before object was loaded
+     */
+    public synchronized void put(@NonNull Class<?> model, @NonNull Object id, @NonNull Object object, long stamp){
+        if (stamp != getStamp(model))
+            return;
+
+        LinkedHashMap<String, Object> objects = models.get(model);
+        if (objects == null) {
+            objects = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                    return size() > maxEntriesPerModel;
+                }
+            };
+            models.put(model, objects);
+        }
+        objects.put(toKey(id), softReferences ? new SoftReference<>(object) : object);
+    }
+
+    /**
+     * removes object of given model with given primary key
+     */
+    public synchronized void invalidate(@NonNull Class<?> model, @Nullable Object id){
+        incrementStamp(getTable(model));
+        LinkedHashMap<String, Object> objects = models.get(model);
+        if (objects != null && id != null)
+            objects.remove(toKey(id));
+    }
+
+    /**
+     * removes all the objects of given model
+     */
+    public synchronized void invalidate(@NonNull Class<?> model){
+        incrementStamp(getTable(model));
+        models.remove(model);
+    }
+
+    /**
+     * removes all the objects of models mapped to given tables
+     * @param tables names of tables
+     */
+    public synchronized void invalidateTables(@NonNull Collection<String> tables){
+        for (String table : tables) {
+            String name = table.toLowerCase(Locale.US);
+            incrementStamp(name);
+            Iterator<Class<?>> iterator = models.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (getTable(iterator.next()).equals(name))
+                    iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * removes all the objects of all models
+     */
+    public synchronized void invalidateAll(){
+        globalStamp++;
+        models.clear();
+    }
+
+    public synchronized int size(){
+        int size = 0;
+        for (LinkedHashMap<String, Object> objects : models.values())
+            size += objects.size();
+        return size;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    private static String toKey(Object id){
+        return id.toString();
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "IdentityMap{objects=" + size()
+                + ", hits=" + hits
+                + ", misses=" + misses
+                + "}";
+    }
+}
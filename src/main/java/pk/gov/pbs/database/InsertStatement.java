@@ -0,0 +1,78 @@
+package pk.gov.pbs.database;
+
+import java.util.List;
+
+import pk.gov.pbs.database.storage.StorageConnection;
+import pk.gov.pbs.database.storage.StorageStatement;
+import pk.gov.pbs.utils.ExceptionReporter;
+
+/**
+ * Insert statement of a model compiled once and executed for every object of that model,
+ * values are bound straight from fields of object (or by generated ModelAdapter if model has one)
+ * so no ContentValues is created per row. It is used by ModelBasedDatabaseHelper over AndroidStorage.wrap(db)
+ * and by ModelStore over connections of any StorageProvider
+ */
+final class InsertStatement {
+    private final StorageStatement statement;
+    private final List<ModelMetadata.Column> columns;
+    private final ModelAdapter<Object> adapter;
+
+    @SuppressWarnings("unchecked")
+    InsertStatement(StorageConnection connection, Class<?> modelClass, ConflictMode conflictMode) {
+        ModelMetadata metadata = ModelMetadata.of(modelClass);
+        this.adapter = (ModelAdapter<Object>) ModelAdapters.get(modelClass);
+        this.columns = metadata.getColumns();
+        this.statement = connection.prepare(ModelStore.getInsertSql(
+                metadata.getTableName(),
+                adapter != null ? adapter.getColumnNames() : metadata.getColumnNames(),
+                conflictMode
+        ));
+    }
+
+    /**
+     * binds values of given model and executes the statement
+     * @param model object of model this statement was compiled for
+     * @return row id of inserted row, -1 if no row was inserted
+     */
+    long execute(Object model) {
+        bind(model);
+        return statement.executeInsert();
+    }
+
+    /**
+     * binds values of given model and adds them to the batch of statement
+     * @param model object of model this statement was compiled for
+     * @see StorageStatement#addBatch()
+     */
+    void addBatch(Object model) {
+        bind(model);
+        statement.addBatch();
+    }
+
+    /**
+     * @return number of rows inserted by each object added since last call
+     */
+    int[] executeBatch() {
+        return statement.executeBatch();
+    }
+
+    private void bind(Object model) {
+        statement.clearBindings();
+        if (adapter != null) {
+            adapter.bind(statement, model);
+            return;
+        }
+
+        for (int i = 0; i < columns.size(); i++) {
+            try {
+                ValueBinder.bind(statement, i + 1, columns.get(i), model);
+            } catch (IllegalAccessException e) {
+                ExceptionReporter.handle(e);
+            }
+        }
+    }
+
+    void close(){
+        statement.close();
+    }
+}
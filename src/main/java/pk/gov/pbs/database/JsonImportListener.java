@@ -0,0 +1,59 @@
+package pk.gov.pbs.database;
+
+/**
+ * Receives progress of ModelBasedDatabaseHelper.importJson after every chunk is committed. Callbacks are made
+ * on the thread which runs the import, so implementation must post to main thread itself to update UI
+ */
+public interface JsonImportListener {
+    void onChunkCommitted(Progress progress);
+
+    final class Progress {
+        /**
+         * 1 based index of committed chunk
+         */
+        public final int chunk;
+        /**
+         * objects read from payload in this chunk
+         */
+        public final int chunkRows;
+        /**
+         * objects read from payload so far
+         */
+        public final long totalRows;
+        /**
+         * rows written so far, rows skipped by ConflictMode.IGNORE are not counted
+         */
+        public final long totalWritten;
+        /**
+         * characters consumed from reader so far, reader is read ahead in blocks so this is approximate, it can be
+         * compared against length of payload to show percentage
+         */
+        public final long charsRead;
+        /**
+         * time spent parsing, binding, inserting and committing this chunk
+         */
+        public final long chunkNanos;
+
+        Progress(int chunk, int chunkRows, long totalRows, long totalWritten, long charsRead, long chunkNanos){
+            this.chunk = chunk;
+            this.chunkRows = chunkRows;
+            this.totalRows = totalRows;
+            this.totalWritten = totalWritten;
+            this.charsRead = charsRead;
+            this.chunkNanos = chunkNanos;
+        }
+
+        /**
+         * @return rows per second of this chunk
+         */
+        public double getChunkRate() {
+            return chunkNanos == 0 ? 0 : chunkRows * 1e9 / chunkNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "chunk " + chunk + " rows=" + chunkRows + ", totalRows=" + totalRows + ", totalWritten=" + totalWritten
+                    + ", charsRead=" + charsRead + ", chunkMs=" + chunkNanos / 1e6;
+        }
+    }
+}
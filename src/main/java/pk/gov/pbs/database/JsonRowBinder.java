@@ -0,0 +1,229 @@
+package pk.gov.pbs.database;
+
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import pk.gov.pbs.database.storage.StorageStatement;
+
+/**
+ * Binds the objects of a JSON array to insert statement of a model straight from JsonReader, without creating
+ * objects of model. Properties are matched to columns by SerializedName (and its alternates) as Gson does, unknown
+ * properties are skipped. Columns missing from an object, and primitive columns which are null in JSON, get the
+ * value of field in a new object of model, so rows are the same as if payload was parsed with Gson and inserted
+ */
+final class JsonRowBinder {
+    private final ModelMetadata metadata;
+    private final List<ModelMetadata.Column> columns;
+    private final FieldType[] types;
+    private final Object[] defaults;
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final boolean[] bound;
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final StringBuilder chars = new StringBuilder();
+
+    JsonRowBinder(ModelMetadata metadata){
+        this.metadata = metadata;
+        this.columns = metadata.getColumns();
+        this.types = new FieldType[columns.size()];
+        this.defaults = new Object[columns.size()];
+        this.bound = new boolean[columns.size()];
+
+        Object template = newInstance(metadata.getModelClass());
+        for (int i = 0; i < columns.size(); i++) {
+            ModelMetadata.Column column = columns.get(i);
+            types[i] = column.getFieldType();
+            defaults[i] = getDefault(column, template);
+            positions.put(column.getSerializedName(), i);
+            SerializedName sn = column.getField().getAnnotation(SerializedName.class);
+            if (sn != null) {
+                for (String alternate : sn.alternate())
+                    positions.put(alternate, i);
+            }
+        }
+    }
+
+    /**
+     * reads next object of array and binds it to statement, bind indexes follow metadata.getColumnNames()
+     * @param json reader positioned at an object within array
+     * @param statement insert statement of model
+     * @throws IOException in case payload is malformed or a value does not match the type of its field
+     */
+    void bind(JsonReader json, StorageStatement statement) throws IOException {
+        Arrays.fill(bound, false);
+        try {
+            json.beginObject();
+            while (json.hasNext()) {
+                Integer position = positions.get(json.nextName());
+                if (position == null || types[position] == FieldType.UNSUPPORTED) {
+                    json.skipValue();
+                    continue;
+                }
+                bindValue(json, statement, position);
+                bound[position] = true;
+            }
+            json.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Invalid value at " + json.getPath() + " for model " + metadata.getModelClass().getSimpleName() + ", Can not proceed to import", e);
+        }
+
+        for (int i = 0; i < bound.length; i++) {
+            if (!bound[i])
+                ValueBinder.bindValue(statement, i + 1, types[i], defaults[i]);
+        }
+    }
+
+    private void bindValue(JsonReader json, StorageStatement statement, int position) throws IOException {
+        int index = position + 1;
+        FieldType type = types[position];
+        JsonToken token = json.peek();
+        if (token == JsonToken.NULL) {
+            json.nextNull();
+            // Gson leaves primitive fields at their default when value is null
+            ValueBinder.bindValue(statement, index, type, type.isPrimitive() ? defaults[position] : null);
+            return;
+        }
+
+        switch (type) {
+            case INT:
+            case INTEGER:
+                statement.bindLong(index, json.nextInt());
+                break;
+            case SHORT:
+            case SHORT_OBJECT:
+                statement.bindLong(index, (short) json.nextInt());
+                break;
+            case BYTE:
+            case BYTE_OBJECT:
+                statement.bindLong(index, (byte) json.nextInt());
+                break;
+            case LONG:
+            case LONG_OBJECT:
+                statement.bindLong(index, json.nextLong());
+                break;
+            case FLOAT:
+            case FLOAT_OBJECT:
+                statement.bindDouble(index, (float) json.nextDouble());
+                break;
+            case DOUBLE:
+            case DOUBLE_OBJECT:
+                statement.bindDouble(index, json.nextDouble());
+                break;
+            case BOOLEAN:
+            case BOOLEAN_OBJECT:
+                statement.bindLong(index, (token == JsonToken.STRING ? Boolean.parseBoolean(json.nextString()) : json.nextBoolean()) ? 1 : 0);
+                break;
+            case CHAR_ARRAY:
+            case CHARACTER_ARRAY:
+                if (token == JsonToken.BEGIN_ARRAY) {
+                    chars.setLength(0);
+                    json.beginArray();
+                    while (json.hasNext())
+                        chars.append(json.nextString());
+                    json.endArray();
+                    statement.bindString(index, chars.toString());
+                } else
+                    statement.bindString(index, json.nextString());
+                break;
+            case BLOB:
+            case BLOB_OBJECT:
+                bytes.reset();
+                json.beginArray();
+                while (json.hasNext())
+                    bytes.write(json.nextInt());
+                json.endArray();
+                statement.bindBlob(index, bytes.toByteArray());
+                break;
+            default:
+                statement.bindString(index, token == JsonToken.BOOLEAN ? Boolean.toString(json.nextBoolean()) : json.nextString());
+        }
+    }
+
+    private static Object newInstance(Class<?> type){
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Object getDefault(ModelMetadata.Column column, Object template){
+        if (template != null) {
+            try {
+                return column.get(template);
+            } catch (IllegalAccessException ignored) {
+            }
+        }
+
+        switch (column.getFieldType()) {
+            case INT:
+                return 0;
+            case LONG:
+                return 0L;
+            case SHORT:
+                return (short) 0;
+            case BYTE:
+                return (byte) 0;
+            case DOUBLE:
+                return 0d;
+            case FLOAT:
+                return 0f;
+            case BOOLEAN:
+                return false;
+            case CHAR:
+                return '\0';
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Reader which counts the characters read through it
+     */
+    static final class CountingReader extends FilterReader {
+        private long count;
+
+        CountingReader(Reader in){
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c != -1)
+                count++;
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0)
+                count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package pk.gov.pbs.database;
+
+import pk.gov.pbs.database.storage.StorageCursor;
+import pk.gov.pbs.database.storage.StorageStatement;
+
+/**
+ * Adapter generated at compile time for models annotated with Table, it binds and reads the columns
+ * of model with direct field access instead of reflection. Adapters are generated by the processor module
+ * as &lt;ModelName&gt;_ModelAdapter in the package of model, ModelBasedDatabaseHelper and ModelStore use them
+ * when present and fall back to reflection otherwise
+ * @param <T> type of model
+ */
+public interface ModelAdapter<T> {
+    Class<T> getModelClass();
+
+    /**
+     * @return column names of model in the order they are bound by bind(StorageStatement, T)
+     * and read by read(StorageCursor, int[])
+     */
+    String[] getColumnNames();
+
+    /**
+     * binds all columns of model to statement, starting from bind index 1 in the order of getColumnNames()
+     * @param statement compiled statement with at least as many arguments as columns
+     * @param model object of model
+     */
+    void bind(StorageStatement statement, T model);
+
+    /**
+     * creates object of model from current row of cursor
+     * @param cursor cursor positioned at row
+     * @param plan index of each column from getColumnNames() in cursor, -1 if cursor does not have that column
+     * @return object of model
+     */
+    T read(StorageCursor cursor, int[] plan);
+}
@@ -0,0 +1,58 @@
+package pk.gov.pbs.database;
+
+import androidx.annotation.Nullable;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import pk.gov.pbs.utils.ExceptionReporter;
+
+/**
+ * Lookup of generated ModelAdapter for model classes, result of lookup (including absence of adapter)
+ * is cached so the class loader is asked only once for each model
+ */
+public final class ModelAdapters {
+    static final String SUFFIX = "_ModelAdapter";
+    private static final Object NONE = new Object();
+    private static final ConcurrentHashMap<Class<?>, Object> adapters = new ConcurrentHashMap<>();
+
+    private ModelAdapters(){}
+
+    /**
+     * @param modelClass model class
+     * @return generated adapter of model or null if model has no generated adapter
+     * @param <T> type of model
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public static <T> ModelAdapter<T> get(Class<T> modelClass){
+        Object adapter = adapters.get(modelClass);
+        if (adapter == null) {
+            adapter = load(modelClass);
+            adapters.putIfAbsent(modelClass, adapter);
+        }
+        return adapter == NONE ? null : (ModelAdapter<T>) adapter;
+    }
+
+    /**
+     * @param modelClass model class
+     * @return fully qualified name of adapter class generated for model, i,e com.app.Outer_Inner_ModelAdapter for com.app.Outer.Inner
+     */
+    public static String getAdapterClassName(Class<?> modelClass){
+        String name = modelClass.getName();
+        int pkg = name.lastIndexOf('.');
+        return name.substring(0, pkg + 1) + name.substring(pkg + 1).replace('$', '_') + SUFFIX;
+    }
+
+    private static Object load(Class<?> modelClass){
+        try {
+            Class<?> adapterClass = Class.forName(getAdapterClassName(modelClass), true, modelClass.getClassLoader());
+            return adapterClass.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return NONE;
+        } catch (InstantiationException | IllegalAccessException | NoSuchMethodException | InvocationTargetException | ClassCastException e) {
+            ExceptionReporter.handle(e);
+            return NONE;
+        }
+    }
+}
@@ -4,33 +4,94 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.SQLException;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteQuery;
+import android.os.Build;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.Reader;
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
-import pk.gov.pbs.database.annotations.Default;
-import pk.gov.pbs.database.annotations.NotNull;
-import pk.gov.pbs.database.annotations.PrimaryKey;
-import pk.gov.pbs.database.annotations.Table;
-import pk.gov.pbs.database.annotations.Unique;
 import pk.gov.pbs.database.exceptions.UnsupportedDataType;
+import pk.gov.pbs.database.storage.AndroidStorage;
+import pk.gov.pbs.database.storage.StorageConnection;
+import pk.gov.pbs.database.storage.StorageCursor;
+import pk.gov.pbs.database.storage.StorageProvider;
+import pk.gov.pbs.database.storage.StorageStatement;
 import pk.gov.pbs.utils.ExceptionReporter;
 
-import static pk.gov.pbs.database.DatabaseUtils.getPrimaryKeyField;
-
 public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
+    private static final Executor defaultOperationExecutor = Executors.newFixedThreadPool(2);
+    private static final int SCALAR_STATEMENT_CACHE_SIZE = 32;
+    private static final int RESOLVED_SQL_CACHE_SIZE = 64;
+    private static final int UPDATE_STATEMENT_CACHE_SIZE = 32;
+    private static final String TABLE_PLACEHOLDER = "<table>";
+    /**
+     * default limit of host parameters in single statement for SQLite before 3.32
+     */
+    protected static final int MAX_HOST_PARAMETERS = 999;
+    /**
+     * number of objects committed in one transaction by importJson
+     */
+    public static final int DEFAULT_IMPORT_CHUNK_SIZE = 1000;
     protected Class<?>[] models = null;
+    private volatile boolean concurrentReads = false;
+    private volatile int readerConnections = 1;
+    private volatile Executor operationExecutor = defaultOperationExecutor;
+    private final Context context;
+    private volatile QueryCache queryCache;
+    private volatile IdentityMap identityMap;
+    private volatile Boolean nativeUpsert;
+    private volatile SlowQueryLog slowQueryLog;
+    private volatile DatabaseMetricsListener metricsListener;
+    private volatile StorageProvider storageProvider;
+    private final ThreadLocal<Long> queueTime = new ThreadLocal<>();
+    private final ThreadLocal<Set<String>> tablesWrittenInTransaction = new ThreadLocal<>();
+    private final StatementCache scalarStatements = new StatementCache(SCALAR_STATEMENT_CACHE_SIZE);
+    private final Map<String, Boolean> baseTables = new HashMap<>();
+    private final Map<String, String> resolvedSql = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > RESOLVED_SQL_CACHE_SIZE;
+        }
+    };
+
+    private final Map<String, UpdateStatement> updateStatements = new LinkedHashMap<String, UpdateStatement>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, UpdateStatement> eldest) {
+            if (size() <= UPDATE_STATEMENT_CACHE_SIZE)
+                return false;
+            eldest.getValue().close();
+            return true;
+        }
+    };
+    private SQLiteDatabase updateStatementsDatabase;
 
     public ModelBasedDatabaseHelper(Context context, String dbName, int dbVersion) {
         super(context, dbName, null, dbVersion);
+        this.context = context != null && context.getApplicationContext() != null
+                ? context.getApplicationContext() : context;
     }
 
     public ModelBasedDatabaseHelper(Context context, String dbName, Class<?>[] models){
@@ -43,24 +104,399 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
         if (models == null)
             throw new RuntimeException("Can't use default onCreate(SQLiteDatabase) method because models not provided, either use appropriate constructor with models array or override onCreate(SQLiteDatabase)");
 
-        for (Class<?> m : getModels()){
-            try {
+        try {
+            for (Class<?> m : getModels())
                 createTable(m, db);
-            } catch (UnsupportedDataType e) {
-                throw new RuntimeException(e);
-            }
+            SchemaMigration.record(this, db, getModels());
+            NativeValueMigration.record(db);
+        } catch (UnsupportedDataType e) {
+            throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Migrates only the tables whose Table.version or definition has changed since they were created, see SchemaMigration.
+     * New columns are added in place, tables with other changes are rebuilt keeping their rows, other tables are not touched.
+     * Rows written before values were bound in their native types are converted once, see NativeValueMigration
+     */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         if (models == null)
             throw new RuntimeException("Can't use default onUpgrade(SQLiteDatabase) method because models not provided, either use appropriate constructor with models array or override onUpgrade(SQLiteDatabase)");
 
-        for (Class<?> m : getModels()){
-            dropTable(m, db);
+        try {
+            SchemaMigration.migrate(this, db, getModels());
+            NativeValueMigration.apply(db, getModels());
+        } catch (UnsupportedDataType e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        scalarStatements.clear();
+        clearUpdateStatements();
+        super.close();
+    }
+
+    /**
+     * Enables write-ahead logging so that queries run on reader connections concurrently with each other and with
+     * the writes on primary connection, instead of waiting for the writes to commit. Reader connections are pooled by
+     * SQLiteDatabase which routes every read-only statement executed outside of a transaction to a free reader, the number
+     * of physical readers is capped by the platform, readerConnections is the number of reads this helper is expected to
+     * issue concurrently and is used to size the read pool of ModelBasedRepository.
+     * Must be called before database is opened, i,e from constructor of subclass
+     * @param readerConnections number of concurrent readers (at least 1)
+     */
+    public void enableConcurrentReads(int readerConnections){
+        if (readerConnections < 1)
+            throw new IllegalArgumentException("At least one reader connection is required");
+        this.readerConnections = readerConnections;
+        this.concurrentReads = true;
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * @return true if write-ahead logging has been enabled by enableConcurrentReads(int)
+     */
+    public boolean isConcurrentReadsEnabled() {
+        return concurrentReads;
+    }
+
+    public int getReaderConnections() {
+        return readerConnections;
+    }
+
+    /**
+     * database used by all query methods, with concurrent reads enabled its statements are executed on
+     * reader connections unless calling thread is holding a write transaction
+     * @return database for read-only statements
+     */
+    public SQLiteDatabase getReaderDatabase(){
+        return getReadableDatabase();
+    }
+
+    /**
+     * begins transaction for writes, with write-ahead logging it is an immediate transaction
+     * which does not block readers
+     * @param db writable database
+     */
+    protected void beginWriteTransaction(SQLiteDatabase db){
+        if (db.isWriteAheadLoggingEnabled())
+            db.beginTransactionNonExclusive();
+        else
+            db.beginTransaction();
+    }
+
+    /**
+     * ends the transaction started with beginWriteTransaction(SQLiteDatabase), once the outer most transaction has ended
+     * cached query results and objects of the tables written in it are invalidated again, so that queries which were started
+     * before commit do not leave uncommitted state in the cache
+     * @param db writable database
+     */
+    protected void endWriteTransaction(SQLiteDatabase db){
+        try {
+            db.endTransaction();
+        } finally {
+            if (!db.inTransaction()) {
+                Set<String> tables = tablesWrittenInTransaction.get();
+                if (tables != null) {
+                    tablesWrittenInTransaction.remove();
+                    QueryCache cache = queryCache;
+                    if (cache != null)
+                        cache.invalidate(tables);
+                    IdentityMap identities = identityMap;
+                    if (identities != null)
+                        identities.invalidateTables(tables);
+                }
+            }
+        }
+    }
+
+    /**
+     * Enables caching of the results of query(Class, String...), queryRawSql(Class, String, String...) and
+     * queryRowsAsMap(String, String...), cached results are invalidated whenever insert, replace, update or execSql of
+     * this helper writes into any of the tables read by the query. Cache is released when system asks app to trim memory.
+     * Objects in cached results are shared between callers, each call gets its own list but must not modify the objects
+     * @param maxEntries maximum number of cached results
+     * @param maxBytes approximate maximum memory held by cached results
+     */
+    public void enableQueryCache(int maxEntries, long maxBytes){
+        QueryCache cache = new QueryCache(maxEntries, maxBytes);
+        disableQueryCache();
+        if (context != null)
+            context.registerComponentCallbacks(cache);
+        queryCache = cache;
+    }
+
+    public void disableQueryCache(){
+        QueryCache cache = queryCache;
+        queryCache = null;
+        if (cache != null) {
+            cache.clear();
+            if (context != null)
+                context.unregisterComponentCallbacks(cache);
         }
-        onCreate(db);
+    }
+
+    /**
+     * @return query cache with its hit and miss counters, null if cache is not enabled
+     */
+    @Nullable
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * invalidates cached results of given tables, must be called after writing into database other than through
+     * the methods of this helper, i,e on SQLiteDatabase from getWritableDatabase()
+     * @param tables names of tables written, if none is given whole cache is invalidated, which is also needed after
+     * a schema change such as creating a view
+     */
+    public void invalidateQueryCache(String... tables){
+        QueryCache cache = queryCache;
+        if (cache == null)
+            return;
+
+        if (tables == null || tables.length == 0) {
+            synchronized (baseTables) {
+                baseTables.clear();
+            }
+            cache.invalidateAll();
+        }
+        else
+            onTablesWritten(Arrays.asList(tables));
+    }
+
+    /**
+     * Enables identity map for findById(Class, Object), objects loaded by primary key are kept in memory and served
+     * without querying database until insert, replace, update or execSql of this helper writes into their table.
+     * Same object is returned to every caller, changes made to it must be saved with update(Object)
+     * @param maxEntriesPerModel maximum number of objects kept for each model
+     * @param softReferences true to let garbage collector reclaim objects when memory is low
+     */
+    public void enableIdentityMap(int maxEntriesPerModel, boolean softReferences){
+        identityMap = new IdentityMap(maxEntriesPerModel, softReferences);
+    }
+
+    public void disableIdentityMap(){
+        identityMap = null;
+    }
+
+    /**
+     * @return identity map with its hit and miss counters, null if identity map is not enabled
+     */
+    @Nullable
+    public IdentityMap getIdentityMap() {
+        return identityMap;
+    }
+
+    /**
+     * Enables logging of queries which take longer than given threshold, covers the query, queryRawSql, querySingle,
+     * queryRows*, queryPage, getCount and scalar query methods. Query plan of slow query is captured on the calling
+     * thread when its statement shape is slow for the first time, so keep threshold well above usual query time
+     * @param thresholdMillis queries taking this long or longer are logged
+     * @param capacity maximum number of entries kept, oldest are overwritten
+     */
+    public void enableSlowQueryLog(long thresholdMillis, int capacity){
+        slowQueryLog = new SlowQueryLog(thresholdMillis, capacity);
+    }
+
+    public void disableSlowQueryLog(){
+        slowQueryLog = null;
+    }
+
+    /**
+     * @return slow query log with its entries, null if it is not enabled
+     */
+    @Nullable
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    /**
+     * Sets the listener which receives an event with timings for every query and write of this helper,
+     * i,e DatabaseMetrics for latency histograms
+     * @param listener listener, null to stop reporting
+     */
+    public void setMetricsListener(@Nullable DatabaseMetricsListener listener){
+        this.metricsListener = listener;
+    }
+
+    @Nullable
+    public DatabaseMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * @return storage over the database of this helper, use it with ModelStore to run the same model based code
+     * as on JVM (see JdbcStorage). Writes through it invalidate query cache and identity map as execSql does and its
+     * transactions are write transactions of this helper, operations are not reported to slow query log or metrics
+     */
+    @NonNull
+    public StorageProvider getStorageProvider() {
+        StorageProvider storage = storageProvider;
+        if (storage == null) {
+            storageProvider = storage = new AndroidStorage(this) {
+                @Override
+                protected void beginTransaction(SQLiteDatabase db) {
+                    beginWriteTransaction(db);
+                }
+
+                @Override
+                protected void endTransaction(SQLiteDatabase db) {
+                    endWriteTransaction(db);
+                }
+
+                @Override
+                protected void onExecuted(String sql) {
+                    onStatementExecuted(sql);
+                }
+            };
+        }
+        return storage;
+    }
+
+    /**
+     * time the operation running on current thread waited in executor, reported with the first event of operation
+     */
+    void setQueueTime(long nanos){
+        queueTime.set(nanos);
+    }
+
+    void clearQueueTime(){
+        queueTime.remove();
+    }
+
+    private long takeQueueTime(){
+        Long nanos = queueTime.get();
+        if (nanos == null)
+            return 0;
+        queueTime.remove();
+        return nanos;
+    }
+
+    /**
+     * first call of getCount fills the cursor window stepping through the rows, so time taken by SQLite
+     * can be told apart from time taken by mapping the rows. Rows are only awaited when slow query log or metrics
+     * listener is set, otherwise whole time is reported as mapping and cursor is stepped by the caller alone.
+     * Streaming paths (queryIterator, forEach) never call this, so a query is not stepped through twice
+     * @return time after rows have been read by SQLite
+     */
+    private long awaitRows(Cursor c){
+        if (slowQueryLog != null || metricsListener != null)
+            c.getCount();
+        return System.nanoTime();
+    }
+
+    private void onQueryExecuted(String sql, String[] args, int rows, long startedNanos){
+        onQueryExecuted(sql, args, rows, startedNanos, System.nanoTime());
+    }
+
+    /**
+     * @param startedNanos time before query was executed
+     * @param executedNanos time after SQLite finished, rest of the time was spent mapping rows
+     */
+    private void onQueryExecuted(String sql, String[] args, int rows, long startedNanos, long executedNanos){
+        SlowQueryLog log = slowQueryLog;
+        DatabaseMetricsListener listener = metricsListener;
+        if (log == null && listener == null)
+            return;
+
+        long finished = System.nanoTime();
+        if (log != null && log.isSlow(finished - startedNanos))
+            log.record(getReaderDatabase(), sql, args, rows, finished - startedNanos);
+
+        if (listener != null) {
+            Set<String> tables = QueryCache.getTablesRead(sql);
+            String table = tables.isEmpty() ? null : tables.iterator().next();
+            report(listener, new DatabaseMetricsListener.Event(DatabaseMetricsListener.Operation.QUERY, table, rows,
+                    executedNanos - startedNanos, finished - executedNanos, takeQueueTime()));
+        }
+    }
+
+    private void onWriteExecuted(DatabaseMetricsListener.Operation operation, String table, int rows, long startedNanos){
+        DatabaseMetricsListener listener = metricsListener;
+        if (listener != null) {
+            report(listener, new DatabaseMetricsListener.Event(operation, table == null ? null : table.toLowerCase(Locale.US),
+                    rows, System.nanoTime() - startedNanos, 0, takeQueueTime()));
+        }
+    }
+
+    private static void report(DatabaseMetricsListener listener, DatabaseMetricsListener.Event event){
+        try {
+            listener.onOperation(event);
+        } catch (RuntimeException e) {
+            // failing listener must not fail the operation which has already been executed
+            ExceptionReporter.handle(e);
+        }
+    }
+
+    /**
+     * @return table of given models if all of them are of same model, otherwise null
+     */
+    private static String getTableName(Collection<Class<?>> models){
+        return models.size() == 1 ? models.iterator().next().getSimpleName() : null;
+    }
+
+    private void onModelWritten(Object model, boolean replace){
+        IdentityMap identities = identityMap;
+        if (identities != null) {
+            ModelMetadata.Column pk = ModelMetadata.of(model.getClass()).getPrimaryKey();
+            Object id = null;
+            if (pk != null && !replace) {
+                try {
+                    id = pk.get(model);
+                } catch (IllegalAccessException e) {
+                    ExceptionReporter.handle(e);
+                }
+            }
+
+            // replace could delete other rows conflicting on unique keys, so all objects of model are removed
+            if (id == null)
+                identities.invalidate(model.getClass());
+            else
+                identities.invalidate(model.getClass(), id);
+        }
+        onWritten(Collections.singletonList(model.getClass().getSimpleName()), false);
+    }
+
+    private void onModelsWritten(Collection<?> models){
+        if (queryCache == null && identityMap == null)
+            return;
+
+        Set<String> tables = new HashSet<>();
+        for (Object model : models)
+            tables.add(model.getClass().getSimpleName());
+        onTablesWritten(tables);
+    }
+
+    private void onTablesWritten(Collection<String> tables){
+        onWritten(tables, true);
+    }
+
+    private void onWritten(Collection<String> tables, boolean invalidateIdentities){
+        QueryCache cache = queryCache;
+        IdentityMap identities = identityMap;
+        if (cache == null && identities == null)
+            return;
+
+        if (cache != null)
+            cache.invalidate(tables);
+        if (identities != null && invalidateIdentities)
+            identities.invalidateTables(tables);
+        if (getWritableDatabase().inTransaction()) {
+            Set<String> written = tablesWrittenInTransaction.get();
+            if (written == null) {
+                written = new HashSet<>();
+                tablesWrittenInTransaction.set(written);
+            }
+            written.addAll(tables);
+        }
+    }
+
+    private void onTableWritten(String table){
+        onTablesWritten(Collections.singletonList(table));
     }
 
     public Class<?>[] getModels() {
@@ -70,17 +506,13 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
     protected static int getConsolidatedVersion(Class<?>[] models){
         int sumTableVersion = 0;
         for (Class<?> c : models) {
-            Table table = c.getAnnotation(Table.class);
-            if (table != null)
-                sumTableVersion += table.version();
-            else
-                sumTableVersion++;
+            sumTableVersion += ModelMetadata.of(c).getVersion();
         }
         return sumTableVersion;
     }
     @NonNull
     public Field[] getAllFields(Class<?> modelClass){
-        return DatabaseUtils.getAllFields(modelClass, false);
+        return ModelMetadata.of(modelClass).getFields(false);
     }
 
     public static <T> T extractObjectFromCursor(Class<T> type, Cursor c) throws IllegalAccessException, InstantiationException {
@@ -88,55 +520,17 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
     }
 
     protected final String getSQLiteDataTypeFrom(Class<?> type) throws UnsupportedDataType {
-        if (
-                type == String.class
-                || type == char.class
-                || type == Character.class
-                || type == char[].class
-                || type == Character[].class
-                || type == CharSequence.class
-        )
-            return " TEXT ";
-        else if (
-                type == double.class
-                ||type == Double.class
-                || type == float.class
-                || type == Float.class
-        )
-            return " REAL ";
-        else if (
-                type == byte.class
-                || type == Byte.class
-                || type == short.class
-                || type == Short.class
-                || type == int.class
-                || type == Integer.class
-                || type == long.class
-                || type == Long.class
-        )
-            return " INTEGER ";
-        else if (
-                type == boolean.class
-                || type == Boolean.class
-        )
-            return " BOOLEAN ";
-        else if (
-                type == byte[].class
-                || type == Byte[].class
-        )
-            return " BLOB ";
-        else
+        String sqliteType = ModelMetadata.getSQLiteDataTypeFrom(type);
+        if (sqliteType == null)
             throw new UnsupportedDataType(type);
+        return sqliteType;
     }
 
     protected final ContentValues getContentValuesFromModel(Object o){
         ContentValues values = new ContentValues();
-        for (Field field : getAllFields(o.getClass())){
+        for (ModelMetadata.Column column : ModelMetadata.of(o.getClass()).getColumns()){
             try {
-                if (!field.isAccessible())
-                    field.setAccessible(true);
-
-                values.put(field.getName(), field.get(o) != null ? field.get(o).toString() : null);
+                ValueBinder.put(values, column, o);
             } catch (Exception e) {
                 ExceptionReporter.handle(e);
             }
@@ -145,244 +539,658 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
     }
 
     protected void createTable(Class<?> modelClass, SQLiteDatabase db) throws UnsupportedDataType {
-        HashMap<String, ArrayList<String>> uniqueConstraint = new HashMap<>();
-        boolean pkAutoIncremented = false;
-        List<String> pkConstraint = new ArrayList<>();
-        StringBuilder queryBuilder = new StringBuilder();
-        queryBuilder.append("CREATE TABLE ").append(modelClass.getSimpleName()).append(" (");
-        for (Field field : getAllFields(modelClass)){
-            if (Modifier.isPublic(field.getModifiers()) || Modifier.isProtected(field.getModifiers())) {
-                queryBuilder.append(field.getName())
-                        .append(getSQLiteDataTypeFrom(field.getType()));
-                PrimaryKey pk = field.getAnnotation(PrimaryKey.class);
-                if (pk != null){
-                    if (pk.autogenerate() && !pkAutoIncremented) {
-                        queryBuilder.append("PRIMARY KEY AUTOINCREMENT");
-                        pkAutoIncremented = true;
-                    } else
-                        pkConstraint.add(field.getName());
-                }
-                Default ano = field.getAnnotation(Default.class);
-                if (ano != null){
-                    queryBuilder.append("DEFAULT ")
-                            .append('\'').append(ano.value()).append('\'');
-                }
-                queryBuilder.append(field.getAnnotation(NotNull.class) == null ? "," : " NOT NULL,");
+        db.execSQL(getCreateTableSql(modelClass));
+        createIndexes(ModelMetadata.of(modelClass), db);
+    }
+
+    /**
+     * @return create statement of model from getCreateTableSql(ModelMetadata), for models with and without
+     * generated adapter
+     */
+    String getCreateTableSql(Class<?> modelClass) throws UnsupportedDataType {
+        return getCreateTableSql(ModelMetadata.of(modelClass));
+    }
+
+    protected String getCreateTableSql(ModelMetadata metadata) throws UnsupportedDataType {
+        return ModelStore.getCreateTableSql(metadata);
+    }
+
+    protected void createIndexes(ModelMetadata metadata, SQLiteDatabase db){
+        for (String sql : getCreateIndexSql(metadata).values())
+            db.execSQL(sql);
+    }
+
+    /**
+     * create statements of unique keys and of indexes declared with Index annotations, partial indexes
+     * (Index.where) need SQLite 3.8 or above which ships with API 21
+     * @return create statements of indexes of model mapped by name of index
+     * @throws SQLException in case model declares a partial index and device is below API 21
+     */
+    protected Map<String, String> getCreateIndexSql(ModelMetadata metadata) throws SQLException {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            for (ModelMetadata.IndexDefinition index : metadata.getIndexes()) {
+                if (!index.getWhere().isEmpty())
+                    throw new SQLException("Partial index " + index.getName() + " of model " + metadata.getModelClass().getSimpleName()
+                            + " needs SQLite 3.8 (API 21) or above, Can not proceed to create index");
             }
+        }
+        return ModelStore.getCreateIndexSql(metadata);
+    }
+
+    protected void dropTable(Class<?> modelClass, SQLiteDatabase db){
+        db.execSQL("DROP TABLE IF EXISTS " + modelClass.getSimpleName());
+    }
+
+    /**
+     * Sets the executor on which executeDatabaseOperation(IDatabaseOperation) runs operations, by default operations
+     * run on a small pool owned by this class. ModelBasedRepository passes its write executor since an operation
+     * may write
+     * @param executor executor for database operations
+     */
+    public void setOperationExecutor(@NonNull Executor executor){
+        this.operationExecutor = executor;
+    }
+
+    public Executor getOperationExecutor() {
+        return operationExecutor;
+    }
+
+    public <T> DatabaseOperationExecutor<T> executeDatabaseOperation(IDatabaseOperation<T> databaseRead){
+        return executeDatabaseOperation(databaseRead, operationExecutor);
+    }
+
+    public <T> DatabaseOperationExecutor<T> executeDatabaseOperation(IDatabaseOperation<T> databaseRead, Executor executor){
+        DatabaseOperationExecutor<T> operationExecutor = new DatabaseOperationExecutor<T>(databaseRead);
+        return operationExecutor.executeOnExecutor(executor, ModelBasedDatabaseHelper.this);
+    }
+
+    public Long insertOrThrow(@NonNull Object model) throws SQLException {
+        long started = System.nanoTime();
+        try {
+            Long id = getWritableDatabase()
+                    .insertOrThrow(
+                            model.getClass().getSimpleName(),
+                            null,
+                            getContentValuesFromModel(model)
+                    );
+            onWriteExecuted(DatabaseMetricsListener.Operation.INSERT, model.getClass().getSimpleName(), id != -1 ? 1 : 0, started);
+            return id;
+        } finally {
+            onModelWritten(model, false);
+        }
+    }
+
+    public List<Long> insertOrThrow(@NonNull Object[] models) throws SQLException {
+        return executeBulkInsert(Arrays.asList(models), ConflictMode.NONE);
+    }
+
+    public Long insert(@NonNull Object model){
+        long started = System.nanoTime();
+        try {
+            Long id = getWritableDatabase()
+                    .insert(
+                            model.getClass().getSimpleName(),
+                            null,
+                            getContentValuesFromModel(model)
+                    );
+            onWriteExecuted(DatabaseMetricsListener.Operation.INSERT, model.getClass().getSimpleName(), id != -1 ? 1 : 0, started);
+            return id;
+        } finally {
+            onModelWritten(model, false);
+        }
+    }
+
+    public List<Long> insert(Object[] models){
+        List<Long> result = new ArrayList<>();
+        try {
+            executeBulkInsert(Arrays.asList(models), ConflictMode.NONE, result);
+        } catch (SQLException sqlException){
+            ExceptionReporter.handle(sqlException);
+        }
+        return result;
+    }
+
+    public Long replaceOrThrow(@NonNull Object model) throws SQLException{
+        long started = System.nanoTime();
+        try {
+            Long id = getWritableDatabase()
+                    .replaceOrThrow(
+                            model.getClass().getSimpleName(),
+                            null,
+                            getContentValuesFromModel(model)
+                    );
+            onWriteExecuted(DatabaseMetricsListener.Operation.REPLACE, model.getClass().getSimpleName(), id != -1 ? 1 : 0, started);
+            return id;
+        } finally {
+            onModelWritten(model, true);
+        }
+    }
+
+    public List<Long> replaceOrThrow(Object[] models) throws SQLException{
+        return executeBulkInsert(Arrays.asList(models), ConflictMode.REPLACE);
+    }
+
+    public Long replace(@NonNull Object model){
+        long started = System.nanoTime();
+        try {
+            Long id = getWritableDatabase()
+                    .replace(
+                            model.getClass().getSimpleName(),
+                            null,
+                            getContentValuesFromModel(model)
+                    );
+            onWriteExecuted(DatabaseMetricsListener.Operation.REPLACE, model.getClass().getSimpleName(), id != -1 ? 1 : 0, started);
+            return id;
+        } finally {
+            onModelWritten(model, true);
+        }
+    }
+
+    public List<Long> replace(Object[] models){
+        return replace(Arrays.asList(models));
+    }
 
-            Unique uAno = field.getAnnotation(Unique.class);
-            if (uAno != null){
-                if (uniqueConstraint.containsKey(uAno.index())){
-                    uniqueConstraint.get(uAno.index()).add(field.getName());
-                } else {
-                    ArrayList<String> cols = new ArrayList<>();
-                    cols.add(field.getName());
-                    uniqueConstraint.put(uAno.index(), cols);
+    public List<Long> replace(List<?> models){
+        List<Long> ids = new ArrayList<>();
+        try {
+            executeBulkInsert(models, ConflictMode.REPLACE, ids);
+        } catch (SQLException sqlException){
+            ExceptionReporter.handle(sqlException);
+        }
+        return ids;
+    }
+
+    /**
+     * Inserts all given models in single transaction, insert statement is compiled once for each model class
+     * and reused for all the objects of that class, so the list can have objects of different models
+     * @param models objects to insert
+     * @param conflictMode conflict resolution of insert statement
+     * @return row ids of inserted rows in the order of given models
+     * @throws SQLException in case any of insert fails, in which case none of the models is inserted
+     */
+    public List<Long> executeBulkInsert(Collection<?> models, ConflictMode conflictMode) throws SQLException {
+        List<Long> ids = new ArrayList<>(models.size());
+        executeBulkInsert(models, conflictMode, ids);
+        return ids;
+    }
+
+    private void executeBulkInsert(Collection<?> models, ConflictMode conflictMode, List<Long> ids) throws SQLException {
+        Map<Class<?>, InsertStatement> statements = new HashMap<>();
+        long started = System.nanoTime();
+        SQLiteDatabase db = getWritableDatabase();
+        StorageConnection connection = AndroidStorage.wrap(db);
+        beginWriteTransaction(db);
+        try{
+            for (Object model : models){
+                InsertStatement statement = statements.get(model.getClass());
+                if (statement == null) {
+                    statement = new InsertStatement(connection, model.getClass(), conflictMode);
+                    statements.put(model.getClass(), statement);
+                }
+                ids.add(statement.execute(model));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            try {
+                endWriteTransaction(db);
+            } finally {
+                for (InsertStatement statement : statements.values())
+                    statement.close();
+                if (queryCache != null || identityMap != null) {
+                    List<String> tables = new ArrayList<>();
+                    for (Class<?> model : statements.keySet())
+                        tables.add(model.getSimpleName());
+                    onTablesWritten(tables);
                 }
             }
         }
+        onWriteExecuted(conflictMode == ConflictMode.REPLACE ? DatabaseMetricsListener.Operation.REPLACE : DatabaseMetricsListener.Operation.INSERT,
+                getTableName(statements.keySet()), ids.size(), started);
+    }
 
-        if (!pkAutoIncremented && !pkConstraint.isEmpty()) {
-            queryBuilder
-                    .append(" CONSTRAINT `")
-                    .append(modelClass.getSimpleName())
-                    .append("_PK`")
-                    .append("  PRIMARY KEY (");
+    /**
+     * @see #importJson(Class, Reader, ConflictMode, int, JsonImportListener)
+     */
+    public long importJson(Class<?> modelClass, Reader reader, ConflictMode conflictMode) throws IOException, SQLException {
+        return importJson(modelClass, reader, conflictMode, DEFAULT_IMPORT_CHUNK_SIZE, null);
+    }
 
-            for (String pkCol : pkConstraint)
-                queryBuilder
-                        .append("`")
-                        .append(pkCol)
-                        .append("`,");
+    /**
+     * Imports a JSON array of objects of given model, i,e sync payload, straight from reader. Objects are read one at a
+     * time with JsonReader and bound to a compiled insert statement without creating objects of model, so memory used
+     * does not depend on the size of payload. Properties are matched to columns by SerializedName as Gson does.
+     * Every chunk is committed in its own transaction, if import fails the chunks committed before it are kept
+     * @param modelClass model class of objects in array
+     * @param reader reader of payload, it is not closed
+     * @param conflictMode conflict resolution of insert statement
+     * @param chunkSize number of objects committed in one transaction (at least 1)
+     * @param listener receives progress after every chunk, may be null
+     * @return number of rows written, rows skipped by ConflictMode.IGNORE are not counted
+     * @throws IOException in case payload could not be read, is malformed or has a value not matching type of field
+     * @throws SQLException in case of constraint violation or other errors from SQLite
+     */
+    public long importJson(Class<?> modelClass, Reader reader, ConflictMode conflictMode, int chunkSize, @Nullable JsonImportListener listener) throws IOException, SQLException {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("Chunk size must be at least 1");
 
-            queryBuilder.deleteCharAt(queryBuilder.length()-1).append("),");
+        ModelMetadata metadata = ModelMetadata.of(modelClass);
+        JsonRowBinder binder = new JsonRowBinder(metadata);
+        JsonRowBinder.CountingReader counting = new JsonRowBinder.CountingReader(reader);
+        JsonReader json = new JsonReader(counting);
+        DatabaseMetricsListener.Operation operation = conflictMode == ConflictMode.REPLACE
+                ? DatabaseMetricsListener.Operation.REPLACE : DatabaseMetricsListener.Operation.INSERT;
 
+        SQLiteDatabase db = getWritableDatabase();
+        StorageStatement statement = AndroidStorage.wrap(db).prepare(
+                ModelStore.getInsertSql(metadata.getTableName(), metadata.getColumnNames(), conflictMode)
+        );
+        long totalRows = 0;
+        long totalWritten = 0;
+        int chunk = 0;
+        try {
+            json.beginArray();
+            while (json.hasNext()) {
+                long started = System.nanoTime();
+                int rows = 0;
+                int written = 0;
+                beginWriteTransaction(db);
+                try {
+                    while (rows < chunkSize && json.hasNext()) {
+                        binder.bind(json, statement);
+                        if (statement.executeInsert() != -1)
+                            written++;
+                        rows++;
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    try {
+                        endWriteTransaction(db);
+                    } finally {
+                        if (written > 0)
+                            onTableWritten(modelClass.getSimpleName());
+                    }
+                }
+
+                totalRows += rows;
+                totalWritten += written;
+                onWriteExecuted(operation, modelClass.getSimpleName(), written, started);
+                if (listener != null) {
+                    try {
+                        listener.onChunkCommitted(new JsonImportListener.Progress(++chunk, rows, totalRows,
+                                totalWritten, counting.getCount(), System.nanoTime() - started));
+                    } catch (RuntimeException e) {
+                        ExceptionReporter.handle(e);
+                    }
+                }
+            }
+            json.endArray();
+        } finally {
+            statement.close();
         }
+        return totalWritten;
+    }
 
-        queryBuilder.deleteCharAt(queryBuilder.length()-1).append(")");
-        db.execSQL(queryBuilder.toString());
-        if (uniqueConstraint.size() > 0) {
-            for (String index : uniqueConstraint.keySet()){
-                StringBuilder sb = new StringBuilder();
-                sb.append("CREATE UNIQUE INDEX `")
-                        .append(modelClass.getSimpleName()).append("_unique_index_").append(index).append('`')
-                        .append(" ON `").append(modelClass.getSimpleName()).append("` (");
-                for (String col :  uniqueConstraint.get(index)){
-                    sb.append('`').append(col).append("`,");
+    /**
+     * Inserts the object or, if it conflicts with an existing row on primary key (when not autogenerated) or on first
+     * group of Unique columns, updates that row in place. Unlike replace the row is not deleted and inserted again, so
+     * its row id and indexes on unchanged columns are kept
+     * @param model object to upsert
+     * @return number of rows inserted or updated
+     * @throws SQLException in case model has no key to detect conflict or on any other constraint violation
+     */
+    public Integer upsert(@NonNull Object model) throws SQLException {
+        return upsert(Collections.singletonList(model));
+    }
+
+    /**
+     * Upserts all given objects in single transaction, statement is compiled once for each model class
+     * @param models objects to upsert, can be of different models
+     * @return number of rows inserted or updated
+     * @throws SQLException in case any upsert fails, in which case none of the objects is written
+     * @see #upsert(Object)
+     */
+    public Integer upsert(@NonNull Collection<?> models) throws SQLException {
+        Map<Class<?>, UpsertStatement> statements = new HashMap<>();
+        boolean nativeUpsert = isNativeUpsertSupported();
+        long started = System.nanoTime();
+        SQLiteDatabase db = getWritableDatabase();
+        StorageConnection connection = AndroidStorage.wrap(db);
+        int count = 0;
+        beginWriteTransaction(db);
+        try {
+            for (Object model : models) {
+                UpsertStatement statement = statements.get(model.getClass());
+                if (statement == null) {
+                    statement = new UpsertStatement(connection, model.getClass(), nativeUpsert);
+                    statements.put(model.getClass(), statement);
                 }
-                sb.deleteCharAt(sb.length()-1).append(")");
-                db.execSQL(sb.toString());
+                count += statement.execute(model);
             }
+            db.setTransactionSuccessful();
+        } finally {
+            try {
+                endWriteTransaction(db);
+            } finally {
+                for (UpsertStatement statement : statements.values())
+                    statement.close();
+                if (queryCache != null || identityMap != null) {
+                    // row may be matched by unique key instead of primary key of object, so whole tables are invalidated
+                    List<String> tables = new ArrayList<>();
+                    for (Class<?> model : statements.keySet())
+                        tables.add(model.getSimpleName());
+                    onTablesWritten(tables);
+                }
+            }
+        }
+        onWriteExecuted(DatabaseMetricsListener.Operation.UPSERT, getTableName(statements.keySet()), count, started);
+        return count;
+    }
+
+    /**
+     * @return true if SQLite of device supports INSERT ... ON CONFLICT DO UPDATE (3.24 and above)
+     */
+    public boolean isNativeUpsertSupported(){
+        Boolean supported = nativeUpsert;
+        if (supported == null) {
+            supported = isSQLiteVersionAtLeast(queryString("SELECT sqlite_version()"), 3, 24);
+            nativeUpsert = supported;
         }
+        return supported;
     }
 
-    protected void dropTable(Class<?> modelClass, SQLiteDatabase db){
-        db.execSQL("DROP TABLE IF EXISTS " + modelClass.getSimpleName());
+    private static boolean isSQLiteVersionAtLeast(String version, int major, int minor){
+        if (version == null)
+            return false;
+        String[] parts = version.split("\\.");
+        try {
+            int actualMajor = Integer.parseInt(parts[0]);
+            int actualMinor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return actualMajor > major || (actualMajor == major && actualMinor >= minor);
+        } catch (NumberFormatException e) {
+            return false;
+        }
     }
 
-    public <T> DatabaseOperationExecutor<T> executeDatabaseOperation(IDatabaseOperation<T> databaseRead){
-        DatabaseOperationExecutor<T> operationExecutor = new DatabaseOperationExecutor<T>(databaseRead);
-        operationExecutor.execute(ModelBasedDatabaseHelper.this);
-        return operationExecutor;
+    /**
+     * Updates every column of the row of object by its primary key, values including the key are bound by type of
+     * their fields as insert binds them, statement is shared with update(Object, String...) of all columns
+     * @param object object to update
+     * @return number of rows updated
+     * @throws SQLException in case model has no primary key
+     * @throws IllegalAccessException in case a field could not be read
+     */
+    public Integer update(Object object) throws SQLException, IllegalAccessException {
+        ModelMetadata metadata = ModelMetadata.of(object.getClass());
+        if (metadata.getPrimaryKey() == null)
+            throw new SQLException("Provided object has no primary key, Can not proceed to update record");
+
+        boolean[] selected = new boolean[metadata.getColumns().size()];
+        Arrays.fill(selected, true);
+        return executeUpdate(object, metadata, selected);
     }
 
-    public Long insertOrThrow(@NonNull Object model) throws SQLException {
-        return getWritableDatabase()
-                .insertOrThrow(
-                        model.getClass().getSimpleName(),
-                        null,
-                        getContentValuesFromModel(model)
-                );
+    /**
+     * Updates only given columns of the row of object by its primary key, so large columns which have not changed
+     * are not written again and indexes on them are not touched. Statement is compiled once for every combination
+     * of model and columns and cached for subsequent updates
+     * @param object object to update
+     * @param columns names of columns to update, primary key columns are ignored
+     * @return number of rows updated, 0 without touching database if no column other than primary key is given
+     * @throws SQLException in case model has no primary key or a column is not found in model
+     * @throws IllegalAccessException in case a field could not be read
+     */
+    public Integer update(@NonNull Object object, String... columns) throws SQLException, IllegalAccessException {
+        if (columns == null || columns.length == 0)
+            return 0;
+
+        ModelMetadata metadata = ModelMetadata.of(object.getClass());
+        boolean[] selected = new boolean[metadata.getColumns().size()];
+        for (String name : columns) {
+            ModelMetadata.Column column = metadata.getColumn(name);
+            if (column == null)
+                throw new SQLException("Column '" + name + "' not found in model " + object.getClass().getSimpleName());
+            selected[metadata.getColumns().indexOf(column)] = true;
+        }
+        return executeUpdate(object, metadata, selected);
     }
 
-    public List<Long> insertOrThrow(@NonNull Object[] models) throws SQLException {
-        List<Long> result = new ArrayList<>();
-        SQLiteDatabase db = getWritableDatabase();
-        db.beginTransaction();
-        try{
-            for (int i = 0; i < models.length; i++){
-                result.add(db.insertOrThrow(
-                        models[i].getClass().getSimpleName(),
-                        null,
-                        getContentValuesFromModel(models[i])
-                ));
+    private int executeUpdate(Object object, ModelMetadata metadata, boolean[] selected) throws IllegalAccessException {
+        // key in table order so that same set of columns in any order shares the statement
+        List<ModelMetadata.Column> updated = new ArrayList<>();
+        StringBuilder key = new StringBuilder(object.getClass().getName());
+        for (int i = 0; i < selected.length; i++) {
+            if (selected[i] && !metadata.getColumns().get(i).isPrimaryKey()) {
+                updated.add(metadata.getColumns().get(i));
+                key.append(',').append(metadata.getColumns().get(i).getName());
+            }
+        }
+        if (updated.isEmpty())
+            return 0;
+
+        long started = System.nanoTime();
+        try {
+            SQLiteDatabase db = getWritableDatabase();
+            while (true) {
+                int count = getUpdateStatement(db, key.toString(), object.getClass(), updated).execute(object);
+                // statement was evicted and closed by another thread, compile it again
+                if (count != -1) {
+                    onWriteExecuted(DatabaseMetricsListener.Operation.UPDATE, metadata.getTableName(), count, started);
+                    return count;
+                }
             }
-            db.setTransactionSuccessful();
-        } catch (SQLException sqlException){
-            db.endTransaction();
-            throw sqlException;
         } finally {
-            db.endTransaction();
+            onModelWritten(object, false);
         }
-        return result;
     }
 
-    public Long insert(@NonNull Object model){
-        return getWritableDatabase()
-                .insert(
-                        model.getClass().getSimpleName(),
-                        null,
-                        getContentValuesFromModel(model)
-                );
+    /**
+     * Updates the columns of object which have changed since snapshot was taken, snapshot is taken again after update
+     * @param snapshot snapshot of object
+     * @return number of rows updated, 0 if no column has changed
+     * @throws SQLException in case model has no primary key
+     * @throws IllegalAccessException in case a field could not be read
+     */
+    public Integer update(@NonNull ModelSnapshot<?> snapshot) throws SQLException, IllegalAccessException {
+        String[] dirty = snapshot.getDirtyColumns();
+        if (dirty.length == 0)
+            return 0;
+
+        Integer count = update(snapshot.getModel(), dirty);
+        snapshot.reset();
+        return count;
     }
 
-    public List<Long> insert(Object[] models){
-        List<Long> result = new ArrayList<>();
-        SQLiteDatabase db = getWritableDatabase();
-        db.beginTransaction();
-        try{
-            for (int i = 0; i < models.length; i++){
-                result.add(db.insertOrThrow(
-                        models[i].getClass().getSimpleName(),
-                        null,
-                        getContentValuesFromModel(models[i])
-                ));
+    private UpdateStatement getUpdateStatement(SQLiteDatabase db, String key, Class<?> modelClass, List<ModelMetadata.Column> columns){
+        synchronized (updateStatements) {
+            if (db != updateStatementsDatabase) {
+                clearUpdateStatements();
+                updateStatementsDatabase = db;
             }
-            db.setTransactionSuccessful();
-        } catch (SQLException sqlException){
-            ExceptionReporter.handle(sqlException);
-        } finally {
-            db.endTransaction();
+
+            UpdateStatement statement = updateStatements.get(key);
+            if (statement == null) {
+                statement = newUpdateStatement(db, modelClass, columns);
+                updateStatements.put(key, statement);
+            }
+            return statement;
         }
-        return result;
     }
 
-    public Long replaceOrThrow(@NonNull Object model) throws SQLException{
-        return getWritableDatabase()
-                .replaceOrThrow(
-                        model.getClass().getSimpleName(),
-                        null,
-                        getContentValuesFromModel(model)
-                );
+    private static UpdateStatement newUpdateStatement(SQLiteDatabase db, Class<?> modelClass, List<ModelMetadata.Column> columns) throws SQLException {
+        String error = UpdateStatement.validate(modelClass, columns);
+        if (error != null)
+            throw new SQLException(error);
+        return new UpdateStatement(AndroidStorage.wrap(db), modelClass, columns);
     }
 
-    public List<Long> replaceOrThrow(Object[] models) throws SQLException{
-        List<Long> result = new ArrayList<>();
+    private void clearUpdateStatements(){
+        synchronized (updateStatements) {
+            for (UpdateStatement statement : updateStatements.values())
+                statement.close();
+            updateStatements.clear();
+            updateStatementsDatabase = null;
+        }
+    }
+
+    /**
+     * Updates all given objects by their primary key in single transaction, statement is compiled once for each model class
+     * @param models objects to update, can be of different models
+     * @return number of rows updated
+     * @throws SQLException in case any of models has no primary key or any update fails, in which case none of the objects is updated
+     * @throws IllegalAccessException in case a field could not be read
+     */
+    public Integer update(@NonNull Collection<?> models) throws SQLException, IllegalAccessException {
+        Map<Class<?>, UpdateStatement> statements = new HashMap<>();
+        long started = System.nanoTime();
         SQLiteDatabase db = getWritableDatabase();
-        db.beginTransaction();
-        try{
-            for (int i = 0; i < models.length; i++){
-                result.add(db.replaceOrThrow(
-                        models[i].getClass().getSimpleName(),
-                        null,
-                        getContentValuesFromModel(models[i])
-                ));
+        int count = 0;
+        beginWriteTransaction(db);
+        try {
+            for (Object model : models) {
+                UpdateStatement statement = statements.get(model.getClass());
+                if (statement == null) {
+                    statement = newUpdateStatement(db, model.getClass(), ModelMetadata.of(model.getClass()).getColumns());
+                    statements.put(model.getClass(), statement);
+                }
+                count += statement.execute(model);
             }
             db.setTransactionSuccessful();
-        } catch (SQLException sqlException){
-            db.endTransaction();
-            throw sqlException;
         } finally {
-            db.endTransaction();
+            try {
+                endWriteTransaction(db);
+            } finally {
+                for (UpdateStatement statement : statements.values())
+                    statement.close();
+                onModelsWritten(models);
+            }
         }
-        return result;
+        onWriteExecuted(DatabaseMetricsListener.Operation.UPDATE, getTableName(statements.keySet()), count, started);
+        return count;
     }
 
-    public Long replace(@NonNull Object model){
-        return getWritableDatabase()
-                .replace(
-                        model.getClass().getSimpleName(),
-                        null,
-                        getContentValuesFromModel(model)
-                );
-    }
+    /**
+     * Deletes the row of given object by its primary key
+     * @param model object to delete
+     * @return number of rows deleted
+     * @throws SQLException in case model has no primary key
+     * @throws IllegalAccessException in case a field could not be read
+     */
+    public Integer delete(@NonNull Object model) throws SQLException, IllegalAccessException {
+        ModelMetadata metadata = ModelMetadata.of(model.getClass());
+        List<ModelMetadata.Column> pk = metadata.getPrimaryKeyColumns();
+        if (pk.isEmpty())
+            throw new SQLException("Provided object has no primary key, Can not proceed to delete record");
+
+        StringBuilder where = new StringBuilder();
+        String[] args = new String[pk.size()];
+        for (int i = 0; i < pk.size(); i++) {
+            where.append(i == 0 ? "`" : " AND `").append(pk.get(i).getName()).append("`=?");
+            Object value = pk.get(i).get(model);
+            if (value == null)
+                return 0;
+            args[i] = pk.get(i).getFieldType().toText(value);
+        }
 
-    public List<Long> replace(Object[] models){
-        List<Long> ids = new ArrayList<>();
-        SQLiteDatabase db = getWritableDatabase();
-        db.beginTransaction();
-        try{
-            for (int i = 0; i < models.length; i++){
-                ids.add(db.replaceOrThrow(
-                        models[i].getClass().getSimpleName(),
-                        null,
-                        getContentValuesFromModel(models[i])
-                ));
-            }
-            db.setTransactionSuccessful();
-        } catch (SQLException sqlException){
-            db.endTransaction();
-            ExceptionReporter.handle(sqlException);
+        long started = System.nanoTime();
+        try {
+            int count = getWritableDatabase().delete(metadata.getTableName(), where.toString(), args);
+            onWriteExecuted(DatabaseMetricsListener.Operation.DELETE, metadata.getTableName(), count, started);
+            return count;
         } finally {
-            db.endTransaction();
+            onModelWritten(model, false);
         }
-        return ids;
     }
 
-    public List<Long> replace(List<?> models){
-        List<Long> ids = new ArrayList<>();
+    /**
+     * Deletes the rows of given model with given primary keys in single transaction, ids are deleted in chunks
+     * so that statement stays within the limit of host parameters of SQLite
+     * @param modelClass model class
+     * @param ids values of primary key
+     * @return number of rows deleted
+     * @throws SQLException in case model has no primary key or its primary key has more than one column
+     */
+    public Integer deleteByIds(@NonNull Class<?> modelClass, @NonNull Collection<?> ids) throws SQLException {
+        ModelMetadata metadata = ModelMetadata.of(modelClass);
+        List<ModelMetadata.Column> pk = metadata.getPrimaryKeyColumns();
+        if (pk.size() != 1)
+            throw new SQLException("Model " + modelClass.getSimpleName() + " must have single column primary key to delete by ids");
+        if (ids.isEmpty())
+            return 0;
+
+        String sql = "DELETE FROM `" + metadata.getTableName() + "` WHERE `" + pk.get(0).getName() + "` IN (";
+        long started = System.nanoTime();
         SQLiteDatabase db = getWritableDatabase();
-        db.beginTransaction();
-        try{
-            for (int i = 0; i < models.size(); i++){
-                ids.add(db.replaceOrThrow(
-                        models.get(i).getClass().getSimpleName(),
-                        null,
-                        getContentValuesFromModel(models.get(i))
-                ));
+        StorageConnection connection = AndroidStorage.wrap(db);
+        StorageStatement full = null;
+        int count = 0;
+        beginWriteTransaction(db);
+        try {
+            List<Object> chunk = new ArrayList<>(Math.min(ids.size(), MAX_HOST_PARAMETERS));
+            for (Object id : ids) {
+                chunk.add(id);
+                if (chunk.size() == MAX_HOST_PARAMETERS) {
+                    if (full == null)
+                        full = connection.prepare(getInSql(sql, MAX_HOST_PARAMETERS));
+                    count += executeDeleteChunk(full, chunk);
+                    chunk.clear();
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                StorageStatement last = connection.prepare(getInSql(sql, chunk.size()));
+                try {
+                    count += executeDeleteChunk(last, chunk);
+                } finally {
+                    last.close();
+                }
             }
             db.setTransactionSuccessful();
-        } catch (SQLException sqlException){
-            db.endTransaction();
-            ExceptionReporter.handle(sqlException);
         } finally {
-            db.endTransaction();
+            try {
+                endWriteTransaction(db);
+            } finally {
+                if (full != null)
+                    full.close();
+                onTableWritten(metadata.getTableName());
+            }
         }
-        return ids;
+        onWriteExecuted(DatabaseMetricsListener.Operation.DELETE, metadata.getTableName(), count, started);
+        return count;
     }
 
-    public Integer update(Object object) throws SQLException, IllegalAccessException {
-        Field pk = getPrimaryKeyField(object.getClass());
+    private static String getInSql(String sql, int parameters){
+        StringBuilder sb = new StringBuilder(sql.length() + parameters * 2).append(sql);
+        for (int i = 0; i < parameters; i++)
+            sb.append(i == 0 ? "?" : ",?");
+        return sb.append(')').toString();
+    }
 
-        if (pk == null)
-            throw new SQLException("Provided object has no primary key, Can not proceed to update record");
+    private static int executeDeleteChunk(StorageStatement statement, List<Object> ids){
+        statement.clearBindings();
+        for (int i = 0; i < ids.size(); i++) {
+            Object id = ids.get(i);
+            ValueBinder.bindValue(statement, i + 1, id == null ? FieldType.STRING : FieldType.of(id.getClass()), id);
+        }
+        return statement.executeUpdateDelete();
+    }
 
-        return getWritableDatabase().update(
-                object.getClass().getSimpleName(),
-                getContentValuesFromModel(object),
-                pk.getName() + "= ?",
-                new String[]{ pk.get(object).toString() }
-        );
+    /**
+     * Deletes the rows of given model matching given predicate
+     * @param modelClass model class
+     * @param predicate where clause without WHERE keyword, null deletes all rows
+     * @param args selection arguments of predicate
+     * @return number of rows deleted
+     */
+    public Integer deleteWhere(@NonNull Class<?> modelClass, @Nullable String predicate, String... args){
+        String table = ModelMetadata.of(modelClass).getTableName();
+        long started = System.nanoTime();
+        try {
+            int count = getWritableDatabase().delete(table, predicate != null ? predicate : "1", args);
+            onWriteExecuted(DatabaseMetricsListener.Operation.DELETE, table, count, started);
+            return count;
+        } finally {
+            onTableWritten(table);
+        }
     }
 
     /**
@@ -394,19 +1202,20 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
      * @return List of models
      * @param <T> Type of Model
      */
+    @SuppressWarnings("unchecked")
     public <T> List<T> query(Class<?> outputType, String... args){
         String sql = "SELECT * FROM `"+outputType.getSimpleName()+"`";
         if (args != null && args.length > 0) {
             sql += " WHERE " + args[0];
 
             if (args.length == 1)
-                return (List<T>) queryRawSql(outputType, sql, null);
+                return (List<T>) queryRawSql(outputType, sql, (String[]) null);
 
             String[] arg = new String[args.length - 1];
             System.arraycopy(args, 1, arg, 0, args.length - 1);
             return (List<T>) queryRawSql(outputType, sql, arg);
         }
-        return (List<T>) queryRawSql(outputType, sql, null);
+        return (List<T>) queryRawSql(outputType, sql, (String[]) null);
     }
 
     /**
@@ -417,18 +1226,29 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
      * @return list of result
      * @param <T> type of result
      */
+    @SuppressWarnings("unchecked")
     public <T> List<T> queryRawSql(Class<T> outputType, String rawSql, String... selectionArgs) {
         List<T> result = new ArrayList<T>();
 
-        rawSql = rawSql.toLowerCase();
-        if (rawSql.contains("<table>"))
-            rawSql = rawSql.replace("<table>", "`" + outputType.getSimpleName() + "`");
+        rawSql = resolveTablePlaceholder(rawSql, outputType);
+
+        QueryCache cache = queryCache;
+        QueryCache.Key key = getCacheKey(cache, outputType, rawSql, selectionArgs);
+        if (key != null) {
+            List<T> cached = (List<T>) cache.get(key);
+            if (cached != null)
+                return new ArrayList<>(cached);
+        }
 
-        Cursor c = getReadableDatabase().rawQuery(rawSql, selectionArgs);
+        long started = System.nanoTime();
+        Cursor c = getReaderDatabase().rawQuery(rawSql, selectionArgs);
+        long executed = awaitRows(c);
         if (c.moveToFirst()){
+            StorageCursor row = AndroidStorage.wrap(c);
+            RowMappingPlan<T> plan = RowMappingPlan.of(outputType, row, false);
             do {
                 try {
-                    result.add(extractObjectFromCursor(outputType, c));
+                    result.add(plan.map(row));
                 } catch (IllegalAccessException e) {
                     ExceptionReporter.handle(e);
                 } catch (InstantiationException e) {
@@ -437,9 +1257,254 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
             } while(c.moveToNext());
         }
         c.close();
+        onQueryExecuted(rawSql, selectionArgs, result.size(), started, executed);
+
+        if (key != null)
+            cache.put(key, new ArrayList<>(result), QueryCache.estimateSize(result));
         return result;
     }
 
+    /**
+     * key of given query in cache, null if cache is disabled, query is executed inside a transaction
+     * in which case it could read uncommitted rows, or query reads anything other than tables (views, common table
+     * expressions) since writes into underlying tables of those would not invalidate the entry
+     */
+    private QueryCache.Key getCacheKey(QueryCache cache, Object kind, String sql, String[] args){
+        if (cache == null || getReaderDatabase().inTransaction())
+            return null;
+        QueryCache.Key key = cache.newKey(kind, sql, args);
+        if (key == null)
+            return null;
+        for (String table : key.getTables()) {
+            if (!isBaseTable(table))
+                return null;
+        }
+        return key;
+    }
+
+    /**
+     * whether given name is a table of main schema according to sqlite_master, result is remembered until
+     * the cache is invalidated as a whole, which happens on every schema change done with execSql
+     */
+    private boolean isBaseTable(String name){
+        synchronized (baseTables) {
+            Boolean known = baseTables.get(name);
+            if (known != null)
+                return known;
+        }
+
+        boolean table;
+        Cursor c = getReaderDatabase().rawQuery(
+                "SELECT type FROM sqlite_master WHERE name = ? COLLATE NOCASE", new String[]{ name });
+        try {
+            table = c.moveToFirst() && "table".equalsIgnoreCase(c.getString(0));
+        } finally {
+            c.close();
+        }
+
+        synchronized (baseTables) {
+            baseTables.put(name, table);
+        }
+        return table;
+    }
+
+    /**
+     * This method is streaming alternative of query(Class<>,String...), rows are mapped to model one by one while iterating
+     * instead of loading the whole result in a list, so memory stays flat regardless of number of rows.
+     * Returned iterator holds open cursor which is closed after last row, close it if iteration is stopped early
+     * @param outputType model class
+     * @param args predicate and args
+     * @return closeable iterator over the rows
+     * @param <T> Type of Model
+     */
+    public <T> QueryIterator<T> queryIterator(Class<T> outputType, String... args){
+        String sql = "SELECT * FROM `"+outputType.getSimpleName()+"`";
+        if (args != null && args.length > 0) {
+            sql += " WHERE " + args[0];
+
+            if (args.length == 1)
+                return queryIteratorRawSql(outputType, sql, (String[]) null);
+
+            String[] arg = new String[args.length - 1];
+            System.arraycopy(args, 1, arg, 0, args.length - 1);
+            return queryIteratorRawSql(outputType, sql, arg);
+        }
+        return queryIteratorRawSql(outputType, sql, (String[]) null);
+    }
+
+    /**
+     * This method is streaming alternative of queryRawSql(Class<>, String, String...)
+     * @param outputType model class
+     * @param rawSql raw sql for of select statement
+     * @param selectionArgs selection argument
+     * @return closeable iterator over the rows
+     * @param <T> type of result
+     */
+    public <T> QueryIterator<T> queryIteratorRawSql(Class<T> outputType, String rawSql, String... selectionArgs){
+        rawSql = resolveTablePlaceholder(rawSql, outputType);
+        return new QueryIterator<>(outputType, getReaderDatabase().rawQuery(rawSql, selectionArgs));
+    }
+
+    /**
+     * This method passes every selected row of specified model to consumer as soon as it is read, without keeping
+     * the rows in memory. Cursor is closed when all rows are consumed or if consumer throws
+     * @param outputType model class
+     * @param consumer consumer of rows
+     * @param args predicate and args
+     * @return number of rows passed to consumer
+     * @param <T> Type of Model
+     */
+    public <T> int forEach(Class<T> outputType, RowConsumer<T> consumer, String... args){
+        return forEach(queryIterator(outputType, args), consumer);
+    }
+
+    /**
+     * This method is alternate of forEach(Class<>, RowConsumer<>, String...) with raw select statement
+     * @param outputType model class
+     * @param rawSql raw sql for of select statement
+     * @param consumer consumer of rows
+     * @param selectionArgs selection argument
+     * @return number of rows passed to consumer
+     * @param <T> Type of Model
+     */
+    public <T> int forEachRawSql(Class<T> outputType, String rawSql, RowConsumer<T> consumer, String... selectionArgs){
+        return forEach(queryIteratorRawSql(outputType, rawSql, selectionArgs), consumer);
+    }
+
+    private <T> int forEach(QueryIterator<T> iterator, RowConsumer<T> consumer){
+        int count = 0;
+        try {
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+                count++;
+            }
+        } finally {
+            iterator.close();
+        }
+        return count;
+    }
+
+    /**
+     * This method selects one page of specified model ordered by primary key, see queryPage(Class, String, int, String, String...)
+     * @param outputType model class
+     * @param pageSize maximum number of rows in page
+     * @param continuationToken token of previous page, null for first page
+     * @param args predicate and args (optional)
+     * @return page of models
+     * @param <T> Type of Model
+     */
+    public <T> Page<T> queryPage(Class<T> outputType, int pageSize, @Nullable String continuationToken, String... args){
+        return queryPage(outputType, null, pageSize, continuationToken, args);
+    }
+
+    /**
+     * This method selects one page of specified model using keyset pagination, instead of OFFSET (which has to skip all the previous rows)
+     * the next page starts right after the sort key of last row of previous page, so every page costs the same regardless of its position.
+     * Rows are ordered ascending by sort column and then by primary key (or rowid if model has no single column primary key) to break ties.
+     * Sort column should not contain NULL and should be indexed for constant time page fetch, predicate should not contain ORDER BY or LIMIT
+     * @param outputType model class
+     * @param sortColumn column of model to order the rows, null to order by primary key
+     * @param pageSize maximum number of rows in page
+     * @param continuationToken token of previous page, null for first page
+     * @param args if has one item then has selection criteria, if has more then 1st item is selectionCriteria others are selection args
+     * @return page of models with token for next page
+     * @param <T> Type of Model
+     * @throws IllegalArgumentException in case sort column is not a column of model or token is invalid
+     */
+    public <T> Page<T> queryPage(Class<T> outputType, @Nullable String sortColumn, int pageSize, @Nullable String continuationToken, String... args){
+        if (pageSize < 1)
+            throw new IllegalArgumentException("Page size must be at least 1");
+
+        ModelMetadata metadata = ModelMetadata.of(outputType);
+        String tieBreaker = metadata.getPrimaryKeyColumns().size() == 1
+                ? metadata.getPrimaryKeyColumns().get(0).getName() : "rowid";
+        if (sortColumn == null)
+            sortColumn = tieBreaker;
+        else if (metadata.getColumn(sortColumn) == null && !sortColumn.equals("rowid"))
+            throw new IllegalArgumentException("Sort column '" + sortColumn + "' is not a column of model " + outputType.getName());
+
+        boolean uniqueKey = sortColumn.equals(tieBreaker);
+        String key = sortColumn.equals("rowid") ? "rowid" : "`" + sortColumn + "`";
+        String tie = tieBreaker.equals("rowid") ? "rowid" : "`" + tieBreaker + "`";
+
+        List<String> selectionArgs = new ArrayList<>();
+        String where = null;
+        if (args != null && args.length > 0) {
+            where = "(" + args[0] + ")";
+            for (int i = 1; i < args.length; i++)
+                selectionArgs.add(args[i]);
+        }
+
+        if (continuationToken != null) {
+            String[] last = Page.decodeToken(continuationToken, sortColumn);
+            String keyset;
+            if (uniqueKey) {
+                keyset = key + " > ?";
+                selectionArgs.add(last[1]);
+            } else {
+                keyset = "(" + key + " > ? OR (" + key + " = ? AND " + tie + " > ?))";
+                selectionArgs.add(last[1]);
+                selectionArgs.add(last[1]);
+                selectionArgs.add(last[2]);
+            }
+            where = where == null ? keyset : where + " AND " + keyset;
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT *, ")
+                .append(key).append(" AS __page_key, ")
+                .append(tie).append(" AS __page_tie FROM `")
+                .append(metadata.getTableName()).append('`');
+        if (where != null)
+            sql.append(" WHERE ").append(where);
+        sql.append(" ORDER BY ").append(key);
+        if (!uniqueKey)
+            sql.append(", ").append(tie);
+        sql.append(" LIMIT ").append(pageSize + 1);
+
+        List<T> items = new ArrayList<>(pageSize);
+        String nextToken = null;
+        String[] pageArgs = selectionArgs.toArray(new String[0]);
+        long started = System.nanoTime();
+        Cursor c = getReaderDatabase().rawQuery(sql.toString(), pageArgs);
+        long executed = awaitRows(c);
+        try {
+            if (c.moveToFirst()) {
+                StorageCursor row = AndroidStorage.wrap(c);
+                RowMappingPlan<T> plan = RowMappingPlan.of(outputType, row, false);
+                int keyIndex = c.getColumnIndex("__page_key");
+                int tieIndex = c.getColumnIndex("__page_tie");
+                int rows = 0;
+                do {
+                    if (rows++ == pageSize) {
+                        c.moveToPrevious();
+                        nextToken = Page.encodeToken(sortColumn, getPageKeyValue(c, keyIndex), getPageKeyValue(c, tieIndex));
+                        break;
+                    }
+                    try {
+                        items.add(plan.map(row));
+                    } catch (IllegalAccessException | InstantiationException e) {
+                        ExceptionReporter.handle(e);
+                    }
+                } while (c.moveToNext());
+            }
+        } finally {
+            c.close();
+        }
+        onQueryExecuted(sql.toString(), pageArgs, items.size(), started, executed);
+        return new Page<>(items, nextToken);
+    }
+
+    private static String getPageKeyValue(Cursor c, int index){
+        switch (c.getType(index)) {
+            case Cursor.FIELD_TYPE_NULL:
+                throw new IllegalStateException("Keyset pagination does not support NULL in sort column");
+            case Cursor.FIELD_TYPE_FLOAT:
+                return Double.toString(c.getDouble(index));
+            default:
+                return c.getString(index);
+        }
+    }
+
     /**
      * This method selects one or more object of specified model, args must have at least one value, it will be treated as table name against
      * which select statement is executed, second value in args is treated as predicate for select statement
@@ -477,13 +1542,16 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
     public <T> List<T> queryRawSqlWith(String rawSql, String[] args, ObjectExtractor<T> extractor){
         List<T> result = new ArrayList<T>();
 
-        Cursor c = getReadableDatabase().rawQuery(rawSql, args);
+        long started = System.nanoTime();
+        Cursor c = getReaderDatabase().rawQuery(rawSql, args);
+        long executed = awaitRows(c);
         if (c.moveToFirst()){
             do {
                 result.add(extractor.extract(c));
             } while(c.moveToNext());
         }
         c.close();
+        onQueryExecuted(rawSql, args, result.size(), started, executed);
         return result;
     }
 
@@ -497,7 +1565,54 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
      */
     public <T> T querySingle(Class<T> outputType,String selectionCriteria,String... selectionArgs) {
         String sql = "SELECT * FROM `"+outputType.getSimpleName()+"` WHERE " + selectionCriteria;
-        return (T) querySingleRawSql(outputType, sql, selectionArgs);
+        return querySingleRawSql(outputType, sql, selectionArgs);
+    }
+
+    /**
+     * Selects the object of specified model by its primary key, with identity map enabled object is served from memory
+     * if it has been loaded before and has not been written since
+     * @param outputType model class
+     * @param id value of primary key
+     * @return object with given primary key, null if there is no such row
+     * @param <T> model type
+     * @throws SQLException in case model has no primary key
+     */
+    public <T> T findById(Class<T> outputType, @NonNull Object id) throws SQLException {
+        ModelMetadata metadata = ModelMetadata.of(outputType);
+        ModelMetadata.Column pk = metadata.getPrimaryKey();
+        if (pk == null)
+            throw new SQLException("Model " + outputType.getSimpleName() + " has no primary key, Can not find by id");
+
+        IdentityMap identities = identityMap;
+        if (identities == null)
+            return queryByKey(outputType, metadata, pk, id);
+
+        T result = identities.get(outputType, id);
+        if (result != null)
+            return result;
+
+        long stamp = identities.getStamp(outputType);
+        result = queryByKey(outputType, metadata, pk, id);
+        if (result != null && !getReaderDatabase().inTransaction())
+            identities.put(outputType, id, result, stamp);
+        return result;
+    }
+
+    /**
+     * selects row by given primary key, which is bound by type of key column as insert binds it instead of
+     * as text which is all rawQuery can bind, so keys stored as other than text (boolean, date, float) are matched
+     */
+    private <T> T queryByKey(Class<T> outputType, ModelMetadata metadata, final ModelMetadata.Column pk, final Object id){
+        String sql = "SELECT * FROM `" + metadata.getTableName() + "` WHERE `" + pk.getName() + "` = ?";
+        long started = System.nanoTime();
+        Cursor c = getReaderDatabase().rawQueryWithFactory(new SQLiteDatabase.CursorFactory() {
+            @Override
+            public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver driver, String editTable, SQLiteQuery query) {
+                ValueBinder.bindValue(AndroidStorage.wrap(query), 1, pk.getFieldType(), id);
+                return new SQLiteCursor(driver, editTable, query);
+            }
+        }, sql, null, null);
+        return mapSingle(outputType, c, sql, new String[]{ String.valueOf(id) }, started);
     }
 
     /**
@@ -509,16 +1624,20 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
      * @param <T> output model type
      */
     public <T> T querySingleRawSql(Class<T> outputType, String rawSql, String... selectionArgs) {
-        T result = null;
+        rawSql = resolveTablePlaceholder(rawSql, outputType);
 
-        rawSql = rawSql.toLowerCase();
-        if (rawSql.contains("<table>"))
-            rawSql = rawSql.replace("<table>", "`" + outputType.getSimpleName() + "`");
+        long started = System.nanoTime();
+        Cursor c = getReaderDatabase().rawQuery(rawSql, selectionArgs);
+        return mapSingle(outputType, c, rawSql, selectionArgs, started);
+    }
 
-        Cursor c = getReadableDatabase().rawQuery(rawSql, selectionArgs);
+    private <T> T mapSingle(Class<T> outputType, Cursor c, String sql, String[] args, long started){
+        T result = null;
+        long executed = awaitRows(c);
         if (c.moveToFirst()){
             try {
-                result = extractObjectFromCursor(outputType, c);
+                StorageCursor row = AndroidStorage.wrap(c);
+                result = RowMappingPlan.of(outputType, row, false).map(row);
             } catch (IllegalAccessException e) {
                 ExceptionReporter.handle(e);
             } catch (InstantiationException e) {
@@ -526,6 +1645,7 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
             }
         }
         c.close();
+        onQueryExecuted(sql, args, result != null ? 1 : 0, started, executed);
         return result;
     }
 
@@ -535,9 +1655,24 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
      * @param selectionArgs selection arguments if not specified in raw sql already
      * @return List of Mapped Rows
      */
+    @SuppressWarnings("unchecked")
     public List<Map<String, String>> queryRowsAsMap(String rawSql, String... selectionArgs) {
+        QueryCache cache = queryCache;
+        QueryCache.Key key = getCacheKey(cache, Map.class, rawSql, selectionArgs);
+        if (key != null) {
+            List<Map<String, String>> cached = (List<Map<String, String>>) cache.get(key);
+            if (cached != null) {
+                List<Map<String, String>> copy = new ArrayList<>(cached.size());
+                for (Map<String, String> row : cached)
+                    copy.add(new HashMap<>(row));
+                return copy;
+            }
+        }
+
         List<Map<String, String>> result = new ArrayList<>();
-        Cursor c = getReadableDatabase().rawQuery(rawSql, selectionArgs);
+        long started = System.nanoTime();
+        Cursor c = getReaderDatabase().rawQuery(rawSql, selectionArgs);
+        long executed = awaitRows(c);
         if (c.moveToFirst()){
             do {
                 Map<String, String> row = new HashMap<>();
@@ -547,6 +1682,14 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
             } while(c.moveToNext());
         }
         c.close();
+        onQueryExecuted(rawSql, selectionArgs, result.size(), started, executed);
+
+        if (key != null) {
+            List<Map<String, String>> copy = new ArrayList<>(result.size());
+            for (Map<String, String> row : result)
+                copy.add(new HashMap<>(row));
+            cache.put(key, copy, QueryCache.estimateSize(copy));
+        }
         return result;
     }
 
@@ -560,7 +1703,9 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
      */
     public <V> List<Map<String, V>> queryRowsAsMapWith(String rawSql, Extractor<V> extractor, String... selectionArgs) {
         List<Map<String, V>> result = new ArrayList<>();
-        Cursor c = getReadableDatabase().rawQuery(rawSql, selectionArgs);
+        long started = System.nanoTime();
+        Cursor c = getReaderDatabase().rawQuery(rawSql, selectionArgs);
+        long executed = awaitRows(c);
         if (c.moveToFirst()){
             do {
                 Map<String, V> row = new HashMap<>();
@@ -570,6 +1715,7 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
             } while(c.moveToNext());
         }
         c.close();
+        onQueryExecuted(rawSql, selectionArgs, result.size(), started, executed);
         return result;
     }
 
@@ -584,7 +1730,9 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
      */
     public List<String[]> queryRowsAsList(String rawSql, String... selectionArgs) {
         List<String[]> result = new ArrayList<>();
-        Cursor c = getReadableDatabase().rawQuery(rawSql, selectionArgs);
+        long started = System.nanoTime();
+        Cursor c = getReaderDatabase().rawQuery(rawSql, selectionArgs);
+        long executed = awaitRows(c);
         if (c.moveToFirst()){
             result.add(c.getColumnNames());
             do {
@@ -595,12 +1743,16 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
             } while(c.moveToNext());
         }
         c.close();
+        onQueryExecuted(rawSql, selectionArgs, Math.max(result.size() - 1, 0), started, executed);
         return result;
     }
 
+    @SuppressWarnings("unchecked")
     public <T> List<T[]> queryRowsWith(String sql, Extractor<T> extractor, String... selectionArgs) {
         List<T[]> result = new ArrayList<>();
-        Cursor c = getReadableDatabase().rawQuery(sql, selectionArgs);
+        long started = System.nanoTime();
+        Cursor c = getReaderDatabase().rawQuery(sql, selectionArgs);
+        long executed = awaitRows(c);
         if (c.moveToFirst()){
             do {
                 List<T> row = new ArrayList<>();
@@ -610,6 +1762,7 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
             } while(c.moveToNext());
         }
         c.close();
+        onQueryExecuted(sql, selectionArgs, result.size(), started, executed);
         return result;
     }
 
@@ -653,20 +1806,25 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
      * @param <V> type of Map Value
      * @throws NoSuchFieldException in case the provided mapKey is not found as field within given type of value
      */
+    @SuppressWarnings("unchecked")
     public  <K,V> HashMap<K,V> queryRowsMappedRawSQL(String mapKey, Class<V> outputType, String rawSql, String... selectionArgs) throws NoSuchFieldException {
         HashMap<K, V> result = new HashMap<>();
         Field keyField = mapKey == null ? DatabaseUtils.getPrimaryKeyField(outputType)
-                : outputType.getField(mapKey);
+                : ModelMetadata.of(outputType).getField(mapKey);
 
-        rawSql = rawSql.toLowerCase();
-        if (rawSql.contains("<table>"))
-            rawSql = rawSql.replace("<table>", "`" + outputType.getSimpleName() + "`");
+        rawSql = resolveTablePlaceholder(rawSql, outputType);
 
-        Cursor c = getReadableDatabase().rawQuery(rawSql, selectionArgs);
+        long started = System.nanoTime();
+        Cursor c = getReaderDatabase().rawQuery(rawSql, selectionArgs);
+        long executed = awaitRows(c);
+        int rows = 0;
         if (c.moveToFirst()){
+            StorageCursor row = AndroidStorage.wrap(c);
+            RowMappingPlan<V> plan = RowMappingPlan.of(outputType, row, false);
             do {
+                rows++;
                 try {
-                    V obj = extractObjectFromCursor(outputType, c);
+                    V obj = plan.map(row);
                     result.put((K) keyField.get(obj), obj);
                 } catch (IllegalAccessException e) {
                     ExceptionReporter.handle(e);
@@ -676,6 +1834,7 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
             } while(c.moveToNext());
         }
         c.close();
+        onQueryExecuted(rawSql, selectionArgs, rows, started, executed);
         return result;
     }
 
@@ -707,19 +1866,24 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
         return queryGroupedRowsRawSQL(mapKey, outputType, sql, args);
     }
 
+    @SuppressWarnings("unchecked")
     public  <K,V> HashMap<K, List<V>> queryGroupedRowsRawSQL(String mapKey, Class<V> outputType, String rawSql, String... selectionArgs) throws NoSuchFieldException {
         HashMap<K, List<V>> result = new HashMap<>();
-        Field keyField = outputType.getField(mapKey);
+        Field keyField = ModelMetadata.of(outputType).getField(mapKey);
 
-        rawSql = rawSql.toLowerCase();
-        if (rawSql.contains("<table>"))
-            rawSql = rawSql.replace("<table>", "`" + outputType.getSimpleName() + "`");
+        rawSql = resolveTablePlaceholder(rawSql, outputType);
 
-        Cursor c = getReadableDatabase().rawQuery(rawSql, selectionArgs);
+        long started = System.nanoTime();
+        Cursor c = getReaderDatabase().rawQuery(rawSql, selectionArgs);
+        long executed = awaitRows(c);
+        int rows = 0;
         if (c.moveToFirst()){
+            StorageCursor row = AndroidStorage.wrap(c);
+            RowMappingPlan<V> plan = RowMappingPlan.of(outputType, row, false);
             do {
+                rows++;
                 try {
-                    V obj = extractObjectFromCursor(outputType, c);
+                    V obj = plan.map(row);
                     if (keyField.get(obj) != null) {
                         if (result.containsKey((K) keyField.get(obj))) {
                             result.get((K) keyField.get(obj)).add(obj);
@@ -737,6 +1901,7 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
             } while(c.moveToNext());
         }
         c.close();
+        onQueryExecuted(rawSql, selectionArgs, rows, started, executed);
         return result;
     }
 
@@ -755,7 +1920,9 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
     public HashMap<String, String[]> queryMappedRowsAsArrayRawSQL(String mapKey, String rawSql, String... selectionArgs) throws NoSuchFieldException {
         HashMap<String, String[]> result = new HashMap<>();
 
-        Cursor c = getReadableDatabase().rawQuery(rawSql, selectionArgs);
+        long started = System.nanoTime();
+        Cursor c = getReaderDatabase().rawQuery(rawSql, selectionArgs);
+        long executed = awaitRows(c);
         if(c.getColumnIndex(mapKey) == -1)
             throw new NoSuchFieldException("Specified mapKey '"+mapKey+"' not found in result");
 
@@ -770,7 +1937,9 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
                 result.put(c.getString(keyIndex), row);
             } while(c.moveToNext());
         }
+        int rows = c.getCount();
         c.close();
+        onQueryExecuted(rawSql, selectionArgs, rows, started, executed);
         return result;
     }
 
@@ -792,7 +1961,9 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
      */
     public <T> HashMap<String, T> queryMappedWithRawSQL(String mapKey, String rawSql, Extractor<T> extractor, String... selectionArgs) throws NoSuchFieldException, SQLException {
         final HashMap<String, T> result = new HashMap<>();
-        Cursor c = getReadableDatabase().rawQuery(rawSql, selectionArgs);
+        long started = System.nanoTime();
+        Cursor c = getReaderDatabase().rawQuery(rawSql, selectionArgs);
+        long executed = awaitRows(c);
         if(c.getColumnIndex(mapKey) == -1)
             throw new NoSuchFieldException("Specified mapKey '"+mapKey+"' not found in result");
         if (c.getColumnCount() != 2)
@@ -807,7 +1978,9 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
                 result.put(c.getString(keyIndex), extractor.extract(c,valueIndex));
             } while(c.moveToNext());
         }
+        int rows = c.getCount();
         c.close();
+        onQueryExecuted(rawSql, selectionArgs, rows, started, executed);
         return result;
     }
 
@@ -839,62 +2012,147 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
      * @return null if query failed else long as count
      */
     public Long getCount(String rawSql, String[] args){
-        Long result = null;
-        Cursor c = getReadableDatabase().rawQuery(rawSql, args);
-        if (c.moveToFirst()){
-            result = c.getLong(0);
-        }
-        c.close();
+        long started = System.nanoTime();
+        Long result = scalarStatements.queryForLong(getReaderDatabase(), rawSql, args);
+        onQueryExecuted(rawSql, args, result != null ? 1 : 0, started);
         return result;
     }
 
+    /**
+     * Extractor reads the value from cursor so this method still opens a cursor, use queryString, queryInteger,
+     * queryLong or queryDouble where possible which are executed as compiled statements without cursor
+     */
     public <T> T queryWith(String rawSql, Extractor<T> extractor, String... selectionArgs) {
         T result = null;
-        Cursor c = getReadableDatabase().rawQuery(rawSql, selectionArgs);
-        if (c.getCount() > 0 && c.moveToFirst())
+        long started = System.nanoTime();
+        Cursor c = getReaderDatabase().rawQuery(rawSql, selectionArgs);
+        long executed = awaitRows(c);
+        int rows = 0;
+        if (c.moveToFirst()) {
             result = extractor.extract(c, 0);
+            rows = 1;
+        }
         c.close();
+        onQueryExecuted(rawSql, selectionArgs, rows, started, executed);
         return result;
     }
 
+    /**
+     * Selects value of first column of first row, statement is compiled once and cached, and is stepped
+     * only to the first row
+     * @param rawSql select statement
+     * @param selectionArgs selection arguments
+     * @return value as text, null if there is no row or value is null
+     */
     public String queryString(String rawSql, String... selectionArgs) {
-        String result = null;
-        Cursor c = getReadableDatabase().rawQuery(rawSql, selectionArgs);
-        if (c.getCount() > 0 && c.moveToFirst())
-            result = c.getString(0);
-        c.close();
+        long started = System.nanoTime();
+        String result = scalarStatements.queryForString(getReaderDatabase(), rawSql, selectionArgs);
+        onQueryExecuted(rawSql, selectionArgs, result != null ? 1 : 0, started);
         return result;
     }
 
     public Integer queryInteger(String rawSql, String... selectionArgs) {
-        Integer result = null;
-        Cursor c = getReadableDatabase().rawQuery(rawSql, selectionArgs);
-        if (c.getCount() > 0 && c.moveToFirst())
-            result = c.getInt(0);
-        c.close();
-        return result;
+        Long result = queryLong(rawSql, selectionArgs);
+        return result != null ? result.intValue() : null;
     }
 
     public Long queryLong(String rawSql, String... selectionArgs) {
-        Long result = null;
-        Cursor c = getReadableDatabase().rawQuery(rawSql, selectionArgs);
-        if (c.getCount() > 0 && c.moveToFirst())
-            result = c.getLong(0);
-        c.close();
+        long started = System.nanoTime();
+        Long result = scalarStatements.queryForLong(getReaderDatabase(), rawSql, selectionArgs);
+        onQueryExecuted(rawSql, selectionArgs, result != null ? 1 : 0, started);
         return result;
     }
 
+    /**
+     * SQLite has no compiled statement returning real and text of real keeps only 15 significant digits,
+     * so value is read from cursor as double, null value and text which is not a number are 0
+     */
     public Double queryDouble(String rawSql, String... selectionArgs) {
         Double result = null;
-        Cursor c = getReadableDatabase().rawQuery(rawSql, selectionArgs);
-        if (c.getCount() > 0 && c.moveToFirst())
+        long started = System.nanoTime();
+        Cursor c = getReaderDatabase().rawQuery(rawSql, selectionArgs);
+        long executed = awaitRows(c);
+        int rows = 0;
+        if (c.moveToFirst()) {
             result = c.getDouble(0);
+            rows = 1;
+        }
         c.close();
+        onQueryExecuted(rawSql, selectionArgs, rows, started, executed);
         return result;
     }
 
+    /**
+     * replaces &lt;table&gt; placeholder (in any case) in raw sql with table name of given model,
+     * sql without placeholder is returned as it is and resolved sql is cached for subsequent calls
+     * @param rawSql raw sql
+     * @param outputType model class
+     * @return sql with table name
+     */
+    protected String resolveTablePlaceholder(String rawSql, Class<?> outputType){
+        if (rawSql.indexOf('<') == -1)
+            return rawSql;
+
+        String key = outputType.getName() + '\n' + rawSql;
+        synchronized (resolvedSql) {
+            String resolved = resolvedSql.get(key);
+            if (resolved != null)
+                return resolved;
+        }
+
+        String table = "`" + outputType.getSimpleName() + "`";
+        StringBuilder sb = new StringBuilder(rawSql.length() + table.length());
+        int start = 0;
+        for (int i = rawSql.indexOf('<'); i != -1; i = rawSql.indexOf('<', i + 1)) {
+            if (rawSql.regionMatches(true, i, TABLE_PLACEHOLDER, 0, TABLE_PLACEHOLDER.length())) {
+                sb.append(rawSql, start, i).append(table);
+                start = i + TABLE_PLACEHOLDER.length();
+                i = start - 1;
+            }
+        }
+        String resolved = start == 0 ? rawSql : sb.append(rawSql, start, rawSql.length()).toString();
+
+        synchronized (resolvedSql) {
+            resolvedSql.put(key, resolved);
+        }
+        return resolved;
+    }
+
     public void execSql(String query, Object... args){
-        getWritableDatabase().execSQL(query, args);
+        long started = System.nanoTime();
+        try {
+            getWritableDatabase().execSQL(query, args);
+            if (metricsListener != null)
+                onWriteExecuted(DatabaseMetricsListener.Operation.EXEC, QueryCache.getTableWritten(query), 0, started);
+        } finally {
+            onStatementExecuted(query);
+        }
+    }
+
+    /**
+     * invalidates cached results and objects of the table written by given statement, or all of them if
+     * table can not be determined i,e for schema changes
+     */
+    private void onStatementExecuted(String sql){
+        if (queryCache != null || identityMap != null) {
+            String table = QueryCache.getTableWritten(sql);
+            if (table != null)
+                onTableWritten(table);
+            else
+                invalidateAll();
+        }
+    }
+
+    private void invalidateAll(){
+        synchronized (baseTables) {
+            baseTables.clear();
+        }
+        QueryCache cache = queryCache;
+        if (cache != null)
+            cache.invalidateAll();
+        IdentityMap identities = identityMap;
+        if (identities != null)
+            identities.invalidateAll();
     }
 
     public interface Extractor<T> {
@@ -904,4 +2162,8 @@ public abstract class ModelBasedDatabaseHelper extends SQLiteOpenHelper {
     public interface ObjectExtractor<T> {
         T extract(Cursor cursor);
     }
+
+    public interface RowConsumer<T> {
+        void accept(T row);
+    }
 }
@@ -4,21 +4,35 @@ import static pk.gov.pbs.database.DatabaseUtils.extractFieldFromCursor;
 
 import android.app.Application;
 import android.database.Cursor;
+
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 
 import pk.gov.pbs.utils.ExceptionReporter;
 import pk.gov.pbs.utils.StaticUtils;
 
 public abstract class ModelBasedRepository {
     private static Application mContext;
-    protected static final int THREAD_COUNT = 4;
+    /**
+     * number of threads for reads when concurrent reads are not enabled on helper, SQLite serializes writers
+     * anyway so only reads are run in parallel
+     */
+    protected static final int THREAD_COUNT = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 4));
     protected static final ExecutorService dbExecutorService = Executors
             .newFixedThreadPool(THREAD_COUNT);
+    protected static final ScheduledExecutorService dbWriteExecutorService = Executors
+            .newSingleThreadScheduledExecutor();
+    private volatile GroupCommitWriter groupCommitWriter;
+    private volatile ExecutorService readExecutorService;
 
     protected ModelBasedRepository(Application context){
         mContext = context;
@@ -28,36 +42,143 @@ public abstract class ModelBasedRepository {
         return mContext;
     }
 
+    /**
+     * executor for reads (query and select methods), if helper has concurrent reads enabled it is a pool of its own
+     * with one thread per reader connection (capped by the number of cores), otherwise the shared read pool
+     * @return executor for reads
+     */
     public ExecutorService getExecutorService(){
-        return dbExecutorService;
+        ExecutorService executor = readExecutorService;
+        if (executor != null)
+            return executor;
+
+        ModelBasedDatabaseHelper database = getDatabase();
+        if (!database.isConcurrentReadsEnabled())
+            return dbExecutorService;
+
+        synchronized (this) {
+            if (readExecutorService == null) {
+                int threads = Math.max(1, Math.min(database.getReaderConnections(), Runtime.getRuntime().availableProcessors()));
+                readExecutorService = Executors.newFixedThreadPool(threads);
+            }
+            return readExecutorService;
+        }
+    }
+
+    /**
+     * @return single threaded executor for writes, writes are executed one by one in the order of submission
+     */
+    public ExecutorService getWriteExecutorService(){
+        return dbWriteExecutorService;
+    }
+
+    /**
+     * Enables group commit for insert(Object) and update(Object), writes arriving within commitWindowMillis of each other
+     * (up to maxBatchSize writes) are committed in one transaction, each future still gets result of its own write.
+     * Writes merged this way may be committed after other writes submitted later through other methods
+     * @param commitWindowMillis how long first write of batch waits for more writes
+     * @param maxBatchSize maximum number of writes committed together
+     */
+    public void enableGroupCommit(long commitWindowMillis, int maxBatchSize){
+        groupCommitWriter = new GroupCommitWriter(getDatabase(), dbWriteExecutorService, commitWindowMillis, maxBatchSize);
+    }
+
+    public void disableGroupCommit(){
+        groupCommitWriter = null;
+    }
+
+    /**
+     * @return batch size and commit latency of group commit, null if group commit is not enabled
+     */
+    public GroupCommitWriter.Stats getGroupCommitStats(){
+        GroupCommitWriter writer = groupCommitWriter;
+        return writer != null ? writer.getStats() : null;
+    }
+
+    /**
+     * Sets the listener which receives an event with timings for every query and write of database, events of
+     * operations submitted through this repository also have the time they waited in executor
+     * @param listener listener, i,e DatabaseMetrics, null to stop reporting
+     */
+    public void setMetricsListener(DatabaseMetricsListener listener){
+        getDatabase().setMetricsListener(listener);
+    }
+
+    public DatabaseMetricsListener getMetricsListener(){
+        return getDatabase().getMetricsListener();
+    }
+
+    /**
+     * runs task on given executor, returned future is completed with the result of task and can be consumed
+     * with callbacks instead of blocking on get()
+     */
+    protected <T> DatabaseFuture<T> submit(Executor executor, Callable<T> task){
+        DatabaseFuture<T> future = new DatabaseFuture<>();
+        long submitted = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                if (future.isDone())
+                    return;
+                ModelBasedDatabaseHelper database = getDatabase();
+                boolean measured = database.getMetricsListener() != null;
+                if (measured)
+                    database.setQueueTime(System.nanoTime() - submitted);
+                try {
+                    future.set(task.call());
+                } catch (Throwable t) {
+                    future.setException(t);
+                } finally {
+                    if (measured)
+                        database.clearQueueTime();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.setException(e);
+        }
+        return future;
     }
 
+    /**
+     * IDatabaseOperation may write, so operations run on the single threaded write executor in order with other writes
+     */
     public <T> DatabaseOperationExecutor<T> executeDatabaseOperation(IDatabaseOperation<T> databaseRead){
-        return getDatabase().executeDatabaseOperation(databaseRead);
+        return getDatabase().executeDatabaseOperation(databaseRead, dbWriteExecutorService);
     }
 
-    public Future<Long> executeDatabaseWrite(IDatabaseWrite dbWrite){
-        return dbExecutorService.submit(() ->
+    public DatabaseFuture<Long> executeDatabaseWrite(IDatabaseWrite dbWrite){
+        return submit(dbWriteExecutorService, () ->
                 dbWrite.doDatabaseWriteOperation(getDatabase())
         );
     }
 
-    public Future<Long> executeDatabaseWrite(IDatabaseWrite dbWrite, IOnSuccess successCallback){
-        return dbExecutorService.submit(() -> {
+    public DatabaseFuture<Long> executeDatabaseWrite(IDatabaseWrite dbWrite, IOnSuccess successCallback){
+        return submit(dbWriteExecutorService, () -> {
             Long insertID = dbWrite.doDatabaseWriteOperation(getDatabase());
             successCallback.onSuccess(StaticUtils.getHandler(), insertID);
             return insertID;
         });
     }
 
-    public <T> Future<T> querySingle(Class<T> outputType, String selectionCriteria, String... args){
-        return getExecutorService().submit(
+    public <T> DatabaseFuture<T> querySingle(Class<T> outputType, String selectionCriteria, String... args){
+        return submit(getExecutorService(),
                 () -> getDatabase().querySingle(outputType,selectionCriteria,args)
         );
     }
 
-    public <K, V> Future<Map<K, V>> queryRowsMapped(String mapKey, Class<V> outputClass, String... selectionArgs){
-        return dbExecutorService.submit(()->{
+    public <T> DatabaseFuture<T> findById(Class<T> outputType, Object id){
+        IdentityMap identities = getDatabase().getIdentityMap();
+        if (identities != null) {
+            T cached = identities.peek(outputType, id);
+            if (cached != null)
+                return DatabaseFuture.completed(cached);
+        }
+        return submit(getExecutorService(),
+                () -> getDatabase().findById(outputType, id)
+        );
+    }
+
+    public <K, V> DatabaseFuture<Map<K, V>> queryRowsMapped(String mapKey, Class<V> outputClass, String... selectionArgs){
+        return submit(getExecutorService(), ()->{
             try {
                 return getDatabase().queryRowsMapped(mapKey, outputClass, selectionArgs);
             } catch (Exception e) {
@@ -67,11 +188,11 @@ public abstract class ModelBasedRepository {
         });
     }
 
-    public <T> Future<T> selectColAs(Class<T> outputType, String sql, String... args){
-        return dbExecutorService.submit(
+    public <T> DatabaseFuture<T> selectColAs(Class<T> outputType, String sql, String... args){
+        return submit(getExecutorService(),
                 () -> {
                     T result = null;
-                    Cursor cursor = getDatabase().getReadableDatabase().rawQuery(sql, args);
+                    Cursor cursor = getDatabase().getReaderDatabase().rawQuery(sql, args);
                     if (cursor.moveToFirst()) {
                         result = extractFieldFromCursor(outputType, cursor, 0);
                     }
@@ -81,10 +202,10 @@ public abstract class ModelBasedRepository {
         );
     }
 
-    public <T> Future<List<T>> selectColMultiAs(Class<T> outputType, String sql, String... args){
-        return getExecutorService().submit(
+    public <T> DatabaseFuture<List<T>> selectColMultiAs(Class<T> outputType, String sql, String... args){
+        return submit(getExecutorService(),
                 () -> {
-                    Cursor cursor = getDatabase().getReadableDatabase().rawQuery(sql, args);
+                    Cursor cursor = getDatabase().getReaderDatabase().rawQuery(sql, args);
                     List<T> result = new ArrayList<>();
                     if (cursor.moveToFirst()) {
                         do {
@@ -98,65 +219,176 @@ public abstract class ModelBasedRepository {
         );
     }
 
-    public <T> Future<List<T>> query(Class<T> outputType, String... args){
-        return getExecutorService().submit(
+    public <T> DatabaseFuture<List<T>> query(Class<T> outputType, String... args){
+        return submit(getExecutorService(),
                 () -> getDatabase().query(outputType,args)
         );
     }
 
+    /**
+     * Opens streaming query on database thread, returned iterator must be consumed (or closed) by caller
+     */
+    public <T> DatabaseFuture<QueryIterator<T>> queryIterator(Class<T> outputType, String... args){
+        return submit(getExecutorService(),
+                () -> getDatabase().queryIterator(outputType, args)
+        );
+    }
+
+    public <T> DatabaseFuture<Page<T>> queryPage(Class<T> outputType, int pageSize, String continuationToken, String... args){
+        return submit(getExecutorService(),
+                () -> getDatabase().queryPage(outputType, pageSize, continuationToken, args)
+        );
+    }
+
+    public <T> DatabaseFuture<Page<T>> queryPage(Class<T> outputType, String sortColumn, int pageSize, String continuationToken, String... args){
+        return submit(getExecutorService(),
+                () -> getDatabase().queryPage(outputType, sortColumn, pageSize, continuationToken, args)
+        );
+    }
+
+    /**
+     * Streams the rows to consumer on database thread, future gets the number of consumed rows
+     */
+    public <T> DatabaseFuture<Integer> forEach(Class<T> outputType, ModelBasedDatabaseHelper.RowConsumer<T> consumer, String... args){
+        return submit(getExecutorService(),
+                () -> getDatabase().forEach(outputType, consumer, args)
+        );
+    }
+
     /**
      * Insert convenience methods with overloads
      */
 
-    public Future<Long> insert(Object object){
-        return dbExecutorService.submit(
+    public DatabaseFuture<Long> insert(Object object){
+        GroupCommitWriter writer = groupCommitWriter;
+        if (writer != null)
+            return writer.submit(db -> db.insert(object));
+
+        return submit(dbWriteExecutorService,
                 () -> getDatabase().insert(object)
         );
     }
 
-    public Future<List<Long>> insert(Object[] object){
-        return dbExecutorService.submit(
+    public DatabaseFuture<List<Long>> insert(Object[] object){
+        return submit(dbWriteExecutorService,
                 () -> getDatabase().insert(object)
         );
     }
 
+    /**
+     * Upsert convenience methods with overloads
+     */
+
+    public DatabaseFuture<Integer> upsert(Object object){
+        return submit(dbWriteExecutorService,
+                () -> getDatabase().upsert(object)
+        );
+    }
+
+    public DatabaseFuture<Integer> upsert(Collection<?> objects){
+        return submit(dbWriteExecutorService,
+                () -> getDatabase().upsert(objects)
+        );
+    }
+
     /**
      * Update convenience methods with overloads
      */
 
-    public Future<Integer> update(Object object){
-        return dbExecutorService.submit(
+    public DatabaseFuture<Integer> update(Object object){
+        GroupCommitWriter writer = groupCommitWriter;
+        if (writer != null)
+            return writer.submit(db -> db.update(object));
+
+        return submit(dbWriteExecutorService,
                 () -> getDatabase().update(object)
         );
     }
 
+    public DatabaseFuture<Integer> update(Object object, String... columns){
+        return submit(dbWriteExecutorService,
+                () -> getDatabase().update(object, columns)
+        );
+    }
+
+    public DatabaseFuture<Integer> update(ModelSnapshot<?> snapshot){
+        return submit(dbWriteExecutorService,
+                () -> getDatabase().update(snapshot)
+        );
+    }
+
+    public DatabaseFuture<Integer> update(Collection<?> objects){
+        return submit(dbWriteExecutorService,
+                () -> getDatabase().update(objects)
+        );
+    }
+
+    /**
+     * Delete convenience methods with overloads
+     */
+
+    public DatabaseFuture<Integer> delete(Object object){
+        return submit(dbWriteExecutorService,
+                () -> getDatabase().delete(object)
+        );
+    }
+
+    public DatabaseFuture<Integer> deleteByIds(Class<?> modelClass, Collection<?> ids){
+        return submit(dbWriteExecutorService,
+                () -> getDatabase().deleteByIds(modelClass, ids)
+        );
+    }
+
+    public DatabaseFuture<Integer> deleteWhere(Class<?> modelClass, String predicate, String... args){
+        return submit(dbWriteExecutorService,
+                () -> getDatabase().deleteWhere(modelClass, predicate, args)
+        );
+    }
+
     /**
      * Replace convenience methods with overloads
      */
 
-    public Future<Long> replace(Object object){
-        return dbExecutorService.submit(
+    public DatabaseFuture<Long> replace(Object object){
+        return submit(dbWriteExecutorService,
                 () -> getDatabase().replace(object)
         );
     }
 
-    public Future<List<Long>> replace(Object[] object){
-        return dbExecutorService.submit(
+    public DatabaseFuture<List<Long>> replace(Object[] object){
+        return submit(dbWriteExecutorService,
                 () -> getDatabase().replace(object)
         );
     }
 
-    public Future<Long> replaceOrThrow(Object object){
-        return dbExecutorService.submit(
+    public DatabaseFuture<Long> replaceOrThrow(Object object){
+        return submit(dbWriteExecutorService,
                 () -> getDatabase().replaceOrThrow(object)
         );
     }
 
-    public Future<List<Long>> replaceOrThrow(Object[] object){
-        return dbExecutorService.submit(
+    public DatabaseFuture<List<Long>> replaceOrThrow(Object[] object){
+        return submit(dbWriteExecutorService,
                 () -> getDatabase().replaceOrThrow(object)
         );
     }
 
+    /**
+     * JSON import convenience methods with overloads, import runs on write thread so other writes of this repository
+     * wait for it while reads see every committed chunk. Reader is closed by caller once future completes
+     */
+
+    public DatabaseFuture<Long> importJson(Class<?> modelClass, Reader reader, ConflictMode conflictMode){
+        return submit(dbWriteExecutorService,
+                () -> getDatabase().importJson(modelClass, reader, conflictMode)
+        );
+    }
+
+    public DatabaseFuture<Long> importJson(Class<?> modelClass, Reader reader, ConflictMode conflictMode, int chunkSize, JsonImportListener listener){
+        return submit(dbWriteExecutorService,
+                () -> getDatabase().importJson(modelClass, reader, conflictMode, chunkSize, listener)
+        );
+    }
+
     public abstract ModelBasedDatabaseHelper getDatabase();
 }
@@ -0,0 +1,545 @@
+package pk.gov.pbs.database;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import pk.gov.pbs.database.annotations.Default;
+import pk.gov.pbs.database.annotations.Index;
+import pk.gov.pbs.database.annotations.Indexes;
+import pk.gov.pbs.database.annotations.NotNull;
+import pk.gov.pbs.database.annotations.PrimaryKey;
+import pk.gov.pbs.database.annotations.SqlDataType;
+import pk.gov.pbs.database.annotations.SqlExclude;
+import pk.gov.pbs.database.annotations.SqlPrimaryKey;
+import pk.gov.pbs.database.annotations.Table;
+import pk.gov.pbs.database.annotations.Unique;
+
+/**
+ * Reflection results for a model class, resolved once and shared by every helper, utility and generator.
+ * Use ModelMetadata.of(Class) to get the instance for a model, it is built on first access and then
+ * served from a thread safe registry for the lifetime of the process
+ */
+public final class ModelMetadata {
+    private static final ConcurrentHashMap<Class<?>, ModelMetadata> registry = new ConcurrentHashMap<>();
+
+    private final Class<?> modelClass;
+    private final Table table;
+    private final String tableName;
+    private final Field[] fields;
+    private final Field[] allFields;
+    private final Map<String, Field> fieldsByName;
+    private final List<Column> columns;
+    private final Map<String, Column> columnsByName;
+    private final String[] columnNames;
+    private final Column primaryKey;
+    private final List<Column> primaryKeyColumns;
+    private final Map<String, List<Column>> uniqueKeys;
+    private volatile List<IndexDefinition> indexes;
+
+    /**
+     * get the metadata of given model class, metadata is created on first call and cached for subsequent calls
+     * @param modelClass model class
+     * @return metadata of model class
+     */
+    @NonNull
+    public static ModelMetadata of(@NonNull Class<?> modelClass){
+        ModelMetadata metadata = registry.get(modelClass);
+        if (metadata == null) {
+            metadata = new ModelMetadata(modelClass);
+            ModelMetadata existing = registry.putIfAbsent(modelClass, metadata);
+            if (existing != null)
+                metadata = existing;
+        }
+        return metadata;
+    }
+
+    /**
+     * SQLite data type for given java type
+     * @param type type of field
+     * @return SQLite data type surrounded by spaces, or null if type is not supported
+     */
+    @Nullable
+    public static String getSQLiteDataTypeFrom(Class<?> type){
+        if (
+                type == String.class
+                || type == char.class
+                || type == Character.class
+                || type == char[].class
+                || type == Character[].class
+                || type == CharSequence.class
+        )
+            return " TEXT ";
+        else if (
+                type == double.class
+                ||type == Double.class
+                || type == float.class
+                || type == Float.class
+        )
+            return " REAL ";
+        else if (
+                type == byte.class
+                || type == Byte.class
+                || type == short.class
+                || type == Short.class
+                || type == int.class
+                || type == Integer.class
+                || type == long.class
+                || type == Long.class
+        )
+            return " INTEGER ";
+        else if (
+                type == boolean.class
+                || type == Boolean.class
+        )
+            return " BOOLEAN ";
+        else if (
+                type == byte[].class
+                || type == Byte[].class
+        )
+            return " BLOB ";
+        return null;
+    }
+
+    private ModelMetadata(Class<?> modelClass){
+        this.modelClass = modelClass;
+        this.table = modelClass.getAnnotation(Table.class);
+        this.tableName = modelClass.getSimpleName();
+
+        // walk hierarchy from top most super class so that base columns come first,
+        // fields of sub class hide the fields with same name of super class
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> c = modelClass; c != null && c != Object.class; c = c.getSuperclass())
+            hierarchy.add(0, c);
+
+        Map<String, Field> declared = new LinkedHashMap<>();
+        for (Class<?> c : hierarchy) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic())
+                    continue;
+                declared.put(field.getName(), field);
+            }
+        }
+
+        List<Field> visible = new ArrayList<>();
+        List<Column> cols = new ArrayList<>();
+        Map<String, Column> colsByName = new HashMap<>();
+        List<Column> pkCols = new ArrayList<>();
+        Map<String, List<Column>> unique = new LinkedHashMap<>();
+        Column pk = null;
+
+        for (Field field : declared.values()) {
+            field.setAccessible(true);
+
+            if (Modifier.isPrivate(field.getModifiers()))
+                continue;
+            visible.add(field);
+
+            if (!Modifier.isPublic(field.getModifiers()) && !Modifier.isProtected(field.getModifiers()))
+                continue;
+
+            Column column = new Column(field);
+            cols.add(column);
+            colsByName.put(column.name, column);
+
+            if (column.primaryKey != null) {
+                pkCols.add(column);
+                if (pk == null && Modifier.isPublic(field.getModifiers()))
+                    pk = column;
+            }
+
+            if (column.unique != null) {
+                List<Column> group = unique.get(column.unique.index());
+                if (group == null) {
+                    group = new ArrayList<>();
+                    unique.put(column.unique.index(), group);
+                }
+                group.add(column);
+            }
+        }
+
+        Map<String, Field> byName = new HashMap<>();
+        for (Field field : visible)
+            byName.put(field.getName(), field);
+
+        this.allFields = declared.values().toArray(new Field[0]);
+        this.fields = visible.toArray(new Field[0]);
+        this.fieldsByName = Collections.unmodifiableMap(byName);
+        this.columns = Collections.unmodifiableList(cols);
+        this.columnsByName = Collections.unmodifiableMap(colsByName);
+        this.primaryKey = pk;
+        this.primaryKeyColumns = Collections.unmodifiableList(pkCols);
+        for (Map.Entry<String, List<Column>> entry : unique.entrySet())
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        this.uniqueKeys = Collections.unmodifiableMap(unique);
+
+        this.columnNames = new String[cols.size()];
+        for (int i = 0; i < cols.size(); i++)
+            columnNames[i] = cols.get(i).name;
+    }
+
+    public Class<?> getModelClass() {
+        return modelClass;
+    }
+
+    /**
+     * @return name of table used for local database
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return name of table from Table annotation if specified otherwise simple name of model class
+     */
+    public String getDeclaredTableName() {
+        return (table != null && !table.name().isEmpty()) ? table.name() : tableName;
+    }
+
+    public int getVersion() {
+        return table != null ? table.version() : 1;
+    }
+
+    /**
+     * @param includePrivateFields whether to include private fields or not
+     * @return instance fields of model and its super classes, all of them are already accessible
+     */
+    public Field[] getFields(boolean includePrivateFields) {
+        return includePrivateFields ? allFields.clone() : fields.clone();
+    }
+
+    /**
+     * @param name name of non private field
+     * @return field with given name
+     * @throws NoSuchFieldException in case field is not found in model
+     */
+    @NonNull
+    public Field getField(String name) throws NoSuchFieldException {
+        Field field = fieldsByName.get(name);
+        if (field == null)
+            throw new NoSuchFieldException("Field '" + name + "' not found in model " + modelClass.getName());
+        return field;
+    }
+
+    /**
+     * @return public and protected fields of model in table order, these are the columns of table
+     */
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    @Nullable
+    public Column getColumn(String name) {
+        return columnsByName.get(name);
+    }
+
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    /**
+     * @return first public field with PrimaryKey annotation, null if model has no primary key
+     */
+    @Nullable
+    public Column getPrimaryKey() {
+        return primaryKey;
+    }
+
+    public List<Column> getPrimaryKeyColumns() {
+        return primaryKeyColumns;
+    }
+
+    /**
+     * @return columns with Unique annotation grouped by index, empty if model has no unique key
+     */
+    public Map<String, List<Column>> getUniqueKeys() {
+        return uniqueKeys;
+    }
+
+    /**
+     * indexes declared on model class with Index and Indexes annotations, resolved on first call
+     * @return declared indexes, empty if model has none
+     * @throws IllegalArgumentException in case an index refers to a column which is not in model
+     */
+    public List<IndexDefinition> getIndexes() {
+        List<IndexDefinition> result = indexes;
+        if (result == null) {
+            List<Index> declared = new ArrayList<>();
+            Index index = modelClass.getAnnotation(Index.class);
+            if (index != null)
+                declared.add(index);
+            Indexes group = modelClass.getAnnotation(Indexes.class);
+            if (group != null)
+                Collections.addAll(declared, group.value());
+
+            result = new ArrayList<>();
+            for (Index i : declared)
+                result.add(new IndexDefinition(this, i));
+            result = Collections.unmodifiableList(result);
+            indexes = result;
+        }
+        return result;
+    }
+
+    /**
+     * Index annotation resolved against the columns of model
+     */
+    public static final class IndexDefinition {
+        private final String name;
+        private final boolean unique;
+        private final List<Column> columns;
+        private final boolean[] descending;
+        private final List<Column> include;
+        private final String where;
+        private final String serializedWhere;
+
+        private IndexDefinition(ModelMetadata metadata, Index index) {
+            List<Column> cols = new ArrayList<>();
+            this.descending = new boolean[index.columns().length];
+            StringBuilder generatedName = new StringBuilder(metadata.getTableName()).append("_index");
+            for (int i = 0; i < index.columns().length; i++) {
+                String[] parts = index.columns()[i].trim().split("\\s+");
+                if (parts.length > 2 || (parts.length == 2 && !parts[1].equalsIgnoreCase("ASC") && !parts[1].equalsIgnoreCase("DESC")))
+                    throw new IllegalArgumentException("Invalid column '" + index.columns()[i] + "' in index of model " + metadata.getModelClass().getSimpleName() + ", Can not proceed to create index");
+                cols.add(resolve(metadata, parts[0]));
+                descending[i] = parts.length == 2 && parts[1].equalsIgnoreCase("DESC");
+                generatedName.append('_').append(parts[0]);
+            }
+            if (cols.isEmpty())
+                throw new IllegalArgumentException("Index of model " + metadata.getModelClass().getSimpleName() + " has no column, Can not proceed to create index");
+
+            List<Column> covering = new ArrayList<>();
+            for (String name : index.include())
+                covering.add(resolve(metadata, name.trim()));
+
+            this.name = index.name().isEmpty() ? generatedName.toString() : index.name();
+            this.unique = index.unique();
+            this.columns = Collections.unmodifiableList(cols);
+            this.include = Collections.unmodifiableList(covering);
+            this.where = index.where().trim();
+            this.serializedWhere = toSerializedNames(metadata, where);
+        }
+
+        /**
+         * replaces the field names in predicate of partial index with their serialized names, identifiers
+         * which are not fields and string literals are kept as they are
+         */
+        private static String toSerializedNames(ModelMetadata metadata, String where) {
+            StringBuilder sb = new StringBuilder(where.length());
+            int i = 0;
+            while (i < where.length()) {
+                char c = where.charAt(i);
+                int end = i + 1;
+                if (c == '\'') {
+                    // '' within literal is an escaped quote
+                    while (end < where.length() && (where.charAt(end) != '\'' || (end + 1 < where.length() && where.charAt(end + 1) == '\'')))
+                        end += where.charAt(end) == '\'' ? 2 : 1;
+                    end = Math.min(end + 1, where.length());
+                    sb.append(where, i, end);
+                } else if (Character.isDigit(c)) {
+                    while (end < where.length() && (Character.isJavaIdentifierPart(where.charAt(end)) || where.charAt(end) == '.'))
+                        end++;
+                    sb.append(where, i, end);
+                } else if (Character.isJavaIdentifierStart(c) || c == '`') {
+                    int start = c == '`' ? end : i;
+                    end = start;
+                    while (end < where.length() && Character.isJavaIdentifierPart(where.charAt(end)))
+                        end++;
+                    Column column = metadata.getColumn(where.substring(start, end));
+                    if (c == '`') {
+                        if (end < where.length() && where.charAt(end) == '`')
+                            end++;
+                        else
+                            column = null;
+                    }
+                    sb.append(column == null ? where.substring(i, end) : column.getSerializedName());
+                } else
+                    sb.append(c);
+                i = end;
+            }
+            return sb.toString();
+        }
+
+        private static Column resolve(ModelMetadata metadata, String name) {
+            Column column = metadata.getColumn(name);
+            if (column == null)
+                throw new IllegalArgumentException("Column '" + name + "' of index not found in model " + metadata.getModelClass().getSimpleName() + ", Can not proceed to create index");
+            return column;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isUnique() {
+            return unique;
+        }
+
+        /**
+         * @return key columns of index in declared order
+         */
+        public List<Column> getColumns() {
+            return columns;
+        }
+
+        public boolean isDescending(int position) {
+            return descending[position];
+        }
+
+        /**
+         * @return non key columns carried by index so that queries reading only these and key columns never touch the table
+         */
+        public List<Column> getInclude() {
+            return include;
+        }
+
+        /**
+         * @return predicate of partial index as declared, with field names (column names of SQLite table),
+         * empty if index covers all rows
+         */
+        public String getWhere() {
+            return where;
+        }
+
+        /**
+         * @return predicate of partial index with field names replaced by their serialized names, as used
+         * for columns of SQL Server tables, empty if index covers all rows
+         */
+        public String getSerializedWhere() {
+            return serializedWhere;
+        }
+
+        /**
+         * appends WHERE clause of partial index to create statement of index, nothing if index covers all rows
+         * @param sql create statement of index
+         * @param serializedNames whether columns are named by serialized names (SQL Server) or by field names (SQLite)
+         * @return given builder
+         */
+        public StringBuilder appendWhere(StringBuilder sql, boolean serializedNames) {
+            return where.isEmpty() ? sql : sql.append(" WHERE ").append(serializedNames ? serializedWhere : where);
+        }
+    }
+
+    public static final class Column {
+        private final Field field;
+        private final String name;
+        private final String serializedName;
+        private final Class<?> type;
+        private final FieldType fieldType;
+        private final String sqliteType;
+        private final PrimaryKey primaryKey;
+        private final Unique unique;
+        private final Default defaultValue;
+        private final boolean notNull;
+        private final SqlPrimaryKey sqlPrimaryKey;
+        private final SqlDataType sqlDataType;
+        private final boolean sqlExcluded;
+
+        private Column(Field field){
+            SerializedName sn = field.getAnnotation(SerializedName.class);
+            this.field = field;
+            this.name = field.getName();
+            this.serializedName = sn == null ? field.getName() : sn.value();
+            this.type = field.getType();
+            this.fieldType = FieldType.of(type);
+            this.sqliteType = getSQLiteDataTypeFrom(type);
+            this.primaryKey = field.getAnnotation(PrimaryKey.class);
+            this.unique = field.getAnnotation(Unique.class);
+            this.defaultValue = field.getAnnotation(Default.class);
+            this.notNull = field.getAnnotation(NotNull.class) != null;
+            this.sqlPrimaryKey = field.getAnnotation(SqlPrimaryKey.class);
+            this.sqlDataType = field.getAnnotation(SqlDataType.class);
+            this.sqlExcluded = field.getAnnotation(SqlExclude.class) != null;
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        /**
+         * @return column name used for local database (name of field)
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return value of SerializedName annotation if present otherwise name of field
+         */
+        public String getSerializedName() {
+            return serializedName;
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        public FieldType getFieldType() {
+            return fieldType;
+        }
+
+        /**
+         * @return SQLite data type of column, null if type of field is not supported
+         */
+        @Nullable
+        public String getSQLiteType() {
+            return sqliteType;
+        }
+
+        public boolean isPrimaryKey() {
+            return primaryKey != null;
+        }
+
+        public boolean isAutogenerate() {
+            return primaryKey != null && primaryKey.autogenerate();
+        }
+
+        @Nullable
+        public Unique getUnique() {
+            return unique;
+        }
+
+        @Nullable
+        public Default getDefault() {
+            return defaultValue;
+        }
+
+        public boolean isNotNull() {
+            return notNull;
+        }
+
+        @Nullable
+        public SqlPrimaryKey getSqlPrimaryKey() {
+            return sqlPrimaryKey;
+        }
+
+        @Nullable
+        public SqlDataType getSqlDataType() {
+            return sqlDataType;
+        }
+
+        public boolean isSqlExcluded() {
+            return sqlExcluded;
+        }
+
+        /**
+         * @param model object of model
+         * @return value of this column from given object
+         * @throws IllegalAccessException in case field is not accessible
+         */
+        public Object get(Object model) throws IllegalAccessException {
+            return field.get(model);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package pk.gov.pbs.database;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import pk.gov.pbs.utils.ExceptionReporter;
+
+/**
+ * Values of the columns of an object captured at some point (usually right after it was loaded), used to find which
+ * columns have been changed since then. Pass it to ModelBasedDatabaseHelper.update(ModelSnapshot) to write only the
+ * changed columns, snapshot is taken again after the update so it can be reused for next changes of same object
+ * @param <T> type of model
+ */
+public final class ModelSnapshot<T> {
+    private final T model;
+    private final List<ModelMetadata.Column> columns;
+    private final Object[] values;
+
+    private ModelSnapshot(T model){
+        this.model = model;
+        this.columns = ModelMetadata.of(model.getClass()).getColumns();
+        this.values = new Object[columns.size()];
+        reset();
+    }
+
+    /**
+     * captures current values of the columns of given object
+     * @param model object of model
+     * @return snapshot of object
+     */
+    public static <T> ModelSnapshot<T> of(@NonNull T model){
+        return new ModelSnapshot<>(model);
+    }
+
+    public T getModel() {
+        return model;
+    }
+
+    /**
+     * captures current values again, changes made so far are no longer reported as dirty
+     */
+    public void reset(){
+        for (int i = 0; i < columns.size(); i++)
+            values[i] = copy(read(columns.get(i)));
+    }
+
+    /**
+     * @return names of columns whose value differs from the value captured in snapshot
+     */
+    @NonNull
+    public String[] getDirtyColumns(){
+        List<String> dirty = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            if (!equals(values[i], read(columns.get(i))))
+                dirty.add(columns.get(i).getName());
+        }
+        return dirty.toArray(new String[0]);
+    }
+
+    public boolean isDirty(){
+        for (int i = 0; i < columns.size(); i++) {
+            if (!equals(values[i], read(columns.get(i))))
+                return true;
+        }
+        return false;
+    }
+
+    private Object read(ModelMetadata.Column column){
+        try {
+            return column.get(model);
+        } catch (IllegalAccessException e) {
+            ExceptionReporter.handle(e);
+            return null;
+        }
+    }
+
+    /**
+     * arrays are mutable so their content is copied, other supported types are immutable
+     */
+    private static Object copy(Object value){
+        if (value instanceof byte[])
+            return ((byte[]) value).clone();
+        if (value instanceof char[])
+            return ((char[]) value).clone();
+        if (value instanceof Object[])
+            return ((Object[]) value).clone();
+        return value;
+    }
+
+    private static boolean equals(Object captured, Object current){
+        if (captured == current)
+            return true;
+        if (captured == null || current == null)
+            return false;
+        if (captured instanceof byte[] && current instanceof byte[])
+            return Arrays.equals((byte[]) captured, (byte[]) current);
+        if (captured instanceof char[] && current instanceof char[])
+            return Arrays.equals((char[]) captured, (char[]) current);
+        if (captured instanceof Object[] && current instanceof Object[])
+            return Arrays.equals((Object[]) captured, (Object[]) current);
+        return captured.equals(current);
+    }
+}
@@ -0,0 +1,437 @@
+package pk.gov.pbs.database;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import pk.gov.pbs.database.annotations.Default;
+import pk.gov.pbs.database.exceptions.UnsupportedDataType;
+import pk.gov.pbs.database.storage.StorageConnection;
+import pk.gov.pbs.database.storage.StorageCursor;
+import pk.gov.pbs.database.storage.StorageException;
+import pk.gov.pbs.database.storage.StorageProvider;
+import pk.gov.pbs.database.storage.StorageStatement;
+
+/**
+ * Model based create, insert, query, update and delete over a StorageProvider, it does not depend on Android so the
+ * same models can be used on the JVM with JdbcStorage, i,e to ingest survey data on a server. On Android use
+ * ModelBasedDatabaseHelper.getStorageProvider() to run it over the database of helper.
+ * Writes are executed in a single transaction, rows are bound to one compiled statement per model and sent to
+ * database in batches of getBatchSize() with addBatch and executeBatch. Statements, binding and row mapping are
+ * the ones of ModelBasedDatabaseHelper (InsertStatement, UpdateStatement, ValueBinder and RowMappingPlan), so
+ * generated ModelAdapters are used here as well
+ */
+public class ModelStore {
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final StorageProvider provider;
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+    public ModelStore(StorageProvider provider) {
+        this.provider = provider;
+    }
+
+    public StorageProvider getStorageProvider() {
+        return provider;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize number of rows sent to database in one executeBatch (at least 1)
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * creates table of model along with its unique keys and indexes
+     * @param modelClass model class
+     * @throws UnsupportedDataType in case model has a field of type which can not be stored
+     */
+    public void createTable(Class<?> modelClass) throws UnsupportedDataType {
+        ModelMetadata metadata = ModelMetadata.of(modelClass);
+        StorageConnection connection = provider.getConnection();
+        try {
+            connection.beginTransaction();
+            try {
+                connection.execute(getCreateTableSql(metadata), null);
+                for (String sql : getCreateIndexSql(metadata).values())
+                    connection.execute(sql, null);
+                connection.setTransactionSuccessful();
+            } finally {
+                connection.endTransaction();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * executes statement which returns no rows
+     * @param sql statement
+     * @param args values of bind arguments
+     */
+    public void execute(String sql, Object... args) {
+        StorageConnection connection = provider.getConnection();
+        try {
+            connection.execute(sql, args.length == 0 ? null : args);
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * inserts given objects in one transaction, if any row fails the whole transaction is rolled back
+     * @param models objects of one or more models
+     * @param conflictMode conflict resolution of insert statement
+     * @return number of rows inserted, rows skipped by ConflictMode.IGNORE are not counted
+     * @throws StorageException in case of constraint violation or other errors from database
+     * (android.database.SQLException over AndroidStorage)
+     */
+    public int insert(Collection<?> models, ConflictMode conflictMode) {
+        return write(models, conflictMode);
+    }
+
+    /**
+     * @see #insert(Collection, ConflictMode)
+     */
+    public int insert(Collection<?> models) {
+        return insert(models, ConflictMode.NONE);
+    }
+
+    /**
+     * @see #insert(Collection, ConflictMode)
+     */
+    public int replace(Collection<?> models) {
+        return insert(models, ConflictMode.REPLACE);
+    }
+
+    /**
+     * updates rows of given objects matched by primary key, all columns other than primary key are written
+     * @param models objects of one or more models, every model must have a primary key
+     * @return number of rows updated
+     */
+    public int update(Collection<?> models) {
+        return write(models, null);
+    }
+
+    /**
+     * writes given objects in one transaction with InsertStatement (or UpdateStatement if conflict mode is null)
+     * of each model, objects are added to batch of statement and sent to database every getBatchSize() objects
+     */
+    private int write(Collection<?> models, @Nullable ConflictMode conflictMode) {
+        if (models.isEmpty())
+            return 0;
+
+        int written = 0;
+        Map<Class<?>, Batch> batches = new LinkedHashMap<>();
+        StorageConnection connection = provider.getConnection();
+        try {
+            connection.beginTransaction();
+            try {
+                for (Object model : models) {
+                    Batch batch = batches.get(model.getClass());
+                    if (batch == null) {
+                        batch = new Batch(connection, model.getClass(), conflictMode);
+                        batches.put(model.getClass(), batch);
+                    }
+                    written += batch.add(model, batchSize);
+                }
+                for (Batch batch : batches.values())
+                    written += batch.flush();
+                connection.setTransactionSuccessful();
+            } finally {
+                for (Batch batch : batches.values())
+                    batch.close();
+                connection.endTransaction();
+            }
+        } finally {
+            connection.close();
+        }
+        return written;
+    }
+
+    /**
+     * @param modelClass model class
+     * @param whereClause where clause without WHERE keyword, null to delete all rows
+     * @param args values of bind arguments in where clause
+     * @return number of rows deleted
+     */
+    public int delete(Class<?> modelClass, @Nullable String whereClause, String... args) {
+        String sql = "DELETE FROM `" + ModelMetadata.of(modelClass).getTableName() + '`'
+                + (whereClause == null ? "" : " WHERE " + whereClause);
+        StorageConnection connection = provider.getConnection();
+        try {
+            StorageStatement statement = connection.prepare(sql);
+            try {
+                for (int i = 0; i < args.length; i++)
+                    statement.bindString(i + 1, args[i]);
+                return statement.executeUpdateDelete();
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * @param modelClass model class
+     * @param whereClause where clause without WHERE keyword, null to query all rows
+     * @param args values of bind arguments in where clause
+     * @return objects of model for matching rows
+     */
+    @NonNull
+    public <T> List<T> query(Class<T> modelClass, @Nullable String whereClause, String... args) {
+        return queryRawSql(modelClass, "SELECT * FROM `" + ModelMetadata.of(modelClass).getTableName() + '`'
+                + (whereClause == null ? "" : " WHERE " + whereClause), args);
+    }
+
+    /**
+     * @return first matching object, null if no row matches
+     */
+    @Nullable
+    public <T> T querySingle(Class<T> modelClass, @Nullable String whereClause, String... args) {
+        List<T> result = queryRawSql(modelClass, "SELECT * FROM `" + ModelMetadata.of(modelClass).getTableName() + '`'
+                + (whereClause == null ? "" : " WHERE " + whereClause) + " LIMIT 1", args);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * maps rows of given query to objects of model with RowMappingPlan, columns are matched to fields by name and
+     * columns which have no field are ignored
+     */
+    @NonNull
+    public <T> List<T> queryRawSql(final Class<T> modelClass, String sql, String... args) {
+        StorageConnection connection = provider.getConnection();
+        try {
+            StorageCursor cursor = connection.query(sql, args);
+            try {
+                RowMappingPlan<T> plan = RowMappingPlan.of(modelClass, cursor, false);
+                List<T> result = new ArrayList<>();
+                while (cursor.moveToNext())
+                    result.add(plan.map(cursor));
+                return result;
+            } catch (IllegalAccessException | InstantiationException e) {
+                throw new StorageException("Failed to map row to " + modelClass.getName(), e);
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * extracts one object from every row of given query with given extractor
+     */
+    @NonNull
+    public <T> List<T> queryWith(String sql, RowExtractor<T> extractor, String... args) {
+        StorageConnection connection = provider.getConnection();
+        try {
+            StorageCursor cursor = connection.query(sql, args);
+            try {
+                List<T> result = new ArrayList<>();
+                while (cursor.moveToNext())
+                    result.add(extractor.extract(cursor));
+                return result;
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * @return number of rows of model matching where clause
+     */
+    public long getCount(Class<?> modelClass, @Nullable String whereClause, String... args) {
+        List<Long> count = queryWith("SELECT COUNT(*) FROM `" + ModelMetadata.of(modelClass).getTableName() + '`'
+                + (whereClause == null ? "" : " WHERE " + whereClause), new RowExtractor<Long>() {
+            @Override
+            public Long extract(StorageCursor cursor) {
+                return cursor.getLong(0);
+            }
+        }, args);
+        return count.isEmpty() ? 0 : count.get(0);
+    }
+
+    static String getCreateTableSql(ModelMetadata metadata) throws UnsupportedDataType {
+        boolean pkAutoIncremented = false;
+        List<String> pkConstraint = new ArrayList<>();
+        StringBuilder queryBuilder = new StringBuilder();
+        queryBuilder.append("CREATE TABLE ").append(metadata.getTableName()).append(" (");
+        for (ModelMetadata.Column column : metadata.getColumns()){
+            String sqliteType = column.getSQLiteType();
+            if (sqliteType == null)
+                throw new UnsupportedDataType(column.getType());
+            queryBuilder.append(column.getName())
+                    .append(sqliteType);
+            if (column.isPrimaryKey()){
+                if (column.isAutogenerate() && !pkAutoIncremented) {
+                    queryBuilder.append("PRIMARY KEY AUTOINCREMENT");
+                    pkAutoIncremented = true;
+                } else
+                    pkConstraint.add(column.getName());
+            }
+            Default ano = column.getDefault();
+            if (ano != null){
+                queryBuilder.append("DEFAULT ")
+                        .append('\'').append(ano.value()).append('\'');
+            }
+            queryBuilder.append(column.isNotNull() ? " NOT NULL," : ",");
+        }
+
+        if (!pkAutoIncremented && !pkConstraint.isEmpty()) {
+            queryBuilder
+                    .append(" CONSTRAINT `")
+                    .append(metadata.getTableName())
+                    .append("_PK`")
+                    .append("  PRIMARY KEY (");
+
+            for (String pkCol : pkConstraint)
+                queryBuilder
+                        .append("`")
+                        .append(pkCol)
+                        .append("`,");
+
+            queryBuilder.deleteCharAt(queryBuilder.length()-1).append("),");
+
+        }
+
+        queryBuilder.deleteCharAt(queryBuilder.length()-1).append(")");
+        return queryBuilder.toString();
+    }
+
+    /**
+     * create statements of unique keys and of indexes declared with Index annotations, partial indexes
+     * (Index.where) need SQLite 3.8 or above
+     * @return create statements of indexes of model mapped by name of index
+     * @throws IllegalArgumentException in case a unique index has include columns, SQLite would make them part
+     * of the unique key so rows differing only in those columns would be accepted
+     */
+    static Map<String, String> getCreateIndexSql(ModelMetadata metadata){
+        Map<String, String> indexes = new LinkedHashMap<>();
+        for (Map.Entry<String, List<ModelMetadata.Column>> index : metadata.getUniqueKeys().entrySet()){
+            String name = metadata.getTableName() + "_unique_index_" + index.getKey();
+            StringBuilder sb = new StringBuilder();
+            sb.append("CREATE UNIQUE INDEX `").append(name).append('`')
+                    .append(" ON `").append(metadata.getTableName()).append("` (");
+            for (ModelMetadata.Column col : index.getValue()){
+                sb.append('`').append(col.getName()).append("`,");
+            }
+            sb.deleteCharAt(sb.length()-1).append(")");
+            indexes.put(name, sb.toString());
+        }
+
+        // SQLite has no INCLUDE clause, covering columns are appended to the key so index alone can answer the query
+        for (ModelMetadata.IndexDefinition index : metadata.getIndexes()){
+            if (index.isUnique() && !index.getColumns().containsAll(index.getInclude()))
+                throw new IllegalArgumentException("Unique index " + index.getName() + " of model " + metadata.getModelClass().getSimpleName()
+                        + " can not have include columns, declare a separate non unique index to cover them");
+
+            StringBuilder sb = new StringBuilder(index.isUnique() ? "CREATE UNIQUE INDEX `" : "CREATE INDEX `");
+            sb.append(index.getName()).append('`')
+                    .append(" ON `").append(metadata.getTableName()).append("` (");
+            for (int i = 0; i < index.getColumns().size(); i++){
+                sb.append('`').append(index.getColumns().get(i).getName()).append('`');
+                sb.append(index.isDescending(i) ? " DESC," : ",");
+            }
+            for (ModelMetadata.Column col : index.getInclude()){
+                if (!index.getColumns().contains(col))
+                    sb.append('`').append(col.getName()).append("`,");
+            }
+            sb.deleteCharAt(sb.length()-1).append(")");
+            indexes.put(index.getName(), index.appendWhere(sb, false).toString());
+        }
+        return indexes;
+    }
+
+    static String getInsertSql(String table, String[] columns, ConflictMode conflictMode){
+        StringBuilder sb = new StringBuilder(conflictMode.getStatement())
+                .append('`').append(table).append("` (");
+        for (String column : columns)
+            sb.append('`').append(column).append("`,");
+        sb.setCharAt(sb.length() - 1, ')');
+        sb.append(" VALUES (");
+        for (int i = 0; i < columns.length; i++)
+            sb.append(i == 0 ? "?" : ",?");
+        return sb.append(')').toString();
+    }
+
+    private static int sum(int[] counts){
+        int total = 0;
+        for (int count : counts) {
+            // drivers may report SUCCESS_NO_INFO (-2) for rows of batch
+            total += count > 0 ? count : 0;
+        }
+        return total;
+    }
+
+    /**
+     * Insert or update statement of one model with objects added to its batch since last executeBatch
+     */
+    private static final class Batch {
+        private final Class<?> modelClass;
+        private final InsertStatement insert;
+        private final UpdateStatement update;
+        private int pending;
+
+        Batch(StorageConnection connection, Class<?> modelClass, @Nullable ConflictMode conflictMode){
+            this.modelClass = modelClass;
+            if (conflictMode != null) {
+                this.insert = new InsertStatement(connection, modelClass, conflictMode);
+                this.update = null;
+            } else {
+                List<ModelMetadata.Column> columns = ModelMetadata.of(modelClass).getColumns();
+                String error = UpdateStatement.validate(modelClass, columns);
+                if (error != null)
+                    throw new StorageException(error);
+                this.insert = null;
+                this.update = new UpdateStatement(connection, modelClass, columns);
+            }
+        }
+
+        int add(Object model, int batchSize){
+            if (insert != null)
+                insert.addBatch(model);
+            else {
+                try {
+                    update.addBatch(model);
+                } catch (IllegalAccessException e) {
+                    throw new StorageException("Field of model " + modelClass.getSimpleName() + " is not accessible, Can not proceed to update", e);
+                }
+            }
+            return ++pending >= batchSize ? flush() : 0;
+        }
+
+        int flush(){
+            if (pending == 0)
+                return 0;
+            pending = 0;
+            return sum(insert != null ? insert.executeBatch() : update.executeBatch());
+        }
+
+        void close(){
+            if (insert != null)
+                insert.close();
+            else
+                update.close();
+        }
+    }
+
+    public interface RowExtractor<T> {
+        T extract(StorageCursor cursor);
+    }
+}
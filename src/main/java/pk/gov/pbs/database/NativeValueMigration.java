@@ -0,0 +1,76 @@
+package pk.gov.pbs.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * One time conversion of rows written before values were stored in their native types.
+ * Earlier versions wrote every value with toString(), numeric text was already converted by the
+ * INTEGER and REAL affinity of columns but booleans were kept as 'true' / 'false' and byte arrays as
+ * their identity string i,e '[B@1f2a3b'. Booleans are converted to 1 / 0 and identity strings of byte arrays,
+ * which never held the actual data, are set to NULL. It runs from onUpgrade and is recorded in the catalog of
+ * SchemaMigration so it is applied only once for a database, databases created with native values record it on create
+ */
+final class NativeValueMigration {
+    static final String NAME = "native_value_binding";
+
+    private NativeValueMigration(){}
+
+    /**
+     * records the migration as applied without running it, for databases whose tables are created with native values
+     */
+    static void record(SQLiteDatabase db){
+        SchemaMigration.markApplied(db, NAME);
+    }
+
+    static void apply(SQLiteDatabase db, Class<?>[] models){
+        if (SchemaMigration.isApplied(db, NAME))
+            return;
+
+        db.beginTransaction();
+        try {
+            for (Class<?> model : models) {
+                ModelMetadata metadata = ModelMetadata.of(model);
+                Set<String> existing = getExistingColumns(db, metadata.getTableName());
+                for (ModelMetadata.Column column : metadata.getColumns()) {
+                    if (!existing.contains(column.getName()))
+                        continue;
+
+                    String table = '`' + metadata.getTableName() + '`';
+                    String col = '`' + column.getName() + '`';
+                    switch (column.getFieldType()) {
+                        case BOOLEAN:
+                        case BOOLEAN_OBJECT:
+                            db.execSQL("UPDATE " + table + " SET " + col + " = CASE lower(" + col + ")"
+                                    + " WHEN 'true' THEN 1 WHEN 'false' THEN 0 ELSE " + col + " END"
+                                    + " WHERE typeof(" + col + ") = 'text'");
+                            break;
+                        case BLOB:
+                        case BLOB_OBJECT:
+                            db.execSQL("UPDATE " + table + " SET " + col + " = NULL"
+                                    + " WHERE typeof(" + col + ") = 'text'"
+                                    + " AND (" + col + " LIKE '[B@%' OR " + col + " LIKE '[Ljava.lang.Byte;@%')");
+                            break;
+                    }
+                }
+            }
+            SchemaMigration.markApplied(db, NAME);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    static Set<String> getExistingColumns(SQLiteDatabase db, String table){
+        Set<String> columns = new HashSet<>();
+        Cursor c = db.rawQuery("PRAGMA table_info(`" + table + "`)", null);
+        int nameIndex = c.getColumnIndex("name");
+        while (c.moveToNext())
+            columns.add(c.getString(nameIndex));
+        c.close();
+        return columns;
+    }
+}
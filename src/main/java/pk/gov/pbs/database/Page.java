@@ -0,0 +1,66 @@
+package pk.gov.pbs.database;
+
+import android.util.Base64;
+
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * One page of keyset paginated query, continuation token points after the last row of this page
+ * and is passed as it is to fetch the next page
+ * @param <T> type of model
+ */
+public class Page<T> {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Gson gson = new Gson();
+
+    private final List<T> items;
+    private final String continuationToken;
+
+    Page(List<T> items, @Nullable String continuationToken){
+        this.items = items;
+        this.continuationToken = continuationToken;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return opaque token to fetch the next page, null if this is the last page
+     */
+    @Nullable
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public boolean hasMore() {
+        return continuationToken != null;
+    }
+
+    static String encodeToken(String sortColumn, String key, String tieBreaker){
+        byte[] json = gson.toJson(new String[]{ sortColumn, key, tieBreaker }).getBytes(UTF_8);
+        return Base64.encodeToString(json, Base64.URL_SAFE | Base64.NO_WRAP | Base64.NO_PADDING);
+    }
+
+    /**
+     * @return sort column, key value and tie breaker value of last row of previous page
+     * @throws IllegalArgumentException in case token is malformed or was issued for other sort column
+     */
+    static String[] decodeToken(String token, String sortColumn) throws IllegalArgumentException {
+        String[] values;
+        try {
+            values = gson.fromJson(new String(Base64.decode(token, Base64.URL_SAFE), UTF_8), String[].class);
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("Malformed continuation token", e);
+        }
+        if (values == null || values.length != 3 || !sortColumn.equals(values[0]))
+            throw new IllegalArgumentException("Continuation token was not issued for sort column '" + sortColumn + "'");
+        return values;
+    }
+}
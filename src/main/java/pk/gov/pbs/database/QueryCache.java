@@ -0,0 +1,525 @@
+package pk.gov.pbs.database;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Least recently used cache of query results, keyed by sql and its arguments. Size of cache is limited by number of entries
+ * and by approximate number of bytes held by the results, least recently used entries are evicted when either limit is crossed.
+ * Every entry remembers the tables its query read and the generation of each of them at the time query was started,
+ * generation of a table is incremented whenever ModelBasedDatabaseHelper writes into it, so entry is never served after
+ * a write into any of its tables even if the write was committed while query was running.
+ * Queries from which tables can not be determined are not cached, neither are queries reading views since writes into their
+ * underlying tables would not invalidate the entry, and statements executed with execSql whose target can not
+ * be determined invalidate the whole cache. Writes done directly on SQLiteDatabase bypass the cache, call
+ * ModelBasedDatabaseHelper.invalidateQueryCache(String...) after such writes
+ */
+public class QueryCache implements ComponentCallbacks2 {
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> generations = new HashMap<>();
+    private long globalGeneration;
+    private long bytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * @param maxEntries maximum number of cached results
+     * @param maxBytes approximate maximum memory held by cached results
+     */
+    public QueryCache(int maxEntries, long maxBytes){
+        if (maxEntries < 1 || maxBytes < 1)
+            throw new IllegalArgumentException("Query cache must allow at least one entry and one byte");
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @param kind kind of result, i,e class of model, so that same sql mapped to different types is cached separately
+     * @param sql select statement
+     * @param args selection arguments
+     * @return key for given query, null if query can not be cached because its tables could not be determined
+     */
+    @Nullable
+    public Key newKey(Object kind, String sql, String[] args){
+        Set<String> tables = getTablesRead(sql);
+        if (tables.isEmpty())
+            return null;
+
+        synchronized (this) {
+            String[] names = tables.toArray(new String[0]);
+            long[] tableGenerations = new long[names.length];
+            for (int i = 0; i < names.length; i++)
+                tableGenerations[i] = getGeneration(names[i]);
+            return new Key(kind, sql, args, names, tableGenerations, globalGeneration);
+        }
+    }
+
+    /**
+     * @return cached result of query, null if it is not cached or has been invalidated
+     */
+    @Nullable
+    public synchronized Object get(Key key){
+        Entry entry = entries.get(key);
+        if (entry != null && !isValid(entry.key)) {
+            remove(key);
+            entry = null;
+        }
+
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * caches the result of query, result is dropped if any of its tables has been written after the key was created
+     * @param key key created before query was executed
+     * @param value result of query
+     * @param size approximate size of result in bytes
+     */
+    public synchronized void put(Key key, Object value, long size){
+        if (!isValid(key) || size > maxBytes)
+            return;
+
+        Entry previous = entries.put(key, new Entry(key, value, size));
+        if (previous != null)
+            bytes -= previous.size;
+        bytes += size;
+        trimTo(maxEntries, maxBytes);
+    }
+
+    /**
+     * invalidates cached results which read any of given tables
+     * @param tables names of tables
+     */
+    public synchronized void invalidate(Collection<String> tables){
+        boolean changed = false;
+        for (String table : tables) {
+            String name = table.toLowerCase(Locale.US);
+            generations.put(name, getGeneration(name) + 1);
+            changed = true;
+        }
+        if (!changed)
+            return;
+
+        invalidations++;
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (!isValid(entry.key)) {
+                bytes -= entry.size;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * invalidates all cached results, including the results of queries which are running right now
+     */
+    public synchronized void invalidateAll(){
+        globalGeneration++;
+        invalidations++;
+        clear();
+    }
+
+    /**
+     * removes all the cached results, counters are kept
+     */
+    public synchronized void clear(){
+        entries.clear();
+        bytes = 0;
+    }
+
+    private long getGeneration(String table){
+        Long generation = generations.get(table);
+        return generation == null ? 0 : generation;
+    }
+
+    private boolean isValid(Key key){
+        if (key.globalGeneration != globalGeneration)
+            return false;
+        for (int i = 0; i < key.tables.length; i++) {
+            if (key.tableGenerations[i] != getGeneration(key.tables[i]))
+                return false;
+        }
+        return true;
+    }
+
+    private void remove(Key key){
+        Entry entry = entries.remove(key);
+        if (entry != null)
+            bytes -= entry.size;
+    }
+
+    private void trimTo(int entryLimit, long byteLimit){
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while ((entries.size() > entryLimit || bytes > byteLimit) && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            bytes -= eldest.size;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        synchronized (this) {
+            if (level >= TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_CRITICAL)
+                clear();
+            else if (level >= TRIM_MEMORY_RUNNING_MODERATE)
+                trimTo(entries.size() / 2, bytes / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {}
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidationCount() {
+        return invalidations;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return approximate number of bytes held by cached results
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "QueryCache{entries=" + entries.size() + "/" + maxEntries
+                + ", bytes=" + bytes + "/" + maxBytes
+                + ", hits=" + hits
+                + ", misses=" + misses
+                + ", evictions=" + evictions
+                + ", invalidations=" + invalidations
+                + "}";
+    }
+
+    /**
+     * approximate memory held by given rows, rows can be objects of model or maps of column to value
+     * @param rows rows of result
+     * @return approximate size in bytes
+     */
+    public static long estimateSize(Collection<?> rows){
+        long size = 40 + 8L * rows.size();
+        for (Object row : rows)
+            size += sizeOf(row);
+        return size;
+    }
+
+    private static long sizeOf(Object value){
+        if (value == null)
+            return 0;
+        if (value instanceof String)
+            return 40 + 2L * ((String) value).length();
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character)
+            return 16;
+        if (value instanceof byte[])
+            return 16 + ((byte[]) value).length;
+        if (value instanceof char[])
+            return 16 + 2L * ((char[]) value).length;
+        if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            long size = 16 + 4L * array.length;
+            for (Object item : array)
+                size += sizeOf(item);
+            return size;
+        }
+        if (value instanceof Map) {
+            long size = 48;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+                size += 32 + sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+            return size;
+        }
+
+        long size = 16;
+        for (ModelMetadata.Column column : ModelMetadata.of(value.getClass()).getColumns()) {
+            if (column.getFieldType().isPrimitive()) {
+                size += 8;
+                continue;
+            }
+            try {
+                size += 4 + sizeOf(column.get(value));
+            } catch (IllegalAccessException e) {
+                size += 4;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * names of tables read by given select statement, taken from FROM and JOIN clauses (including those of sub queries)
+     * @param sql select statement
+     * @return lower case table names, empty if none could be determined
+     */
+    public static Set<String> getTablesRead(String sql){
+        Set<String> tables = new LinkedHashSet<>();
+        SqlScanner scanner = new SqlScanner(sql);
+        String token;
+        while ((token = scanner.next()) != null) {
+            if (!token.equalsIgnoreCase("FROM") && !token.equalsIgnoreCase("JOIN"))
+                continue;
+
+            while (true) {
+                String table = scanner.next();
+                if (table == null || !SqlScanner.isIdentifier(table)) {
+                    scanner.pushBack(table);
+                    break;
+                }
+
+                // schema qualified name, i,e main.table
+                String next = scanner.next();
+                if (".".equals(next)) {
+                    table = scanner.next();
+                    if (table == null)
+                        break;
+                    next = scanner.next();
+                }
+                tables.add(table.toLowerCase(Locale.US));
+
+                // skip alias and continue if tables are separated by comma
+                if (next != null && next.equalsIgnoreCase("AS"))
+                    next = scanner.next();
+                if (next != null && SqlScanner.isIdentifier(next) && !SqlScanner.isKeyword(next))
+                    next = scanner.next();
+                if (!",".equals(next)) {
+                    scanner.pushBack(next);
+                    break;
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * name of table written by given statement
+     * @param sql insert, replace, update, delete, alter or drop statement
+     * @return lower case table name, null if statement is not one of above or its table could not be determined
+     */
+    @Nullable
+    public static String getTableWritten(String sql){
+        SqlScanner scanner = new SqlScanner(sql);
+        String verb = scanner.next();
+        if (verb == null)
+            return null;
+
+        String token;
+        if (verb.equalsIgnoreCase("INSERT") || verb.equalsIgnoreCase("REPLACE")) {
+            do {
+                token = scanner.next();
+            } while (token != null && !token.equalsIgnoreCase("INTO"));
+            token = scanner.next();
+        } else if (verb.equalsIgnoreCase("UPDATE")) {
+            token = scanner.next();
+            if (token != null && token.equalsIgnoreCase("OR")) {
+                scanner.next();
+                token = scanner.next();
+            }
+        } else if (verb.equalsIgnoreCase("DELETE")) {
+            token = scanner.next();
+            token = token != null && token.equalsIgnoreCase("FROM") ? scanner.next() : null;
+        } else if (verb.equalsIgnoreCase("ALTER") || verb.equalsIgnoreCase("DROP")) {
+            token = scanner.next();
+            if (token == null || !token.equalsIgnoreCase("TABLE"))
+                return null;
+            token = scanner.next();
+            if (token != null && token.equalsIgnoreCase("IF")) {
+                scanner.next();
+                token = scanner.next();
+            }
+        } else
+            return null;
+
+        if (token == null || !SqlScanner.isIdentifier(token))
+            return null;
+
+        // schema qualified name, i,e main.table
+        String next = scanner.next();
+        if (next != null && next.equals(".")) {
+            token = scanner.next();
+            if (token == null)
+                return null;
+        }
+        return token.toLowerCase(Locale.US);
+    }
+
+    public static final class Key {
+        private final Object kind;
+        private final String sql;
+        private final String[] args;
+        private final String[] tables;
+        private final long[] tableGenerations;
+        private final long globalGeneration;
+        private final int hash;
+
+        private Key(Object kind, String sql, String[] args, String[] tables, long[] tableGenerations, long globalGeneration){
+            this.kind = kind;
+            this.sql = sql;
+            this.args = args == null ? null : args.clone();
+            this.tables = tables;
+            this.tableGenerations = tableGenerations;
+            this.globalGeneration = globalGeneration;
+            this.hash = 31 * (31 * kind.hashCode() + sql.hashCode()) + Arrays.hashCode(this.args);
+        }
+
+        /**
+         * @return lower case names read by the query, as given by getTablesRead(String)
+         */
+        String[] getTables(){
+            return tables.clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return kind.equals(other.kind) && sql.equals(other.sql) && Arrays.equals(args, other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        private final Key key;
+        private final Object value;
+        private final long size;
+
+        Entry(Key key, Object value, long size){
+            this.key = key;
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    /**
+     * splits sql into identifiers, keywords and punctuation, skipping string literals and comments
+     */
+    private static final class SqlScanner {
+        private static final Set<String> KEYWORDS = new LinkedHashSet<>(Arrays.asList(
+                "WHERE", "JOIN", "INNER", "LEFT", "RIGHT", "FULL", "OUTER", "CROSS", "NATURAL", "ON", "USING",
+                "GROUP", "ORDER", "LIMIT", "HAVING", "UNION", "EXCEPT", "INTERSECT", "WINDOW", "INDEXED", "NOT"
+        ));
+
+        private final String sql;
+        private int position;
+        private String pushedBack;
+
+        SqlScanner(String sql){
+            this.sql = sql;
+        }
+
+        static boolean isIdentifier(String token){
+            if (token == null)
+                return false;
+            char c = token.charAt(0);
+            return Character.isLetter(c) || c == '_';
+        }
+
+        static boolean isKeyword(String token){
+            return KEYWORDS.contains(token.toUpperCase(Locale.US));
+        }
+
+        void pushBack(String token){
+            pushedBack = token;
+        }
+
+        String next(){
+            if (pushedBack != null) {
+                String token = pushedBack;
+                pushedBack = null;
+                return token;
+            }
+
+            int length = sql.length();
+            while (position < length) {
+                char c = sql.charAt(position);
+                if (Character.isWhitespace(c)) {
+                    position++;
+                } else if (c == '-' && position + 1 < length && sql.charAt(position + 1) == '-') {
+                    int end = sql.indexOf('\n', position);
+                    position = end == -1 ? length : end + 1;
+                } else if (c == '/' && position + 1 < length && sql.charAt(position + 1) == '*') {
+                    int end = sql.indexOf("*/", position + 2);
+                    position = end == -1 ? length : end + 2;
+                } else if (c == '\'') {
+                    int end = sql.indexOf('\'', position + 1);
+                    while (end != -1 && end + 1 < length && sql.charAt(end + 1) == '\'')
+                        end = sql.indexOf('\'', end + 2);
+                    position = end == -1 ? length : end + 1;
+                } else if (c == '`' || c == '"' || c == '[') {
+                    char close = c == '[' ? ']' : c;
+                    int end = sql.indexOf(close, position + 1);
+                    if (end == -1)
+                        end = length;
+                    String identifier = sql.substring(position + 1, end);
+                    position = Math.min(length, end + 1);
+                    return identifier.isEmpty() ? "_" : identifier;
+                } else if (Character.isLetterOrDigit(c) || c == '_' || c == '$') {
+                    int start = position;
+                    while (position < length && (Character.isLetterOrDigit(sql.charAt(position)) || sql.charAt(position) == '_' || sql.charAt(position) == '$'))
+                        position++;
+                    return sql.substring(start, position);
+                } else {
+                    position++;
+                    return String.valueOf(c);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package pk.gov.pbs.database;
+
+import android.database.Cursor;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import pk.gov.pbs.database.storage.AndroidStorage;
+import pk.gov.pbs.database.storage.StorageCursor;
+import pk.gov.pbs.utils.ExceptionReporter;
+
+/**
+ * Iterator over the rows of query which maps each row to model only when it is requested, so only one
+ * window of cursor is held in memory regardless of the size of result. Cursor is closed when the last row
+ * has been read or if reading fails, close() must be called if iteration is abandoned early
+ * (i,e use try-with-resources or call close() in finally block)
+ * @param <T> type of model
+ */
+public class QueryIterator<T> implements Iterator<T>, Iterable<T>, Closeable {
+    private final Cursor cursor;
+    private final StorageCursor row;
+    private final RowMappingPlan<T> plan;
+    private T next;
+    private boolean closed;
+
+    public QueryIterator(Class<T> outputType, Cursor cursor){
+        this.cursor = cursor;
+        this.row = AndroidStorage.wrap(cursor);
+        RowMappingPlan<T> plan = null;
+        try {
+            plan = RowMappingPlan.of(outputType, row, false);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+        this.plan = plan;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && !closed) {
+            try {
+                if (!cursor.moveToNext()) {
+                    close();
+                    break;
+                }
+                next = plan.map(row);
+            } catch (IllegalAccessException | InstantiationException e) {
+                ExceptionReporter.handle(e);
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        T result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Rows can not be removed through query iterator");
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package pk.gov.pbs.database;
+
+import androidx.annotation.NonNull;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import pk.gov.pbs.database.storage.StorageCursor;
+
+/**
+ * Mapping of cursor columns to the fields of model, resolved once for each combination of model class
+ * and column layout of cursor. It holds column index and type of each mapped field, so mapping a row
+ * neither searches the column by name nor inspects the type of field again.
+ * Get the plan once before iterating the cursor and use map(StorageCursor) for every row, on Android wrap the
+ * cursor once with AndroidStorage.wrap(Cursor). If model has a generated ModelAdapter, rows are read by adapter
+ * using the resolved column indexes
+ * @param <T> type of model
+ */
+public final class RowMappingPlan<T> {
+    /**
+     * maximum number of plans kept, least recently used plan is dropped once ad-hoc projections exceed it
+     */
+    static final int MAX_PLANS = 64;
+    private static final Map<LayoutKey, RowMappingPlan<?>> plans = new LinkedHashMap<LayoutKey, RowMappingPlan<?>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<LayoutKey, RowMappingPlan<?>> eldest) {
+            return size() > MAX_PLANS;
+        }
+    };
+
+    private final Class<T> type;
+    private final ModelAdapter<T> adapter;
+    private final int[] adapterPlan;
+    private final Constructor<T> constructor;
+    private final Field[] fields;
+    private final FieldType[] types;
+    private final int[] columnIndexes;
+
+    /**
+     * get the plan for given model class and layout of given cursor, plan is created for first cursor with
+     * this layout and then reused for subsequent cursors with same columns. Only the MAX_PLANS most recently
+     * used plans are kept
+     * @param type model class
+     * @param cursor cursor of which columns are mapped
+     * @param includePrivateFields whether to map private fields or not
+     * @return mapping plan
+     * @param <T> type of model
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public static <T> RowMappingPlan<T> of(Class<T> type, StorageCursor cursor, boolean includePrivateFields){
+        String[] columns = new String[cursor.getColumnCount()];
+        for (int i = 0; i < columns.length; i++)
+            columns[i] = cursor.getColumnName(i);
+        LayoutKey key = new LayoutKey(type, includePrivateFields, columns);
+        RowMappingPlan<?> plan;
+        synchronized (plans) {
+            plan = plans.get(key);
+        }
+        if (plan == null) {
+            plan = new RowMappingPlan<>(type, cursor, includePrivateFields);
+            synchronized (plans) {
+                RowMappingPlan<?> existing = plans.get(key);
+                if (existing != null)
+                    plan = existing;
+                else
+                    plans.put(key, plan);
+            }
+        }
+        return (RowMappingPlan<T>) plan;
+    }
+
+    private RowMappingPlan(Class<T> type, StorageCursor cursor, boolean includePrivateFields){
+        this.type = type;
+        this.adapter = includePrivateFields ? null : ModelAdapters.get(type);
+        this.constructor = getDefaultConstructor(type);
+
+        if (adapter != null) {
+            String[] columns = adapter.getColumnNames();
+            this.adapterPlan = new int[columns.length];
+            for (int i = 0; i < columns.length; i++)
+                adapterPlan[i] = cursor.getColumnIndex(columns[i]);
+        } else
+            this.adapterPlan = null;
+
+        List<Field> mapped = new ArrayList<>();
+        List<FieldType> mappedTypes = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for (Field field : ModelMetadata.of(type).getFields(includePrivateFields)) {
+            FieldType fieldType = FieldType.of(field.getType());
+            int index = cursor.getColumnIndex(field.getName());
+            if (index == -1 || fieldType == FieldType.UNSUPPORTED)
+                continue;
+            mapped.add(field);
+            mappedTypes.add(fieldType);
+            indexes.add(index);
+        }
+
+        this.fields = mapped.toArray(new Field[0]);
+        this.types = mappedTypes.toArray(new FieldType[0]);
+        this.columnIndexes = new int[indexes.size()];
+        for (int i = 0; i < columnIndexes.length; i++)
+            columnIndexes[i] = indexes.get(i);
+    }
+
+    private static <T> Constructor<T> getDefaultConstructor(Class<T> type){
+        try {
+            Constructor<T> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException | SecurityException e) {
+            return null;
+        }
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * creates object of model from current row of cursor
+     * @param c cursor positioned at the row to map, it must have the same column layout this plan was created for
+     * @return object of model
+     * @throws IllegalAccessException in case a field could not be set
+     * @throws InstantiationException in case model could not be instantiated
+     */
+    public T map(StorageCursor c) throws IllegalAccessException, InstantiationException {
+        if (adapter != null)
+            return adapter.read(c, adapterPlan);
+
+        T o = newInstance();
+        for (int i = 0; i < fields.length; i++) {
+            Field f = fields[i];
+            int index = columnIndexes[i];
+            switch (types[i]) {
+                case STRING:
+                    f.set(o, c.getString(index));
+                    break;
+                case CHAR: {
+                    String value = c.getString(index);
+                    f.setChar(o, value == null || value.isEmpty() ? '\0' : value.charAt(0));
+                    break;
+                }
+                case CHARACTER: {
+                    String value = c.getString(index);
+                    f.set(o, value == null || value.isEmpty() ? null : value.charAt(0));
+                    break;
+                }
+                case CHAR_ARRAY: {
+                    String value = c.getString(index);
+                    f.set(o, value == null ? null : value.toCharArray());
+                    break;
+                }
+                case CHARACTER_ARRAY: {
+                    String value = c.getString(index);
+                    f.set(o, value == null ? null : FieldType.box(value.toCharArray()));
+                    break;
+                }
+                case INT:
+                    f.setInt(o, (int) c.getLong(index));
+                    break;
+                case INTEGER:
+                    f.set(o, c.isNull(index) ? null : (int) c.getLong(index));
+                    break;
+                case LONG:
+                    f.setLong(o, c.getLong(index));
+                    break;
+                case LONG_OBJECT:
+                    f.set(o, c.isNull(index) ? null : c.getLong(index));
+                    break;
+                case SHORT:
+                    f.setShort(o, (short) c.getLong(index));
+                    break;
+                case SHORT_OBJECT:
+                    f.set(o, c.isNull(index) ? null : (short) c.getLong(index));
+                    break;
+                case BYTE:
+                    f.setByte(o, (byte) c.getLong(index));
+                    break;
+                case BYTE_OBJECT:
+                    f.set(o, c.isNull(index) ? null : (byte) c.getLong(index));
+                    break;
+                case DOUBLE:
+                    f.setDouble(o, c.getDouble(index));
+                    break;
+                case DOUBLE_OBJECT:
+                    f.set(o, c.isNull(index) ? null : c.getDouble(index));
+                    break;
+                case FLOAT:
+                    f.setFloat(o, (float) c.getDouble(index));
+                    break;
+                case FLOAT_OBJECT:
+                    f.set(o, c.isNull(index) ? null : (float) c.getDouble(index));
+                    break;
+                case BOOLEAN:
+                    f.setBoolean(o, c.getLong(index) == 1);
+                    break;
+                case BOOLEAN_OBJECT:
+                    f.set(o, c.isNull(index) ? null : c.getLong(index) == 1);
+                    break;
+                case BLOB:
+                    f.set(o, c.getBlob(index));
+                    break;
+                case BLOB_OBJECT:
+                    f.set(o, c.isNull(index) ? null : FieldType.box(c.getBlob(index)));
+                    break;
+            }
+        }
+        return o;
+    }
+
+    private T newInstance() throws IllegalAccessException, InstantiationException {
+        if (constructor == null)
+            throw new InstantiationException(type.getName() + " has no default constructor");
+
+        try {
+            return constructor.newInstance();
+        } catch (InvocationTargetException e) {
+            InstantiationException exception = new InstantiationException("Failed to instantiate " + type.getName());
+            exception.initCause(e.getCause());
+            throw exception;
+        }
+    }
+
+    private static final class LayoutKey {
+        private final Class<?> type;
+        private final boolean includePrivateFields;
+        private final String[] columns;
+        private final int hash;
+
+        LayoutKey(Class<?> type, boolean includePrivateFields, String[] columns){
+            this.type = type;
+            this.includePrivateFields = includePrivateFields;
+            this.columns = columns;
+            this.hash = 31 * (31 * type.hashCode() + (includePrivateFields ? 1 : 0)) + Arrays.hashCode(columns);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof LayoutKey)) return false;
+            LayoutKey other = (LayoutKey) o;
+            return type == other.type
+                    && includePrivateFields == other.includePrivateFields
+                    && Arrays.equals(columns, other.columns);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package pk.gov.pbs.database;
+
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import pk.gov.pbs.database.annotations.Default;
+import pk.gov.pbs.database.exceptions.UnsupportedDataType;
+import pk.gov.pbs.utils.ExceptionReporter;
+
+/**
+ * Per table migration of schema on upgrade. Version and create statement of every table are recorded in a catalog table,
+ * on upgrade only the tables whose Table.version or definition differ from catalog are migrated, the rest are not touched.
+ * A table which only gained columns which can be added (not primary key, and nullable or with default) is altered in place,
+ * any other change rebuilds the table, rows are copied in bulk from old table for the columns both versions have.
+ * A row violating the constraints of new schema (i,e a new NOT NULL column without default) fails the copy, exception
+ * propagates out of onUpgrade and whole upgrade is rolled back instead of silently dropping rows. New unique index which
+ * existing rows violate is reported and table is left out of catalog, so it is tried again on next upgrade.
+ * Tables of models which are not in the list anymore are left as they are. One time data migrations, i,e
+ * NativeValueMigration, are recorded in the same catalog under a name with MIGRATION_PREFIX
+ */
+final class SchemaMigration {
+    static final String CATALOG_TABLE = "__model_schema";
+    private static final String OLD_TABLE_PREFIX = "__old_";
+    private static final String MIGRATION_PREFIX = "__migration_";
+
+    private SchemaMigration(){}
+
+    /**
+     * records the schema of given models in catalog, called after tables have been created
+     */
+    static void record(ModelBasedDatabaseHelper helper, SQLiteDatabase db, Class<?>[] models) throws UnsupportedDataType {
+        createCatalog(db);
+        for (Class<?> model : models)
+            updateCatalog(db, ModelMetadata.of(model), getSignature(helper, ModelMetadata.of(model)));
+    }
+
+    static void migrate(ModelBasedDatabaseHelper helper, SQLiteDatabase db, Class<?>[] models) throws UnsupportedDataType {
+        createCatalog(db);
+        Map<String, CatalogEntry> catalog = readCatalog(db);
+
+        for (Class<?> model : models) {
+            ModelMetadata metadata = ModelMetadata.of(model);
+            String signature = getSignature(helper, metadata);
+            CatalogEntry entry = catalog.get(metadata.getTableName().toLowerCase(Locale.US));
+            if (entry != null && entry.version == metadata.getVersion() && entry.signature.equals(signature))
+                continue;
+
+            Map<String, ExistingColumn> existing = getExistingColumns(db, metadata.getTableName());
+            if (existing.isEmpty())
+                helper.createTable(model, db);
+            else if (canAlter(metadata, existing)) {
+                addColumns(db, metadata, existing);
+                if (!syncIndexes(helper, db, metadata))
+                    continue;
+            } else
+                rebuild(helper, db, metadata, existing);
+
+            updateCatalog(db, metadata, signature);
+        }
+    }
+
+    /**
+     * @return true if data migration of given name has been recorded in catalog
+     */
+    static boolean isApplied(SQLiteDatabase db, String migration){
+        createCatalog(db);
+        Cursor c = db.rawQuery("SELECT 1 FROM `" + CATALOG_TABLE + "` WHERE table_name = ?", new String[]{ MIGRATION_PREFIX + migration });
+        boolean applied = c.moveToFirst();
+        c.close();
+        return applied;
+    }
+
+    /**
+     * records data migration of given name in catalog so that it is not applied again
+     */
+    static void markApplied(SQLiteDatabase db, String migration){
+        createCatalog(db);
+        db.execSQL("INSERT OR REPLACE INTO `" + CATALOG_TABLE + "` (table_name, version, signature, updated_at) VALUES (?, ?, ?, ?)",
+                new Object[]{ MIGRATION_PREFIX + migration, 0, null, System.currentTimeMillis() });
+    }
+
+    private static void createCatalog(SQLiteDatabase db){
+        db.execSQL("CREATE TABLE IF NOT EXISTS `" + CATALOG_TABLE + "` (table_name TEXT PRIMARY KEY, version INTEGER, signature TEXT, updated_at INTEGER)");
+    }
+
+    private static Map<String, CatalogEntry> readCatalog(SQLiteDatabase db){
+        Map<String, CatalogEntry> catalog = new HashMap<>();
+        Cursor c = db.rawQuery("SELECT table_name, version, signature FROM `" + CATALOG_TABLE + "`", null);
+        while (c.moveToNext())
+            catalog.put(c.getString(0).toLowerCase(Locale.US), new CatalogEntry(c.getInt(1), c.getString(2)));
+        c.close();
+        return catalog;
+    }
+
+    private static void updateCatalog(SQLiteDatabase db, ModelMetadata metadata, String signature){
+        db.execSQL("INSERT OR REPLACE INTO `" + CATALOG_TABLE + "` (table_name, version, signature, updated_at) VALUES (?, ?, ?, ?)",
+                new Object[]{ metadata.getTableName(), metadata.getVersion(), signature, System.currentTimeMillis() });
+    }
+
+    /**
+     * create statements of table and its indexes, any change in them means the table has to be migrated
+     */
+    private static String getSignature(ModelBasedDatabaseHelper helper, ModelMetadata metadata) throws UnsupportedDataType {
+        StringBuilder sb = new StringBuilder(helper.getCreateTableSql(metadata.getModelClass()));
+        for (String index : helper.getCreateIndexSql(metadata).values())
+            sb.append(';').append(index);
+        return sb.toString();
+    }
+
+    private static Map<String, ExistingColumn> getExistingColumns(SQLiteDatabase db, String table){
+        Map<String, ExistingColumn> columns = new LinkedHashMap<>();
+        Cursor c = db.rawQuery("PRAGMA table_info(`" + table + "`)", null);
+        int name = c.getColumnIndex("name");
+        int type = c.getColumnIndex("type");
+        int notNull = c.getColumnIndex("notnull");
+        int defaultValue = c.getColumnIndex("dflt_value");
+        int pk = c.getColumnIndex("pk");
+        while (c.moveToNext()) {
+            columns.put(c.getString(name), new ExistingColumn(
+                    c.getString(type), c.getInt(notNull) != 0, c.getString(defaultValue), c.getInt(pk) != 0
+            ));
+        }
+        c.close();
+        return columns;
+    }
+
+    /**
+     * @return true if all existing columns are unchanged and every new column can be added with ALTER TABLE
+     */
+    private static boolean canAlter(ModelMetadata metadata, Map<String, ExistingColumn> existing){
+        int matched = 0;
+        for (ModelMetadata.Column column : metadata.getColumns()) {
+            ExistingColumn current = existing.get(column.getName());
+            if (current == null) {
+                if (column.isPrimaryKey() || (column.isNotNull() && column.getDefault() == null))
+                    return false;
+                continue;
+            }
+
+            matched++;
+            if (!current.matches(column))
+                return false;
+        }
+        // columns removed from model can only be dropped by rebuilding the table
+        return matched == existing.size();
+    }
+
+    private static void addColumns(SQLiteDatabase db, ModelMetadata metadata, Map<String, ExistingColumn> existing){
+        for (ModelMetadata.Column column : metadata.getColumns()) {
+            if (existing.containsKey(column.getName()))
+                continue;
+
+            StringBuilder sb = new StringBuilder("ALTER TABLE `")
+                    .append(metadata.getTableName()).append("` ADD COLUMN `")
+                    .append(column.getName()).append('`')
+                    .append(column.getSQLiteType());
+            Default defaultValue = column.getDefault();
+            if (defaultValue != null)
+                sb.append("DEFAULT ").append(quote(defaultValue.value()));
+            if (column.isNotNull())
+                sb.append(" NOT NULL");
+            db.execSQL(sb.toString());
+        }
+    }
+
+    /**
+     * drops the indexes of table which have changed or are no longer declared and creates the missing ones, new
+     * indexes are created on existing rows without rebuilding the table. Indexes not created from model
+     * (name without generated prefix and not declared) are left as they are
+     * @return false if a unique index could not be created because existing rows violate it
+     */
+    private static boolean syncIndexes(ModelBasedDatabaseHelper helper, SQLiteDatabase db, ModelMetadata metadata){
+        Map<String, String> declared = helper.getCreateIndexSql(metadata);
+        Map<String, String> existing = getIndexes(db, metadata.getTableName());
+
+        for (Map.Entry<String, String> index : existing.entrySet()) {
+            String sql = declared.get(index.getKey());
+            if ((sql == null && isGenerated(metadata, index.getKey())) || (sql != null && !sql.trim().equalsIgnoreCase(index.getValue().trim())))
+                db.execSQL("DROP INDEX IF EXISTS `" + index.getKey() + "`");
+        }
+
+        boolean created = true;
+        for (Map.Entry<String, String> index : declared.entrySet()) {
+            String current = existing.get(index.getKey());
+            if (current != null && index.getValue().trim().equalsIgnoreCase(current.trim()))
+                continue;
+
+            try {
+                db.execSQL(index.getValue());
+            } catch (SQLiteConstraintException e) {
+                // existing rows violate new unique key, keep the rows and report missing index
+                ExceptionReporter.handle(e);
+                created = false;
+            }
+        }
+        return created;
+    }
+
+    /**
+     * @return true if index of given name has been created from model, i,e has the prefix of generated names
+     */
+    private static boolean isGenerated(ModelMetadata metadata, String index){
+        String name = index.toLowerCase(Locale.US);
+        String table = metadata.getTableName().toLowerCase(Locale.US);
+        return name.startsWith(table + "_unique_index_") || name.startsWith(table + "_index_");
+    }
+
+    private static Map<String, String> getIndexes(SQLiteDatabase db, String table){
+        Map<String, String> indexes = new HashMap<>();
+        Cursor c = db.rawQuery("SELECT name, sql FROM sqlite_master WHERE type = 'index' AND tbl_name = ? COLLATE NOCASE AND sql IS NOT NULL",
+                new String[]{ table });
+        while (c.moveToNext())
+            indexes.put(c.getString(0), c.getString(1));
+        c.close();
+        return indexes;
+    }
+
+    private static void rebuild(ModelBasedDatabaseHelper helper, SQLiteDatabase db, ModelMetadata metadata, Map<String, ExistingColumn> existing) throws UnsupportedDataType {
+        String table = metadata.getTableName();
+        String oldTable = OLD_TABLE_PREFIX + table;
+
+        // indexes keep their names when table is renamed, drop them so that new table can create its own,
+        // indexes not created from model are created again once rows have been copied
+        Map<String, String> declared = helper.getCreateIndexSql(metadata);
+        List<String> preserved = new ArrayList<>();
+        for (Map.Entry<String, String> index : getIndexes(db, table).entrySet()) {
+            if (!declared.containsKey(index.getKey()) && !isGenerated(metadata, index.getKey()))
+                preserved.add(index.getValue());
+            db.execSQL("DROP INDEX IF EXISTS `" + index.getKey() + "`");
+        }
+        db.execSQL("DROP TABLE IF EXISTS `" + oldTable + "`");
+        db.execSQL("ALTER TABLE `" + table + "` RENAME TO `" + oldTable + "`");
+        helper.createTable(metadata.getModelClass(), db);
+
+        List<String> targets = new ArrayList<>();
+        List<String> sources = new ArrayList<>();
+        for (ModelMetadata.Column column : metadata.getColumns()) {
+            if (!existing.containsKey(column.getName()))
+                continue;
+
+            String col = '`' + column.getName() + '`';
+            targets.add(col);
+            Default defaultValue = column.getDefault();
+            sources.add(column.isNotNull() && defaultValue != null
+                    ? "COALESCE(" + col + ", " + quote(defaultValue.value()) + ")"
+                    : col);
+        }
+
+        // keep row ids unless primary key of new table is the row id itself
+        if (!hasRowIdAlias(metadata)) {
+            targets.add("rowid");
+            sources.add("rowid");
+        }
+
+        if (!targets.isEmpty()) {
+            String copy = "INSERT INTO `" + table + "` (" + join(targets) + ") SELECT " + join(sources) + " FROM `" + oldTable + "`";
+            db.execSQL(copy);
+        }
+        db.execSQL("DROP TABLE `" + oldTable + "`");
+
+        for (String sql : preserved) {
+            try {
+                db.execSQL(sql);
+            } catch (SQLException e) {
+                // index refers to a column which is no longer in table
+                ExceptionReporter.handle(e);
+            }
+        }
+    }
+
+    private static boolean hasRowIdAlias(ModelMetadata metadata){
+        List<ModelMetadata.Column> pk = metadata.getPrimaryKeyColumns();
+        if (pk.size() != 1)
+            return false;
+        String type = pk.get(0).getSQLiteType();
+        return type != null && type.trim().equals("INTEGER");
+    }
+
+    private static String join(List<String> values){
+        StringBuilder sb = new StringBuilder();
+        for (String value : values) {
+            if (sb.length() > 0)
+                sb.append(", ");
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+
+    private static String quote(String value){
+        return '\'' + value.replace("'", "''") + '\'';
+    }
+
+    private static final class CatalogEntry {
+        private final int version;
+        private final String signature;
+
+        CatalogEntry(int version, String signature){
+            this.version = version;
+            this.signature = signature == null ? "" : signature;
+        }
+    }
+
+    private static final class ExistingColumn {
+        private final String type;
+        private final boolean notNull;
+        private final String defaultValue;
+        private final boolean primaryKey;
+
+        ExistingColumn(String type, boolean notNull, String defaultValue, boolean primaryKey){
+            this.type = type == null ? "" : type.trim();
+            this.notNull = notNull;
+            this.defaultValue = defaultValue;
+            this.primaryKey = primaryKey;
+        }
+
+        boolean matches(ModelMetadata.Column column){
+            String declaredType = column.getSQLiteType() == null ? "" : column.getSQLiteType().trim();
+            Default declaredDefault = column.getDefault();
+            String declaredDefaultValue = declaredDefault == null ? null : quote(declaredDefault.value());
+            return type.equalsIgnoreCase(declaredType)
+                    && notNull == column.isNotNull()
+                    && primaryKey == column.isPrimaryKey()
+                    && (defaultValue == null ? declaredDefaultValue == null : defaultValue.equals(declaredDefaultValue));
+        }
+    }
+}
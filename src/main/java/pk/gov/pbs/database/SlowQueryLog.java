@@ -0,0 +1,323 @@
+package pk.gov.pbs.database;
+
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import pk.gov.pbs.utils.ExceptionReporter;
+
+/**
+ * Log of queries which took longer than the threshold, kept in a bounded ring buffer so that the oldest entries are
+ * overwritten once it is full. Every entry has the sql, number of arguments, number of rows, duration and the caller
+ * outside of this library. The first time a statement shape (sql with literals replaced by ?) is slow its
+ * EXPLAIN QUERY PLAN is captured, and full table scans and temporary b-tree sorts in it are flagged, plan is shared
+ * by later entries of the same shape. Enable with ModelBasedDatabaseHelper.enableSlowQueryLog(long, int)
+ */
+public final class SlowQueryLog {
+    private static final int MAX_SHAPES = 256;
+    private static final String LIBRARY_PACKAGE = "pk.gov.pbs.database.";
+
+    private final long thresholdNanos;
+    private final Entry[] entries;
+    private int next;
+    private int size;
+    private long recorded;
+    private final Map<String, Plan> plans = new LinkedHashMap<String, Plan>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Plan> eldest) {
+            return size() > MAX_SHAPES;
+        }
+    };
+
+    /**
+     * @param thresholdMillis queries taking longer than this are logged
+     * @param capacity maximum number of entries kept
+     */
+    public SlowQueryLog(long thresholdMillis, int capacity){
+        if (thresholdMillis < 0)
+            throw new IllegalArgumentException("Threshold can not be negative");
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.entries = new Entry[capacity];
+    }
+
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    public boolean isSlow(long durationNanos){
+        return durationNanos >= thresholdNanos;
+    }
+
+    /**
+     * records the query if its duration is over the threshold, plan is captured on given database when
+     * the shape of query is slow for the first time
+     * @param db database query was executed on
+     * @param sql sql of query
+     * @param args selection arguments of query
+     * @param rows number of rows returned
+     * @param durationNanos time taken by query including reading its rows
+     */
+    void record(SQLiteDatabase db, String sql, String[] args, int rows, long durationNanos){
+        if (!isSlow(durationNanos))
+            return;
+
+        String shape = getShape(sql);
+        Plan plan;
+        synchronized (this) {
+            plan = plans.get(shape);
+        }
+        if (plan == null) {
+            plan = explain(db, sql, args);
+            synchronized (this) {
+                plans.put(shape, plan);
+            }
+        }
+
+        Entry entry = new Entry(sql, args == null ? 0 : args.length, rows,
+                TimeUnit.NANOSECONDS.toMillis(durationNanos), getCaller(), System.currentTimeMillis(), plan);
+        synchronized (this) {
+            entries[next] = entry;
+            next = (next + 1) % entries.length;
+            if (size < entries.length)
+                size++;
+            recorded++;
+        }
+    }
+
+    /**
+     * @return logged entries, oldest first
+     */
+    @NonNull
+    public synchronized List<Entry> getEntries(){
+        List<Entry> result = new ArrayList<>(size);
+        int first = (next - size + entries.length) % entries.length;
+        for (int i = 0; i < size; i++)
+            result.add(entries[(first + i) % entries.length]);
+        return result;
+    }
+
+    /**
+     * @return number of slow queries recorded since creation or last clear, including the ones overwritten
+     */
+    public synchronized long getRecordedCount() {
+        return recorded;
+    }
+
+    /**
+     * removes all the entries and captured plans
+     */
+    public synchronized void clear(){
+        for (int i = 0; i < entries.length; i++)
+            entries[i] = null;
+        next = 0;
+        size = 0;
+        recorded = 0;
+        plans.clear();
+    }
+
+    /**
+     * @return entries as json array, oldest first, i,e for sending along with crash or sync reports
+     */
+    @NonNull
+    public String export(){
+        return new Gson().toJson(getEntries());
+    }
+
+    /**
+     * sql with whitespace collapsed and string and numeric literals replaced by ?, so that same statement
+     * built with different values is explained only once
+     */
+    static String getShape(String sql){
+        StringBuilder sb = new StringBuilder(sql.length());
+        int i = 0;
+        while (i < sql.length()) {
+            char ch = sql.charAt(i);
+            if (ch == '\'') {
+                i++;
+                while (i < sql.length()) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'')
+                            i++;
+                        else
+                            break;
+                    }
+                    i++;
+                }
+                sb.append('?');
+                i++;
+            } else if (Character.isDigit(ch) && (sb.length() == 0 || !isIdentifierPart(sb.charAt(sb.length() - 1)))) {
+                while (i < sql.length() && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.'))
+                    i++;
+                sb.append('?');
+            } else if (Character.isWhitespace(ch)) {
+                while (i < sql.length() && Character.isWhitespace(sql.charAt(i)))
+                    i++;
+                if (sb.length() > 0 && i < sql.length())
+                    sb.append(' ');
+            } else {
+                sb.append(ch);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isIdentifierPart(char ch){
+        return Character.isLetterOrDigit(ch) || ch == '_' || ch == '`' || ch == '"' || ch == ']';
+    }
+
+    private static Plan explain(SQLiteDatabase db, String sql, String[] args){
+        StringBuilder plan = new StringBuilder();
+        boolean fullScan = false;
+        boolean tempBTree = false;
+        try {
+            Cursor c = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+            try {
+                int detail = c.getColumnIndex("detail");
+                while (c.moveToNext()) {
+                    String step = c.getString(detail);
+                    if (step == null)
+                        continue;
+                    if (plan.length() > 0)
+                        plan.append('\n');
+                    plan.append(step);
+
+                    // SCAN TABLE t on older versions and SCAN t on 3.36 and above, scan of an index is not a full scan
+                    String upper = step.trim().toUpperCase(Locale.US);
+                    if (upper.startsWith("SCAN ") && !upper.contains(" INDEX") && !upper.contains("CONSTANT ROW"))
+                        fullScan = true;
+                    if (upper.contains("USE TEMP B-TREE"))
+                        tempBTree = true;
+                }
+            } finally {
+                c.close();
+            }
+        } catch (SQLException e) {
+            // statements like PRAGMA can not be explained, keep the entry without plan
+            ExceptionReporter.handle(e);
+            return new Plan(null, false, false);
+        }
+        return new Plan(plan.toString(), fullScan, tempBTree);
+    }
+
+    /**
+     * first frame of the stack which is not in this library or in the executors running it
+     */
+    private static String getCaller(){
+        StackTraceElement[] stack = new Throwable().getStackTrace();
+        for (StackTraceElement element : stack) {
+            String cls = element.getClassName();
+            if (cls.startsWith(LIBRARY_PACKAGE) || cls.startsWith("java.") || cls.startsWith("android.") || cls.startsWith("dalvik."))
+                continue;
+            return element.toString();
+        }
+        return stack.length > 0 ? stack[stack.length - 1].toString() : null;
+    }
+
+    private static final class Plan {
+        private final String detail;
+        private final boolean fullScan;
+        private final boolean tempBTree;
+
+        Plan(String detail, boolean fullScan, boolean tempBTree){
+            this.detail = detail;
+            this.fullScan = fullScan;
+            this.tempBTree = tempBTree;
+        }
+    }
+
+    public static final class Entry {
+        private final String sql;
+        private final int argCount;
+        private final int rows;
+        private final long durationMillis;
+        private final String caller;
+        private final long timestamp;
+        private final String plan;
+        private final boolean fullScan;
+        private final boolean tempBTree;
+
+        Entry(String sql, int argCount, int rows, long durationMillis, String caller, long timestamp, Plan plan){
+            this.sql = sql;
+            this.argCount = argCount;
+            this.rows = rows;
+            this.durationMillis = durationMillis;
+            this.caller = caller;
+            this.timestamp = timestamp;
+            this.plan = plan.detail;
+            this.fullScan = plan.fullScan;
+            this.tempBTree = plan.tempBTree;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public int getArgCount() {
+            return argCount;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        /**
+         * @return stack frame of the code which executed the query, outside of this library
+         */
+        @Nullable
+        public String getCaller() {
+            return caller;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return steps of EXPLAIN QUERY PLAN one per line, null if query could not be explained
+         */
+        @Nullable
+        public String getPlan() {
+            return plan;
+        }
+
+        /**
+         * @return true if plan has a full scan of a table
+         */
+        public boolean isFullScan() {
+            return fullScan;
+        }
+
+        /**
+         * @return true if plan sorts or groups rows in a temporary b-tree, i,e ORDER BY column without index
+         */
+        public boolean isTempBTree() {
+            return tempBTree;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return durationMillis + "ms " + rows + " rows" + (fullScan ? " [SCAN]" : "") + (tempBTree ? " [TEMP B-TREE]" : "")
+                    + " " + sql + (caller != null ? " at " + caller : "");
+        }
+    }
+}
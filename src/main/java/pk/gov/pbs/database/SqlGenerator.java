@@ -1,19 +1,12 @@
 package pk.gov.pbs.database;
 
-import com.google.gson.annotations.SerializedName;
-
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 
 import pk.gov.pbs.database.annotations.Default;
-import pk.gov.pbs.database.annotations.NotNull;
 import pk.gov.pbs.database.annotations.SqlDataType;
-import pk.gov.pbs.database.annotations.SqlExclude;
 import pk.gov.pbs.database.annotations.SqlPrimaryKey;
-import pk.gov.pbs.database.annotations.Table;
 import pk.gov.pbs.database.annotations.Unique;
 
 public class SqlGenerator {
@@ -91,9 +84,8 @@ public class SqlGenerator {
 
         }
 
-        Table table = modelClass.getAnnotation(Table.class);
-        String tableName = (table != null && !table.name().isEmpty()) ? makeStringTableWithSchema(table.name())
-                : makeStringTableWithSchema(modelClass.getSimpleName());
+        ModelMetadata metadata = ModelMetadata.of(modelClass);
+        String tableName = makeStringTableWithSchema(metadata.getDeclaredTableName());
 
         queryBuilder.
                 append("DROP TABLE IF EXISTS ").
@@ -103,56 +95,54 @@ public class SqlGenerator {
                 append(tableName).
                 append(" (\n");
 
-        for (Field field : modelClass.getFields()){
-            SerializedName name = field.getAnnotation(SerializedName.class);
-            SqlPrimaryKey pk = field.getAnnotation(SqlPrimaryKey.class);
-            Unique uAno = field.getAnnotation(Unique.class);
-            SqlDataType type = field.getAnnotation(SqlDataType.class);
-            SqlExclude exclude = field.getAnnotation(SqlExclude.class);
+        for (ModelMetadata.Column column : metadata.getColumns()){
+            SqlPrimaryKey pk = column.getSqlPrimaryKey();
+            Unique uAno = column.getUnique();
+            SqlDataType type = column.getSqlDataType();
 
-            if (exclude != null)
+            if (column.isSqlExcluded())
                 continue;
 
-            if (Modifier.isPublic(field.getModifiers()) || Modifier.isProtected(field.getModifiers())) {
-                //COLUMN NAME
-                queryBuilder.append((name == null) ? enCap(field.getName()) : enCap(name.value()));
-
-                //COLUMN DATA TYPE
-                queryBuilder.append(' ')
-                        .append((type==null) ? getSqlDataTypeFrom(field.getType()) : type.value());
-
-                // set identity params if pk
-                if (pk != null){
-                    if (pk.autogenerate()) {
-                        queryBuilder.
-                                append(" IDENTITY(").
-                                append(pk.seed()).
-                                append(",").
-                                append(pk.increment()).
-                                append(") NOT NULL,\n");
-                    } else
-                        queryBuilder.append(" NOT NULL,\n");
-                    primaryKeyConstraint.add((name == null) ? enCap(field.getName()) : enCap(name.value()));
-                    continue;
-                }
+            String columnName = enCap(column.getSerializedName());
+
+            //COLUMN NAME
+            queryBuilder.append(columnName);
 
-                //COLUMN NULLITY
-                queryBuilder.append(field.getAnnotation(NotNull.class) == null ? " NULL" : " NOT NULL");
+            //COLUMN DATA TYPE
+            queryBuilder.append(' ')
+                    .append((type==null) ? getSqlDataTypeFrom(column.getType()) : type.value());
 
-                //COLUMN DEFAULT VALUE
-                Default aDefault = field.getAnnotation(Default.class);
-                if (aDefault != null){
-                    queryBuilder.append(" DEFAULT '").append(aDefault.value()).append("',\n");
+            // set identity params if pk
+            if (pk != null){
+                if (pk.autogenerate()) {
+                    queryBuilder.
+                            append(" IDENTITY(").
+                            append(pk.seed()).
+                            append(",").
+                            append(pk.increment()).
+                            append(") NOT NULL,\n");
                 } else
-                    queryBuilder.append(",\n");
+                    queryBuilder.append(" NOT NULL,\n");
+                primaryKeyConstraint.add(columnName);
+                continue;
             }
 
+            //COLUMN NULLITY
+            queryBuilder.append(column.isNotNull() ? " NOT NULL" : " NULL");
+
+            //COLUMN DEFAULT VALUE
+            Default aDefault = column.getDefault();
+            if (aDefault != null){
+                queryBuilder.append(" DEFAULT '").append(aDefault.value()).append("',\n");
+            } else
+                queryBuilder.append(",\n");
+
             if (uAno != null){
                 if (uniqueConstraint.containsKey(uAno.index())){
-                    uniqueConstraint.get(uAno.index()).add((name == null) ? enCap(field.getName()) : enCap(name.value()));
+                    uniqueConstraint.get(uAno.index()).add(columnName);
                 } else {
                     ArrayList<String> cols = new ArrayList<>();
-                    cols.add((name == null) ? enCap(field.getName()) : enCap(name.value()));
+                    cols.add(columnName);
                     uniqueConstraint.put(uAno.index(), cols);
                 }
             }
@@ -204,9 +194,56 @@ public class SqlGenerator {
                 deleteCharAt(queryBuilder.lastIndexOf(",")).
                 append(") ON [PRIMARY] \nGO\n");
 
+        for (ModelMetadata.IndexDefinition index : metadata.getIndexes())
+            queryBuilder.append('\n').append(generateSqlCreateIndex(tableName, index));
+
         return queryBuilder.toString();
     }
 
+    /**
+     * create statement of nonclustered index declared with Index annotation, columns of index which are excluded
+     * from SQL Server table are skipped
+     * @param tableName name of table with schema
+     * @param index index of model
+     * @return create index statement followed by GO, empty if all key columns are excluded
+     */
+    public String generateSqlCreateIndex(String tableName, ModelMetadata.IndexDefinition index) {
+        StringBuilder queryBuilder = new StringBuilder("CREATE ");
+        if (index.isUnique())
+            queryBuilder.append("UNIQUE ");
+        queryBuilder.
+                append("NONCLUSTERED INDEX ").
+                append(enCap(index.getName())).
+                append(" ON ").
+                append(tableName).
+                append(" (\n");
+
+        int keys = 0;
+        for (int i = 0; i < index.getColumns().size(); i++){
+            ModelMetadata.Column column = index.getColumns().get(i);
+            if (column.isSqlExcluded())
+                continue;
+            keys++;
+            queryBuilder.
+                    append(enCap(column.getSerializedName())).
+                    append(index.isDescending(i) ? " DESC, " : " ASC, ");
+        }
+        if (keys == 0)
+            return "";
+        queryBuilder.delete(queryBuilder.length() - 2, queryBuilder.length()).append("\n)");
+
+        StringBuilder include = new StringBuilder();
+        for (ModelMetadata.Column column : index.getInclude()){
+            if (column.isSqlExcluded() || index.getColumns().contains(column))
+                continue;
+            include.append(include.length() == 0 ? "" : ", ").append(enCap(column.getSerializedName()));
+        }
+        if (include.length() > 0)
+            queryBuilder.append(" INCLUDE (").append(include).append(")");
+
+        return index.appendWhere(queryBuilder, true).append("\nGO\n").toString();
+    }
+
     public static String generateSqlFromModels(Class<?>[] models) {
         HashSet<Class<?>> tableSet = new HashSet<>();
         SqlGenerator generator = new SqlGenerator();
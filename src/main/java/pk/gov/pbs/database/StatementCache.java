@@ -0,0 +1,141 @@
+package pk.gov.pbs.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Least recently used cache of compiled statements for the queries which return single value, keyed by sql.
+ * Scalar queries are executed with simpleQueryForLong or simpleQueryForString which step only to the first row,
+ * instead of opening a cursor which fills a whole CursorWindow. Bindings are part of statement so each statement
+ * is used by one thread at a time, statement evicted while in use is closed after the use is over and the next
+ * caller compiles its own
+ */
+final class StatementCache {
+    private static final Object NULL_VALUE = new Object();
+
+    private final int capacity;
+    private final LinkedHashMap<String, Entry> statements;
+    private final List<Entry> evicted = new ArrayList<>();
+    private SQLiteDatabase database;
+
+    StatementCache(int capacity){
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= StatementCache.this.capacity)
+                    return false;
+                evicted.add(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return value of first column of first row, null if query returned no row
+     */
+    Long queryForLong(SQLiteDatabase db, String sql, String[] args){
+        return (Long) query(db, sql, args, false);
+    }
+
+    /**
+     * @return value of first column of first row as text, null if query returned no row or value is null
+     */
+    String queryForString(SQLiteDatabase db, String sql, String[] args){
+        Object result = query(db, sql, args, true);
+        return result == NULL_VALUE ? null : (String) result;
+    }
+
+    private Object query(SQLiteDatabase db, String sql, String[] args, boolean asString){
+        Entry entry = get(db, sql);
+        synchronized (entry) {
+            if (!entry.closed)
+                return execute(entry.statement, args, asString);
+        }
+
+        SQLiteStatement statement = db.compileStatement(sql);
+        try {
+            return execute(statement, args, asString);
+        } finally {
+            statement.close();
+        }
+    }
+
+    private Entry get(SQLiteDatabase db, String sql){
+        Entry entry;
+        List<Entry> closing = null;
+        synchronized (this) {
+            if (db != database) {
+                evicted.addAll(statements.values());
+                statements.clear();
+                database = db;
+            }
+
+            entry = statements.get(sql);
+            if (entry == null) {
+                entry = new Entry(db.compileStatement(sql));
+                statements.put(sql, entry);
+            }
+
+            if (!evicted.isEmpty()) {
+                closing = new ArrayList<>(evicted);
+                evicted.clear();
+            }
+        }
+
+        // evicted statements may be in use by other threads, close them outside of the lock
+        if (closing != null) {
+            for (Entry e : closing)
+                e.close();
+        }
+        return entry;
+    }
+
+    private static Object execute(SQLiteStatement statement, String[] args, boolean asString){
+        statement.clearBindings();
+        if (args != null)
+            statement.bindAllArgsAsStrings(args);
+        try {
+            if (!asString)
+                return statement.simpleQueryForLong();
+            String value = statement.simpleQueryForString();
+            return value == null ? NULL_VALUE : value;
+        } catch (SQLiteDoneException e) {
+            return null;
+        } finally {
+            statement.clearBindings();
+        }
+    }
+
+    /**
+     * closes all the cached statements, must be called before database is closed
+     */
+    synchronized void clear(){
+        for (Entry entry : statements.values())
+            entry.close();
+        statements.clear();
+        database = null;
+    }
+
+    private static final class Entry {
+        private final SQLiteStatement statement;
+        private boolean closed;
+
+        Entry(SQLiteStatement statement){
+            this.statement = statement;
+        }
+
+        synchronized void close(){
+            if (!closed) {
+                closed = true;
+                statement.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package pk.gov.pbs.database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import pk.gov.pbs.database.storage.StorageConnection;
+import pk.gov.pbs.database.storage.StorageStatement;
+
+/**
+ * Update statement of a model by primary key compiled once and executed for every object of that model,
+ * values of given columns are bound straight from fields of object followed by the values of primary key columns.
+ * Statement can be shared by threads, executions are serialized and closed statement is never executed
+ */
+final class UpdateStatement {
+    private final StorageStatement statement;
+    private final List<ModelMetadata.Column> bound;
+    private boolean closed;
+
+    /**
+     * @param connection connection to compile statement on
+     * @param modelClass model class, it must pass validate(Class, List)
+     * @param columns columns to update, primary key columns are never updated
+     */
+    UpdateStatement(StorageConnection connection, Class<?> modelClass, List<ModelMetadata.Column> columns) {
+        String error = validate(modelClass, columns);
+        if (error != null)
+            throw new IllegalArgumentException(error);
+
+        ModelMetadata metadata = ModelMetadata.of(modelClass);
+        List<ModelMetadata.Column> pk = metadata.getPrimaryKeyColumns();
+        List<ModelMetadata.Column> assigned = getAssigned(columns);
+        this.bound = new ArrayList<>(assigned);
+        bound.addAll(pk);
+
+        StringBuilder sb = new StringBuilder("UPDATE `").append(metadata.getTableName()).append("` SET ");
+        for (int i = 0; i < assigned.size(); i++)
+            sb.append(i == 0 ? "`" : ",`").append(assigned.get(i).getName()).append("`=?");
+        sb.append(" WHERE ");
+        for (int i = 0; i < pk.size(); i++)
+            sb.append(i == 0 ? "`" : " AND `").append(pk.get(i).getName()).append("`=?");
+        this.statement = connection.prepare(sb.toString());
+    }
+
+    /**
+     * checks whether update statement can be made for given columns of model, callers report the
+     * returned message with exception type of their platform
+     * @return message of error, null if statement can be made
+     */
+    static String validate(Class<?> modelClass, List<ModelMetadata.Column> columns) {
+        if (ModelMetadata.of(modelClass).getPrimaryKeyColumns().isEmpty())
+            return "Model " + modelClass.getSimpleName() + " has no primary key, Can not proceed to update record";
+        if (getAssigned(columns).isEmpty())
+            return "No column to update in model " + modelClass.getSimpleName();
+        return null;
+    }
+
+    private static List<ModelMetadata.Column> getAssigned(List<ModelMetadata.Column> columns) {
+        List<ModelMetadata.Column> assigned = new ArrayList<>();
+        for (ModelMetadata.Column column : columns) {
+            if (!column.isPrimaryKey())
+                assigned.add(column);
+        }
+        return assigned;
+    }
+
+    /**
+     * binds values of given model and executes the statement
+     * @param model object of model this statement was compiled for
+     * @return number of rows updated, -1 if statement has been closed
+     * @throws IllegalAccessException in case a field could not be read
+     */
+    synchronized int execute(Object model) throws IllegalAccessException {
+        if (closed)
+            return -1;
+        bind(model);
+        return statement.executeUpdateDelete();
+    }
+
+    /**
+     * binds values of given model and adds them to the batch of statement
+     * @param model object of model this statement was compiled for
+     * @throws IllegalAccessException in case a field could not be read
+     * @see StorageStatement#addBatch()
+     */
+    synchronized void addBatch(Object model) throws IllegalAccessException {
+        bind(model);
+        statement.addBatch();
+    }
+
+    /**
+     * @return number of rows updated by each object added since last call
+     */
+    synchronized int[] executeBatch() {
+        return statement.executeBatch();
+    }
+
+    private void bind(Object model) throws IllegalAccessException {
+        statement.clearBindings();
+        for (int i = 0; i < bound.size(); i++)
+            ValueBinder.bind(statement, i + 1, bound.get(i), model);
+    }
+
+    synchronized void close(){
+        if (!closed) {
+            closed = true;
+            statement.close();
+        }
+    }
+}
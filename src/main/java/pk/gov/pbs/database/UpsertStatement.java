@@ -0,0 +1,152 @@
+package pk.gov.pbs.database;
+
+import android.database.SQLException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import pk.gov.pbs.database.storage.StorageConnection;
+import pk.gov.pbs.database.storage.StorageStatement;
+import pk.gov.pbs.utils.ExceptionReporter;
+
+/**
+ * Insert or update statement of a model compiled once and executed for every object of that model. Existing row is
+ * matched by conflict target, which is the primary key if it is not autogenerated, otherwise the first group of Unique
+ * columns. Unlike REPLACE the matched row is updated in place, so its row id, other columns and indexes on unchanged
+ * columns are kept. On SQLite 3.24 and above it is a single INSERT ... ON CONFLICT DO UPDATE, on older versions it is
+ * a compiled UPDATE followed by INSERT when no row was updated, both must run in one transaction
+ */
+final class UpsertStatement {
+    private final ModelAdapter<Object> adapter;
+    private final List<ModelMetadata.Column> insertColumns;
+    private final StorageStatement upsert;
+    private final StorageStatement update;
+    private final List<ModelMetadata.Column> updateColumns;
+    private final InsertStatement insert;
+
+    @SuppressWarnings("unchecked")
+    UpsertStatement(StorageConnection connection, Class<?> modelClass, boolean nativeUpsert) throws SQLException {
+        ModelMetadata metadata = ModelMetadata.of(modelClass);
+        List<ModelMetadata.Column> target = getConflictTarget(metadata);
+        if (target.isEmpty())
+            throw new SQLException("Model " + modelClass.getSimpleName() + " has neither primary key nor unique key, Can not upsert");
+
+        this.adapter = (ModelAdapter<Object>) ModelAdapters.get(modelClass);
+        this.insertColumns = metadata.getColumns();
+        String[] columnNames = adapter != null ? adapter.getColumnNames() : metadata.getColumnNames();
+
+        // columns of conflict target identify the row and autogenerated ids must stay as they are
+        List<ModelMetadata.Column> assigned = new ArrayList<>();
+        for (ModelMetadata.Column column : metadata.getColumns()) {
+            if (!target.contains(column) && !column.isAutogenerate())
+                assigned.add(column);
+        }
+
+        if (nativeUpsert) {
+            this.upsert = connection.prepare(getUpsertSql(metadata.getTableName(), columnNames, target, assigned));
+            this.update = null;
+            this.updateColumns = null;
+            this.insert = null;
+        } else {
+            List<ModelMetadata.Column> bound = new ArrayList<>(assigned);
+            bound.addAll(target);
+            this.upsert = null;
+            this.update = assigned.isEmpty() ? null : connection.prepare(getUpdateSql(metadata.getTableName(), assigned, target));
+            this.updateColumns = bound;
+            this.insert = assigned.isEmpty()
+                    ? new InsertStatement(connection, modelClass, ConflictMode.IGNORE)
+                    : new InsertStatement(connection, modelClass, ConflictMode.NONE);
+        }
+    }
+
+    /**
+     * @return primary key columns if none of them is autogenerated, otherwise columns of first unique key
+     */
+    static List<ModelMetadata.Column> getConflictTarget(ModelMetadata metadata){
+        List<ModelMetadata.Column> pk = metadata.getPrimaryKeyColumns();
+        boolean autogenerated = false;
+        for (ModelMetadata.Column column : pk)
+            autogenerated |= column.isAutogenerate();
+
+        if (!pk.isEmpty() && !autogenerated)
+            return pk;
+
+        for (Map.Entry<String, List<ModelMetadata.Column>> unique : metadata.getUniqueKeys().entrySet())
+            return unique.getValue();
+        return pk;
+    }
+
+    static String getUpsertSql(String table, String[] columns, List<ModelMetadata.Column> target, List<ModelMetadata.Column> assigned){
+        StringBuilder sb = new StringBuilder(ModelStore.getInsertSql(table, columns, ConflictMode.NONE))
+                .append(" ON CONFLICT(");
+        for (int i = 0; i < target.size(); i++)
+            sb.append(i == 0 ? "`" : ",`").append(target.get(i).getName()).append('`');
+        sb.append(')');
+
+        if (assigned.isEmpty())
+            return sb.append(" DO NOTHING").toString();
+
+        sb.append(" DO UPDATE SET ");
+        for (int i = 0; i < assigned.size(); i++) {
+            String name = assigned.get(i).getName();
+            sb.append(i == 0 ? "`" : ",`").append(name).append("`=excluded.`").append(name).append('`');
+        }
+        return sb.toString();
+    }
+
+    static String getUpdateSql(String table, List<ModelMetadata.Column> assigned, List<ModelMetadata.Column> target){
+        StringBuilder sb = new StringBuilder("UPDATE `").append(table).append("` SET ");
+        for (int i = 0; i < assigned.size(); i++)
+            sb.append(i == 0 ? "`" : ",`").append(assigned.get(i).getName()).append("`=?");
+        sb.append(" WHERE ");
+        for (int i = 0; i < target.size(); i++)
+            sb.append(i == 0 ? "`" : " AND `").append(target.get(i).getName()).append("`=?");
+        return sb.toString();
+    }
+
+    /**
+     * inserts the object or updates the row it conflicts with
+     * @param model object of model this statement was compiled for
+     * @return number of rows inserted or updated
+     * @throws SQLException in case of constraint violation (other than on conflict target) or other errors from SQLite
+     */
+    int execute(Object model) throws SQLException {
+        if (upsert != null) {
+            upsert.clearBindings();
+            if (adapter != null)
+                adapter.bind(upsert, model);
+            else
+                bind(upsert, insertColumns, model);
+            return upsert.executeUpdateDelete();
+        }
+
+        if (update != null) {
+            update.clearBindings();
+            bind(update, updateColumns, model);
+            int updated = update.executeUpdateDelete();
+            if (updated > 0)
+                return updated;
+        }
+        return insert.execute(model) == -1 ? 0 : 1;
+    }
+
+    private static void bind(StorageStatement statement, List<ModelMetadata.Column> columns, Object model){
+        for (int i = 0; i < columns.size(); i++) {
+            try {
+                ValueBinder.bind(statement, i + 1, columns.get(i), model);
+            } catch (IllegalAccessException e) {
+                ExceptionReporter.handle(e);
+            }
+        }
+    }
+
+    void close(){
+        if (upsert != null)
+            upsert.close();
+        if (update != null)
+            update.close();
+        if (insert != null)
+            insert.close();
+    }
+}
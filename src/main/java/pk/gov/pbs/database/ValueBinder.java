@@ -0,0 +1,155 @@
+package pk.gov.pbs.database;
+
+import android.content.ContentValues;
+
+import java.lang.reflect.Field;
+
+import pk.gov.pbs.database.storage.StorageStatement;
+
+/**
+ * Writes field values of models in their native SQLite storage class, integral types are written
+ * as INTEGER, floating point types as REAL, booleans as 0 or 1, byte arrays as BLOB and characters as TEXT.
+ * Primitive fields are read with typed getters so binding them to statement does not box or allocate
+ */
+public final class ValueBinder {
+    private ValueBinder(){}
+
+    /**
+     * binds value of given column from model to statement
+     * @param statement compiled statement
+     * @param index index of bind argument (1 based)
+     * @param column column of which value is bound
+     * @param model object of model
+     * @throws IllegalAccessException in case field is not accessible
+     */
+    public static void bind(StorageStatement statement, int index, ModelMetadata.Column column, Object model) throws IllegalAccessException {
+        Field f = column.getField();
+        switch (column.getFieldType()) {
+            case INT:
+                statement.bindLong(index, f.getInt(model));
+                return;
+            case LONG:
+                statement.bindLong(index, f.getLong(model));
+                return;
+            case SHORT:
+                statement.bindLong(index, f.getShort(model));
+                return;
+            case BYTE:
+                statement.bindLong(index, f.getByte(model));
+                return;
+            case DOUBLE:
+                statement.bindDouble(index, f.getDouble(model));
+                return;
+            case FLOAT:
+                statement.bindDouble(index, f.getFloat(model));
+                return;
+            case BOOLEAN:
+                statement.bindLong(index, f.getBoolean(model) ? 1 : 0);
+                return;
+            case CHAR:
+                statement.bindString(index, String.valueOf(f.getChar(model)));
+                return;
+        }
+        bindValue(statement, index, column.getFieldType(), f.get(model));
+    }
+
+    /**
+     * binds given value to statement according to type of field
+     * @param statement compiled statement
+     * @param index index of bind argument (1 based)
+     * @param type type of field the value is taken from
+     * @param value value to bind, may be null
+     */
+    public static void bindValue(StorageStatement statement, int index, FieldType type, Object value){
+        if (value == null) {
+            statement.bindNull(index);
+            return;
+        }
+
+        switch (type) {
+            case INT:
+            case INTEGER:
+            case LONG:
+            case LONG_OBJECT:
+            case SHORT:
+            case SHORT_OBJECT:
+            case BYTE:
+            case BYTE_OBJECT:
+                statement.bindLong(index, ((Number) value).longValue());
+                break;
+            case DOUBLE:
+            case DOUBLE_OBJECT:
+            case FLOAT:
+            case FLOAT_OBJECT:
+                statement.bindDouble(index, ((Number) value).doubleValue());
+                break;
+            case BOOLEAN:
+            case BOOLEAN_OBJECT:
+                statement.bindLong(index, (Boolean) value ? 1 : 0);
+                break;
+            case BLOB:
+                statement.bindBlob(index, (byte[]) value);
+                break;
+            case BLOB_OBJECT:
+                statement.bindBlob(index, FieldType.unbox((Byte[]) value));
+                break;
+            default:
+                statement.bindString(index, type.toText(value));
+        }
+    }
+
+    /**
+     * puts value of given column from model into content values
+     * @param values content values
+     * @param column column of which value is put
+     * @param model object of model
+     * @throws IllegalAccessException in case field is not accessible
+     */
+    public static void put(ContentValues values, ModelMetadata.Column column, Object model) throws IllegalAccessException {
+        String key = column.getName();
+        Object value = column.get(model);
+        if (value == null) {
+            values.putNull(key);
+            return;
+        }
+
+        switch (column.getFieldType()) {
+            case INT:
+            case INTEGER:
+                values.put(key, (Integer) value);
+                break;
+            case LONG:
+            case LONG_OBJECT:
+                values.put(key, (Long) value);
+                break;
+            case SHORT:
+            case SHORT_OBJECT:
+                values.put(key, (Short) value);
+                break;
+            case BYTE:
+            case BYTE_OBJECT:
+                values.put(key, (Byte) value);
+                break;
+            case DOUBLE:
+            case DOUBLE_OBJECT:
+                values.put(key, (Double) value);
+                break;
+            case FLOAT:
+            case FLOAT_OBJECT:
+                values.put(key, (Float) value);
+                break;
+            case BOOLEAN:
+            case BOOLEAN_OBJECT:
+                values.put(key, (Boolean) value ? 1 : 0);
+                break;
+            case BLOB:
+                values.put(key, (byte[]) value);
+                break;
+            case BLOB_OBJECT:
+                values.put(key, FieldType.unbox((Byte[]) value));
+                break;
+            default:
+                values.put(key, column.getFieldType().toText(value));
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package pk.gov.pbs.database.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Secondary index of table, declared on model class (use Indexes to declare more than one).
+ * columns are names of fields in index order, optionally followed by ASC or DESC i,e {"surveyId", "createdAt DESC"}.
+ * where makes it partial index (SQLite 3.8 and above, so API 21 and above on Android) and refers to columns by
+ * field names, SqlGenerator replaces them with their serialized names. include adds covering columns, which are
+ * appended to the key of SQLite index and emitted as INCLUDE for SQL Server. SQLite has no INCLUDE, so unique index
+ * with include columns is rejected there, declare a separate non unique index to cover them
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Index {
+    public String name() default "";
+    public String[] columns();
+    public boolean unique() default false;
+    public String where() default "";
+    public String[] include() default {};
+}
@@ -3,6 +3,7 @@ package pk.gov.pbs.database.exceptions;
 import android.database.Cursor;
 
 public class ColumnNotFound extends NoSuchFieldError{
+    private static final long serialVersionUID = 1L;
     Cursor cursor;
     public ColumnNotFound() {
     }
@@ -1,6 +1,7 @@
 package pk.gov.pbs.database.exceptions;
 
 public class UnsupportedDataType extends Exception{
+    private static final long serialVersionUID = 1L;
     private Class<?> mClass;
     public UnsupportedDataType(String message, Class<?> mClass) {
         super(message);
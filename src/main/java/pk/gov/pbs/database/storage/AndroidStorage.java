@@ -0,0 +1,342 @@
+package pk.gov.pbs.database.storage;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteProgram;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Storage over the SQLiteDatabase of an open helper, every connection is a view of helper's writable database
+ * so closing it does not close the database. SQLiteStatement has no batching, addBatch() keeps a copy of the bindings
+ * and executeBatch() executes all of them in one transaction, nested in the transaction of caller if there is one.
+ * Errors are not translated, android.database.SQLException thrown by SQLite reaches the caller as it is, so
+ * ModelBasedDatabaseHelper can run its statements and cursors through the wrappers of this class.
+ * Subclasses can observe the writes and transactions of connections served by getConnection(), i,e to invalidate
+ * caches of the helper, connections made with wrap(SQLiteDatabase) are not observed
+ */
+public class AndroidStorage implements StorageProvider {
+    private final SQLiteOpenHelper helper;
+
+    public AndroidStorage(SQLiteOpenHelper helper) {
+        this.helper = helper;
+    }
+
+    @Override
+    public StorageConnection getConnection() {
+        return new AndroidConnection(helper.getWritableDatabase(), this);
+    }
+
+    /**
+     * @param db open database
+     * @return connection over given database, closing it does not close the database
+     */
+    public static StorageConnection wrap(SQLiteDatabase db) {
+        return new AndroidConnection(db, null);
+    }
+
+    /**
+     * @param cursor cursor of a query
+     * @return view of given cursor, closing it closes the cursor
+     */
+    public static StorageCursor wrap(Cursor cursor) {
+        return new AndroidCursor(cursor);
+    }
+
+    /**
+     * @param program compiled statement or query, i,e SQLiteQuery given to SQLiteDatabase.CursorFactory
+     * @return bindings of given program, executing them is only supported for SQLiteStatement since a query
+     * is executed by its cursor
+     */
+    public static StorageStatement wrap(SQLiteProgram program) {
+        return new AndroidStatement(program, null, null, null);
+    }
+
+    /**
+     * begins transaction of a connection, immediate so that readers are not blocked with write-ahead logging
+     */
+    protected void beginTransaction(SQLiteDatabase db) {
+        db.beginTransactionNonExclusive();
+    }
+
+    protected void endTransaction(SQLiteDatabase db) {
+        db.endTransaction();
+    }
+
+    /**
+     * called after a statement other than query has been executed on a connection, inside the transaction if
+     * statement was executed in one
+     * @param sql statement executed
+     */
+    protected void onExecuted(String sql) {
+    }
+
+    private static final class AndroidConnection implements StorageConnection {
+        private final SQLiteDatabase db;
+        private final AndroidStorage storage;
+
+        AndroidConnection(SQLiteDatabase db, AndroidStorage storage) {
+            this.db = db;
+            this.storage = storage;
+        }
+
+        @Override
+        public void execute(String sql, Object[] args) {
+            if (args == null)
+                db.execSQL(sql);
+            else
+                db.execSQL(sql, args);
+            if (storage != null)
+                storage.onExecuted(sql);
+        }
+
+        @Override
+        public StorageCursor query(String sql, String[] args) {
+            return new AndroidCursor(db.rawQuery(sql, args));
+        }
+
+        @Override
+        public StorageStatement prepare(String sql) {
+            return new AndroidStatement(db.compileStatement(sql), sql, this, storage);
+        }
+
+        @Override
+        public void beginTransaction() {
+            if (storage != null)
+                storage.beginTransaction(db);
+            else
+                db.beginTransactionNonExclusive();
+        }
+
+        @Override
+        public void setTransactionSuccessful() {
+            db.setTransactionSuccessful();
+        }
+
+        @Override
+        public void endTransaction() {
+            if (storage != null)
+                storage.endTransaction(db);
+            else
+                db.endTransaction();
+        }
+
+        @Override
+        public boolean inTransaction() {
+            return db.inTransaction();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class AndroidStatement implements StorageStatement {
+        // markers of numeric bindings in values, numbers are kept in longs so that binding does not box them
+        private static final Object LONG = new Object();
+        private static final Object DOUBLE = new Object();
+        private final SQLiteProgram statement;
+        private final String sql;
+        private final AndroidConnection connection;
+        private final AndroidStorage storage;
+        private final List<Object[]> batchValues = new ArrayList<>();
+        private final List<long[]> batchLongs = new ArrayList<>();
+        // copy of current bindings by index, kept so that addBatch() can defer them
+        private Object[] values = new Object[0];
+        private long[] longs = new long[0];
+
+        AndroidStatement(SQLiteProgram statement, String sql, AndroidConnection connection, AndroidStorage storage) {
+            this.statement = statement;
+            this.sql = sql;
+            this.connection = connection;
+            this.storage = storage;
+        }
+
+        private SQLiteStatement executable() {
+            if (!(statement instanceof SQLiteStatement))
+                throw new UnsupportedOperationException("Query is executed by its cursor, it can only be bound");
+            return (SQLiteStatement) statement;
+        }
+
+        private void setValue(int index, Object value, long number) {
+            if (connection == null)
+                return;
+            if (index > values.length) {
+                values = Arrays.copyOf(values, Math.max(index, values.length * 2));
+                longs = Arrays.copyOf(longs, values.length);
+            }
+            values[index - 1] = value;
+            longs[index - 1] = number;
+        }
+
+        @Override
+        public void bindNull(int index) {
+            statement.bindNull(index);
+            setValue(index, null, 0);
+        }
+
+        @Override
+        public void bindLong(int index, long value) {
+            statement.bindLong(index, value);
+            setValue(index, LONG, value);
+        }
+
+        @Override
+        public void bindDouble(int index, double value) {
+            statement.bindDouble(index, value);
+            setValue(index, DOUBLE, Double.doubleToRawLongBits(value));
+        }
+
+        @Override
+        public void bindString(int index, String value) {
+            statement.bindString(index, value);
+            setValue(index, value, 0);
+        }
+
+        @Override
+        public void bindBlob(int index, byte[] value) {
+            statement.bindBlob(index, value);
+            setValue(index, value, 0);
+        }
+
+        @Override
+        public void clearBindings() {
+            statement.clearBindings();
+            Arrays.fill(values, null);
+        }
+
+        @Override
+        public long executeInsert() {
+            long id = executable().executeInsert();
+            if (storage != null)
+                storage.onExecuted(sql);
+            return id;
+        }
+
+        @Override
+        public int executeUpdateDelete() {
+            int count = executable().executeUpdateDelete();
+            if (storage != null)
+                storage.onExecuted(sql);
+            return count;
+        }
+
+        @Override
+        public void addBatch() {
+            if (connection == null)
+                throw new UnsupportedOperationException("Query is executed by its cursor, it can not be batched");
+            batchValues.add(values.clone());
+            batchLongs.add(longs.clone());
+        }
+
+        @Override
+        public int[] executeBatch() {
+            int[] result = new int[batchValues.size()];
+            if (result.length == 0)
+                return result;
+
+            SQLiteStatement executable = executable();
+            connection.beginTransaction();
+            try {
+                for (int i = 0; i < result.length; i++) {
+                    Object[] row = batchValues.get(i);
+                    long[] numbers = batchLongs.get(i);
+                    executable.clearBindings();
+                    for (int j = 0; j < row.length; j++)
+                        bind(executable, j + 1, row[j], numbers[j]);
+                    result[i] = executable.executeUpdateDelete();
+                }
+                connection.setTransactionSuccessful();
+            } finally {
+                batchValues.clear();
+                batchLongs.clear();
+                connection.endTransaction();
+            }
+            if (storage != null)
+                storage.onExecuted(sql);
+            return result;
+        }
+
+        private static void bind(SQLiteStatement statement, int index, Object value, long number) {
+            if (value == null)
+                statement.bindNull(index);
+            else if (value == LONG)
+                statement.bindLong(index, number);
+            else if (value == DOUBLE)
+                statement.bindDouble(index, Double.longBitsToDouble(number));
+            else if (value instanceof byte[])
+                statement.bindBlob(index, (byte[]) value);
+            else
+                statement.bindString(index, (String) value);
+        }
+
+        @Override
+        public void close() {
+            batchValues.clear();
+            batchLongs.clear();
+            statement.close();
+        }
+    }
+
+    private static final class AndroidCursor implements StorageCursor {
+        private final Cursor cursor;
+
+        AndroidCursor(Cursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean moveToNext() {
+            return cursor.moveToNext();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return cursor.getColumnCount();
+        }
+
+        @Override
+        public String getColumnName(int columnIndex) {
+            return cursor.getColumnName(columnIndex);
+        }
+
+        @Override
+        public int getColumnIndex(String columnName) {
+            return cursor.getColumnIndex(columnName);
+        }
+
+        @Override
+        public boolean isNull(int columnIndex) {
+            return cursor.isNull(columnIndex);
+        }
+
+        @Override
+        public long getLong(int columnIndex) {
+            return cursor.getLong(columnIndex);
+        }
+
+        @Override
+        public double getDouble(int columnIndex) {
+            return cursor.getDouble(columnIndex);
+        }
+
+        @Override
+        public String getString(int columnIndex) {
+            return cursor.getString(columnIndex);
+        }
+
+        @Override
+        public byte[] getBlob(int columnIndex) {
+            return cursor.getBlob(columnIndex);
+        }
+
+        @Override
+        public void close() {
+            cursor.close();
+        }
+    }
+}
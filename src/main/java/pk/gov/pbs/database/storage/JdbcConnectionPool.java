@@ -0,0 +1,145 @@
+package pk.gov.pbs.database.storage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed size pool of JDBC connections, connections are opened on demand up to maxConnections and kept open
+ * once released. If all connections are in use acquire() waits for one to be released. Init statements are
+ * executed on every new connection, i,e to set journal mode or busy timeout of SQLite
+ */
+public class JdbcConnectionPool {
+    private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private final String url;
+    private final Properties info;
+    private final int maxConnections;
+    private final long timeoutMillis;
+    private final String[] initStatements;
+    private final LinkedBlockingQueue<Connection> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger open = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    /**
+     * @param url JDBC url, i,e jdbc:sqlite:/data/survey.db
+     * @param info connection properties passed to driver, may be null
+     * @param maxConnections maximum number of connections open at a time (at least 1)
+     * @param timeoutMillis how long acquire() waits for a connection before it fails
+     * @param initStatements statements to execute on every new connection
+     */
+    public JdbcConnectionPool(String url, Properties info, int maxConnections, long timeoutMillis, String... initStatements){
+        if (maxConnections < 1)
+            throw new IllegalArgumentException("At least one connection is required");
+        this.url = url;
+        this.info = info == null ? new Properties() : info;
+        this.maxConnections = maxConnections;
+        this.timeoutMillis = timeoutMillis;
+        this.initStatements = initStatements;
+    }
+
+    /**
+     * @return idle connection, or new one if none is idle and pool is not full
+     * @throws StorageException in case connection could not be opened or no connection was released in time
+     */
+    public Connection acquire(){
+        if (closed)
+            throw new StorageException("Connection pool is closed, Can not proceed to acquire connection");
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            Connection connection = idle.poll();
+            if (connection != null)
+                return connection;
+
+            int count = open.get();
+            while (count < maxConnections) {
+                if (open.compareAndSet(count, count + 1))
+                    return openConnection();
+                count = open.get();
+            }
+
+            // waits in slices so that a slot freed by a discarded connection is noticed as well
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                throw new StorageException("No connection released in " + timeoutMillis + "ms, Can not proceed to acquire connection");
+            try {
+                connection = idle.poll(Math.min(remaining, POLL_INTERVAL_NANOS), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StorageException("Interrupted while waiting for connection", e);
+            }
+            if (connection != null)
+                return connection;
+        }
+    }
+
+    /**
+     * hands connection back to pool, pending transaction is rolled back. Connection which is closed
+     * or could not be reset is dropped so that a new one is opened in its place
+     */
+    public void release(Connection connection){
+        try {
+            if (!connection.isClosed() && !connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            if (!closed && !connection.isClosed()) {
+                idle.offer(connection);
+                return;
+            }
+        } catch (SQLException ignored) {
+        }
+        discard(connection);
+    }
+
+    /**
+     * closes idle connections, connections in use are closed when they are released
+     */
+    public void close(){
+        closed = true;
+        Connection connection;
+        while ((connection = idle.poll()) != null)
+            discard(connection);
+    }
+
+    public int getOpenCount() {
+        return open.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    private Connection openConnection(){
+        Connection connection = null;
+        try {
+            connection = DriverManager.getConnection(url, info);
+            if (initStatements != null) {
+                try (Statement statement = connection.createStatement()) {
+                    for (String sql : initStatements)
+                        statement.execute(sql);
+                }
+            }
+            return connection;
+        } catch (SQLException e) {
+            if (connection != null)
+                discard(connection);
+            else
+                open.decrementAndGet();
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
+    private void discard(Connection connection){
+        open.decrementAndGet();
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
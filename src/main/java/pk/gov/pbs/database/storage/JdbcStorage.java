@@ -0,0 +1,394 @@
+package pk.gov.pbs.database.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Properties;
+
+/**
+ * Storage over JDBC connections served by a JdbcConnectionPool, lets the models and ModelStore run on the JVM
+ * i,e on a server with sqlite-jdbc (jdbc:sqlite:path). Statements generated by library use SQLite dialect.
+ * With SQLite, give every connection a busy timeout and use WAL (see init statements of JdbcConnectionPool) so
+ * readers do not wait for writers, and add transaction_mode=IMMEDIATE to url so concurrent writers queue
+ * up on busy timeout instead of failing while upgrading their locks
+ */
+public class JdbcStorage implements StorageProvider {
+    private final JdbcConnectionPool pool;
+
+    public JdbcStorage(JdbcConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param url JDBC url
+     * @param maxConnections maximum number of connections open at a time
+     * @param initStatements statements to execute on every new connection
+     */
+    public JdbcStorage(String url, int maxConnections, String... initStatements) {
+        this(new JdbcConnectionPool(url, new Properties(), maxConnections, 30000, initStatements));
+    }
+
+    public JdbcConnectionPool getPool() {
+        return pool;
+    }
+
+    @Override
+    public StorageConnection getConnection() {
+        return new JdbcConnection(pool, pool.acquire());
+    }
+
+    /**
+     * closes the connections of pool
+     */
+    public void close() {
+        pool.close();
+    }
+
+    static StorageException translate(SQLException e) {
+        return new StorageException(e.getMessage(), e);
+    }
+
+    private static final class JdbcConnection implements StorageConnection {
+        private final JdbcConnectionPool pool;
+        private Connection connection;
+        private int transactionDepth;
+        private boolean transactionSuccessful;
+        private boolean innerTransactionFailed;
+
+        JdbcConnection(JdbcConnectionPool pool, Connection connection) {
+            this.pool = pool;
+            this.connection = connection;
+        }
+
+        private Connection getConnection() {
+            if (connection == null)
+                throw new IllegalStateException("Connection has been closed");
+            return connection;
+        }
+
+        @Override
+        public void execute(String sql, Object[] args) {
+            try {
+                if (args == null) {
+                    try (Statement statement = getConnection().createStatement()) {
+                        statement.execute(sql);
+                    }
+                    return;
+                }
+
+                try (PreparedStatement statement = getConnection().prepareStatement(sql)) {
+                    for (int i = 0; i < args.length; i++)
+                        statement.setObject(i + 1, args[i] instanceof Boolean ? ((Boolean) args[i] ? 1 : 0) : args[i]);
+                    statement.execute();
+                }
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public StorageCursor query(String sql, String[] args) {
+            PreparedStatement statement = null;
+            try {
+                statement = getConnection().prepareStatement(sql);
+                if (args != null) {
+                    for (int i = 0; i < args.length; i++)
+                        statement.setString(i + 1, args[i]);
+                }
+                return new JdbcCursor(statement, statement.executeQuery());
+            } catch (SQLException e) {
+                JdbcStatement.close(statement);
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public StorageStatement prepare(String sql) {
+            try {
+                return new JdbcStatement(getConnection().prepareStatement(sql));
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public void beginTransaction() {
+            if (transactionDepth == 0) {
+                try {
+                    getConnection().setAutoCommit(false);
+                } catch (SQLException e) {
+                    throw translate(e);
+                }
+                innerTransactionFailed = false;
+            }
+            transactionDepth++;
+            transactionSuccessful = false;
+        }
+
+        @Override
+        public void setTransactionSuccessful() {
+            if (transactionDepth == 0)
+                throw new IllegalStateException("No transaction pending");
+            transactionSuccessful = true;
+        }
+
+        @Override
+        public void endTransaction() {
+            if (transactionDepth == 0)
+                throw new IllegalStateException("No transaction pending");
+            if (!transactionSuccessful)
+                innerTransactionFailed = true;
+            transactionSuccessful = false;
+            if (--transactionDepth > 0)
+                return;
+
+            try {
+                if (innerTransactionFailed)
+                    getConnection().rollback();
+                else
+                    getConnection().commit();
+            } catch (SQLException e) {
+                throw translate(e);
+            } finally {
+                try {
+                    getConnection().setAutoCommit(true);
+                } catch (SQLException ignored) {
+                }
+            }
+        }
+
+        @Override
+        public boolean inTransaction() {
+            return transactionDepth > 0;
+        }
+
+        /**
+         * releases connection to pool, transaction which is still pending is rolled back
+         */
+        @Override
+        public void close() {
+            if (connection == null)
+                return;
+            pool.release(connection);
+            connection = null;
+            transactionDepth = 0;
+        }
+    }
+
+    private static final class JdbcStatement implements StorageStatement {
+        private final PreparedStatement statement;
+
+        JdbcStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        @Override
+        public void bindNull(int index) {
+            try {
+                statement.setNull(index, Types.NULL);
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public void bindLong(int index, long value) {
+            try {
+                statement.setLong(index, value);
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public void bindDouble(int index, double value) {
+            try {
+                statement.setDouble(index, value);
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public void bindString(int index, String value) {
+            try {
+                statement.setString(index, value);
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public void bindBlob(int index, byte[] value) {
+            try {
+                statement.setBytes(index, value);
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public void clearBindings() {
+            try {
+                statement.clearParameters();
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public long executeInsert() {
+            try {
+                if (statement.executeUpdate() == 0)
+                    return -1;
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    return keys != null && keys.next() ? keys.getLong(1) : -1;
+                }
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public int executeUpdateDelete() {
+            try {
+                return statement.executeUpdate();
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public void addBatch() {
+            try {
+                statement.addBatch();
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public int[] executeBatch() {
+            try {
+                return statement.executeBatch();
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            close(statement);
+        }
+
+        static void close(Statement statement) {
+            if (statement == null)
+                return;
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    private static final class JdbcCursor implements StorageCursor {
+        private final PreparedStatement statement;
+        private final ResultSet rs;
+        private final String[] columnNames;
+
+        JdbcCursor(PreparedStatement statement, ResultSet rs) throws SQLException {
+            this.statement = statement;
+            this.rs = rs;
+            ResultSetMetaData meta = rs.getMetaData();
+            columnNames = new String[meta.getColumnCount()];
+            for (int i = 0; i < columnNames.length; i++)
+                columnNames[i] = meta.getColumnLabel(i + 1);
+        }
+
+        @Override
+        public boolean moveToNext() {
+            try {
+                return rs.next();
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columnNames.length;
+        }
+
+        @Override
+        public String getColumnName(int columnIndex) {
+            return columnNames[columnIndex];
+        }
+
+        @Override
+        public int getColumnIndex(String columnName) {
+            for (int i = 0; i < columnNames.length; i++) {
+                if (columnNames[i].equalsIgnoreCase(columnName))
+                    return i;
+            }
+            return -1;
+        }
+
+        @Override
+        public boolean isNull(int columnIndex) {
+            try {
+                return rs.getObject(columnIndex + 1) == null;
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public long getLong(int columnIndex) {
+            try {
+                return rs.getLong(columnIndex + 1);
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public double getDouble(int columnIndex) {
+            try {
+                return rs.getDouble(columnIndex + 1);
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public String getString(int columnIndex) {
+            try {
+                return rs.getString(columnIndex + 1);
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public byte[] getBlob(int columnIndex) {
+            try {
+                return rs.getBytes(columnIndex + 1);
+            } catch (SQLException e) {
+                throw translate(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                rs.close();
+            } catch (SQLException ignored) {
+            }
+            JdbcStatement.close(statement);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package pk.gov.pbs.database.storage;
+
+import java.io.Closeable;
+
+/**
+ * Connection to the database used by model based code which is not tied to a platform, i,e ModelStore.
+ * Transactions can be nested, as on Android whole transaction is rolled back unless every level has been
+ * marked successful. A connection is used by one thread at a time, closing it hands it back to StorageProvider
+ */
+public interface StorageConnection extends Closeable {
+    /**
+     * executes statement which returns no rows
+     * @param sql statement
+     * @param args values of bind arguments, may be null
+     */
+    void execute(String sql, Object[] args);
+
+    /**
+     * @param sql query
+     * @param args values of bind arguments, may be null
+     * @return cursor positioned before first row, caller must close it
+     */
+    StorageCursor query(String sql, String[] args);
+
+    /**
+     * @param sql statement
+     * @return compiled statement, caller must close it
+     */
+    StorageStatement prepare(String sql);
+
+    void beginTransaction();
+
+    void setTransactionSuccessful();
+
+    void endTransaction();
+
+    boolean inTransaction();
+
+    @Override
+    void close();
+}
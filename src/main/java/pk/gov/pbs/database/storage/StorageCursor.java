@@ -0,0 +1,36 @@
+package pk.gov.pbs.database.storage;
+
+import java.io.Closeable;
+
+/**
+ * Forward only result of a query, positioned before first row when returned. Column indexes are 0 based
+ * as on android.database.Cursor regardless of implementation
+ */
+public interface StorageCursor extends Closeable {
+    /**
+     * @return true if cursor moved to next row, false if there are no more rows
+     */
+    boolean moveToNext();
+
+    int getColumnCount();
+
+    String getColumnName(int columnIndex);
+
+    /**
+     * @return index of column with given name (case insensitive), -1 if there is no such column
+     */
+    int getColumnIndex(String columnName);
+
+    boolean isNull(int columnIndex);
+
+    long getLong(int columnIndex);
+
+    double getDouble(int columnIndex);
+
+    String getString(int columnIndex);
+
+    byte[] getBlob(int columnIndex);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,18 @@
+package pk.gov.pbs.database.storage;
+
+/**
+ * Thrown by storage implementations when the underlying database reports an error, cause holds
+ * the exception of platform i,e java.sql.SQLException. AndroidStorage does not translate errors,
+ * android.database.SQLException is thrown as it is
+ */
+public class StorageException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public StorageException(String message) {
+        super(message);
+    }
+
+    public StorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,12 @@
+package pk.gov.pbs.database.storage;
+
+/**
+ * Source of storage connections, AndroidStorage serves the connection of ModelBasedDatabaseHelper and
+ * JdbcStorage serves connections from a pool of JDBC connections
+ */
+public interface StorageProvider {
+    /**
+     * @return connection to use, it must be closed once done so that it can be used by others
+     */
+    StorageConnection getConnection();
+}
@@ -0,0 +1,49 @@
+package pk.gov.pbs.database.storage;
+
+import java.io.Closeable;
+
+/**
+ * Compiled statement of a StorageConnection, bind indexes are 1 based. Statement can be executed
+ * repeatedly, bindings stay in place until they are replaced or cleared
+ */
+public interface StorageStatement extends Closeable {
+    void bindNull(int index);
+
+    void bindLong(int index, long value);
+
+    void bindDouble(int index, double value);
+
+    void bindString(int index, String value);
+
+    void bindBlob(int index, byte[] value);
+
+    void clearBindings();
+
+    /**
+     * executes insert statement with current bindings
+     * @return row id of inserted row, -1 if no row was inserted
+     */
+    long executeInsert();
+
+    /**
+     * executes update or delete statement with current bindings
+     * @return number of rows changed
+     */
+    int executeUpdateDelete();
+
+    /**
+     * adds current bindings to the batch of this statement, bindings are executed together by executeBatch().
+     * Implementations over a driver without batching (AndroidStorage) keep a copy of the bindings and execute them
+     * one by one inside a transaction
+     */
+    void addBatch();
+
+    /**
+     * executes bindings added with addBatch() and clears the batch
+     * @return number of rows changed by each binding, in order in which they were added
+     */
+    int[] executeBatch();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,210 @@
+package pk.gov.pbs.database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import pk.gov.pbs.database.annotations.Index;
+import pk.gov.pbs.database.annotations.Indexes;
+import pk.gov.pbs.database.annotations.PrimaryKey;
+import pk.gov.pbs.database.storage.JdbcStorage;
+import pk.gov.pbs.database.storage.StorageException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * ModelStore over JdbcStorage with sqlite-jdbc, runs on the JVM without Android
+ */
+public class ModelStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private JdbcStorage storage;
+    private ModelStore store;
+
+    public static class Survey {
+        @PrimaryKey
+        public long id;
+        public String title;
+        public Integer households;
+        public short wave;
+        public float weight;
+        public Boolean closed;
+        public byte[] payload;
+
+        public Survey() {
+        }
+
+        Survey(long id, String title, Integer households) {
+            this.id = id;
+            this.title = title;
+            this.households = households;
+            this.wave = (short) (id % 4);
+            this.weight = id + 0.5f;
+            this.closed = id % 2 == 0;
+            this.payload = new byte[]{ (byte) id, 7 };
+        }
+    }
+
+    @Indexes({
+            @Index(name = "household_code", columns = {"surveyId", "code"}, unique = true),
+            @Index(name = "household_code_cover", columns = {"surveyId", "code"}, include = {"members"})
+    })
+    public static class Household {
+        @PrimaryKey
+        public long id;
+        public long surveyId;
+        public String code;
+        public int members;
+
+        public Household() {
+        }
+
+        Household(long id, long surveyId, String code, int members) {
+            this.id = id;
+            this.surveyId = surveyId;
+            this.code = code;
+            this.members = members;
+        }
+    }
+
+    @Index(name = "household_code", columns = {"surveyId", "code"}, unique = true, include = {"members"})
+    public static class CoveredHousehold {
+        @PrimaryKey
+        public long id;
+        public long surveyId;
+        public String code;
+        public int members;
+
+        public CoveredHousehold() {
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        File db = new File(folder.getRoot(), "store.db");
+        storage = new JdbcStorage("jdbc:sqlite:" + db.getAbsolutePath(), 2, "PRAGMA busy_timeout=5000");
+        store = new ModelStore(storage);
+        store.setBatchSize(3);
+        store.createTable(Survey.class);
+    }
+
+    @After
+    public void tearDown() {
+        storage.close();
+    }
+
+    private static List<Survey> surveys(int count) {
+        List<Survey> surveys = new ArrayList<>();
+        for (int i = 1; i <= count; i++)
+            surveys.add(new Survey(i, "survey " + i, i == 2 ? null : i * 10));
+        return surveys;
+    }
+
+    @Test
+    public void insertWritesEveryRowAcrossBatches() {
+        assertEquals(10, store.insert(surveys(10)));
+        assertEquals(10, store.getCount(Survey.class, null));
+        assertEquals(4, store.getCount(Survey.class, "id > ?", "6"));
+    }
+
+    @Test
+    public void queryMapsColumnsToFields() {
+        store.insert(surveys(3));
+
+        List<Survey> result = store.query(Survey.class, "id >= ? ORDER BY id", "2");
+        assertEquals(2, result.size());
+        Survey second = result.get(0);
+        assertEquals(2, second.id);
+        assertEquals("survey 2", second.title);
+        assertNull(second.households);
+        assertEquals(2, second.wave);
+        assertEquals(2.5f, second.weight, 0f);
+        assertEquals(Boolean.TRUE, second.closed);
+        assertArrayEquals(new byte[]{ 2, 7 }, second.payload);
+        assertEquals(Integer.valueOf(30), result.get(1).households);
+
+        assertNull(store.querySingle(Survey.class, "id = ?", "42"));
+    }
+
+    @Test
+    public void updateWritesColumnsByPrimaryKey() {
+        List<Survey> surveys = surveys(5);
+        store.insert(surveys);
+
+        surveys.get(0).title = "renamed";
+        surveys.get(4).households = null;
+        assertEquals(5, store.update(surveys));
+
+        assertEquals("renamed", store.querySingle(Survey.class, "id = ?", "1").title);
+        assertNull(store.querySingle(Survey.class, "id = ?", "5").households);
+    }
+
+    @Test
+    public void replaceOverwritesConflictingRows() {
+        store.insert(surveys(4));
+
+        Survey replaced = new Survey(3, "replaced", 99);
+        assertEquals(2, store.replace(Arrays.asList(replaced, new Survey(5, "new", 1))));
+
+        assertEquals(5, store.getCount(Survey.class, null));
+        assertEquals(Integer.valueOf(99), store.querySingle(Survey.class, "id = ?", "3").households);
+    }
+
+    @Test
+    public void ignoredRowsAreNotCounted() {
+        store.insert(surveys(2));
+        assertEquals(1, store.insert(Arrays.asList(new Survey(2, "dup", 1), new Survey(3, "third", 1)), ConflictMode.IGNORE));
+    }
+
+    @Test
+    public void failedInsertRollsBackWholeTransaction() {
+        store.insert(Collections.singletonList(new Survey(4, "existing", 1)));
+        try {
+            store.insert(surveys(6));
+        } catch (StorageException expected) {
+            assertEquals(1, store.getCount(Survey.class, null));
+            return;
+        }
+        throw new AssertionError("Insert of duplicate primary key did not fail");
+    }
+
+    @Test
+    public void deleteRemovesMatchingRows() {
+        store.insert(surveys(6));
+
+        assertEquals(3, store.delete(Survey.class, "id > ?", "3"));
+        assertEquals(3, store.getCount(Survey.class, null));
+        assertEquals(3, store.delete(Survey.class, null));
+        assertEquals(0, store.getCount(Survey.class, null));
+    }
+
+    @Test
+    public void uniqueIndexRejectsDuplicateKeyWithDifferentCoveredColumns() throws Exception {
+        store.createTable(Household.class);
+        store.insert(Collections.singletonList(new Household(1, 1, "H-1", 4)));
+        try {
+            store.insert(Collections.singletonList(new Household(2, 1, "H-1", 5)));
+        } catch (StorageException expected) {
+            assertEquals(1, store.getCount(Household.class, null));
+            assertEquals(1, store.insert(Collections.singletonList(new Household(3, 2, "H-1", 5))));
+            return;
+        }
+        throw new AssertionError("Insert of duplicate unique key did not fail");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void uniqueIndexWithIncludeIsRejected() throws Exception {
+        store.createTable(CoveredHousehold.class);
+    }
+}